@@ -1,26 +1,57 @@
-import { useEffect, useState } from "react";
-import type { Order } from "../types/order";
+import { useCallback, useEffect, useRef, useState } from "react";
+import type { Order, OrderPage } from "../types/order";
 import { api } from "../lib/api";
 
 /**
  * OrdersTab
  *
  * Displays the user's past orders:
- * - Fetches orders from `/orders` on mount
- * - Sorts them by newest first
+ * - Fetches the newest page from `/orders?limit=` on mount (server returns newest first)
+ * - Loads older pages (`before=<nextBefore>`) when the bottom sentinel scrolls into view
  * - Shows order header, items, shipping address, and total
  */
+const PAGE_SIZE = 10;
+
 export default function OrdersTab() {
   const [orders, setOrders] = useState<Order[]>([]);
+  const [nextBefore, setNextBefore] = useState<string | null>(null);
+  const [loading, setLoading] = useState(false);
+  const sentinel = useRef<HTMLDivElement | null>(null);
 
-  // Fetch orders once on mount
-  useEffect(() => {
-    api
-      .get<Order[]>("/orders")
-      .then((res) => setOrders(res.data))
-      .catch((err) => console.error("Failed to fetch orders", err));
+  // Fetch one page; `before` = null loads the newest orders
+  const loadPage = useCallback(async (before: string | null) => {
+    setLoading(true);
+    try {
+      const res = await api.get<OrderPage>("/orders", {
+        params: { limit: PAGE_SIZE, before: before ?? undefined },
+      });
+      setOrders((prev) =>
+        before === null ? res.data.items : [...prev, ...res.data.items]
+      );
+      setNextBefore(res.data.nextBefore);
+    } catch (err) {
+      console.error("Failed to fetch orders", err);
+    } finally {
+      setLoading(false);
+    }
   }, []);
 
+  // Fetch the first page once on mount
+  useEffect(() => {
+    void loadPage(null);
+  }, [loadPage]);
+
+  // Load older orders when the sentinel below the list becomes visible
+  useEffect(() => {
+    const el = sentinel.current;
+    if (!el || nextBefore === null) return;
+    const observer = new IntersectionObserver((entries) => {
+      if (entries[0].isIntersecting && !loading) void loadPage(nextBefore);
+    });
+    observer.observe(el);
+    return () => observer.disconnect();
+  }, [nextBefore, loading, loadPage]);
+
   return (
     <div className="max-w-3xl mx-auto">
       {/* --- Empty state --- */}
@@ -28,14 +59,7 @@ export default function OrdersTab() {
         <p className="text-center text-gray-2 text-lg">No orders yet.</p>
       ) : (
         <div className="divide-y divide-gray-3">
-          {[...orders]
-            // Sort orders by createdAt (newest first)
-            .sort(
-              (a, b) =>
-                new Date(b.createdAt).getTime() -
-                new Date(a.createdAt).getTime()
-            )
-            .map((order) => {
+          {orders.map((order) => {
               // Compute total price for the order
               const total = order.items.reduce(
                 (sum, item) => sum + item.priceCents * item.quantity,
@@ -115,6 +139,11 @@ export default function OrdersTab() {
                 </div>
               );
             })}
+          {/* --- Infinite scroll sentinel --- */}
+          <div ref={sentinel} />
+          {loading && (
+            <p className="text-center text-gray-2 text-sm py-4">Loading…</p>
+          )}
         </div>
       )}
     </div>
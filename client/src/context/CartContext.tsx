@@ -1,6 +1,6 @@
 import { createContext, useContext, useEffect, useState } from "react";
 import { api } from "../lib/api";
-import type { CartDTO } from "../types/cart";
+import type { CartDTO, CartOperation } from "../types/cart";
 
 /**
  * CartContext
@@ -11,6 +11,7 @@ import type { CartDTO } from "../types/cart";
  * - `add`: add or increment a product
  * - `setQty`: set exact quantity of a product
  * - `remove`: remove a product line
+ * - `applyOps`: apply several add/set/remove operations in one request
  * - `clear`: clear the cart entirely
  * - `itemsCount`: derived total quantity (for UI badges)
  */
@@ -20,6 +21,7 @@ type CartContextType = {
   add: (productId: number, deltaQty?: number) => Promise<void>;
   setQty: (productId: number, quantity: number) => Promise<void>;
   remove: (productId: number) => Promise<void>;
+  applyOps: (operations: CartOperation[]) => Promise<void>;
   clear: () => Promise<void>;
   itemsCount: number;
 };
@@ -65,6 +67,16 @@ export function CartProvider({ children }: { children: React.ReactNode }) {
     setCart(data);
   };
 
+  /**
+   * Apply a batch of operations (e.g. restoring a cart or reordering) in one
+   * request; the server saves them together and prices the cart once.
+   */
+  const applyOps = async (operations: CartOperation[]) => {
+    if (operations.length === 0) return;
+    const { data } = await api.patch<CartDTO>("/cart/items", operations);
+    setCart(data);
+  };
+
   /** Clear the entire cart. */
   const clear = async () => {
     const { data } = await api.delete<CartDTO>("/cart");
@@ -86,7 +98,7 @@ export function CartProvider({ children }: { children: React.ReactNode }) {
   /* ---------------- PROVIDER ---------------- */
   return (
     <CartContext.Provider
-      value={{ cart, refresh, add, setQty, remove, clear, itemsCount }}
+      value={{ cart, refresh, add, setQty, remove, applyOps, clear, itemsCount }}
     >
       {children}
     </CartContext.Provider>
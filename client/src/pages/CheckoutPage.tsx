@@ -1,5 +1,5 @@
-import { useState } from "react";
-import type { Address, CheckoutRequest } from "../types/order";
+import { useRef, useState } from "react";
+import type { Address, CheckoutRequest, CheckoutSession } from "../types/order";
 import { useCart } from "../context/CartContext";
 import { api } from "../lib/api";
 
@@ -10,6 +10,8 @@ import { api } from "../lib/api";
  * - Collects shipping address from the user
  * - Displays current cart items and total
  * - Calls backend `/checkout` endpoint to create a Stripe checkout session
+ *   (with an Idempotency-Key, so retries and double clicks reuse the same session),
+ *   polling `/checkout/{orderId}` if the session is still being created
  * - Redirects user to payment page
  */
 export default function CheckoutPage() {
@@ -21,6 +23,8 @@ export default function CheckoutPage() {
     zip: "",
     country: "",
   });
+  // One Idempotency-Key per checkout attempt; a new one once cart or address change
+  const attempt = useRef<{ key: string; content: string } | null>(null);
 
   // Updates the address state when any input field changes
   function handleChange(e: React.ChangeEvent<HTMLInputElement>) {
@@ -31,19 +35,25 @@ export default function CheckoutPage() {
   async function handleCheckout() {
     if (!cart) return; // No cart, nothing to do
 
-    // Prepare payload for backend
-    const payload: CheckoutRequest = {
-      items: cart.items.map(i => ({
-        name: i.name,
-        priceCents: i.unitPriceCents,
-        quantity: i.quantity,
-      })),
-      address,
-    };
+    // The server checks out its own copy of the cart and prices every line
+    const payload: CheckoutRequest = { address };
+
+    const content = JSON.stringify([cart.version, address]);
+    if (!attempt.current || attempt.current.content !== content) {
+      attempt.current = { key: crypto.randomUUID(), content };
+    }
 
     try {
-      const response = await api.post<{ url: string }>("/checkout", payload);
-      window.location.href = response.data.url;
+      let session = (await api.post<CheckoutSession>("/checkout", payload, {
+        headers: { "Idempotency-Key": attempt.current.key },
+      })).data;
+      // 202: the payment session is created in the background; poll for it
+      for (let i = 0; i < 30 && !session.url && session.status === "pending"; i++) {
+        await new Promise(resolve => setTimeout(resolve, 1000));
+        session = (await api.get<CheckoutSession>(`/checkout/${session.orderId}`)).data;
+      }
+      if (!session.url) throw new Error("Payment session not available, please try again");
+      window.location.href = session.url;
     } catch (err) {
       console.error("Checkout failed", err);
     }
@@ -1,6 +1,6 @@
 import { useEffect, useState } from "react";
 import { useCart } from "../context/CartContext";
-import type { Product } from "../types/product";
+import type { Product, ProductPage as ProductPageDTO } from "../types/product";
 import { Search, ShoppingBag, CircleX, Minus, Plus } from "lucide-react";
 import type { Category } from "../types/category";
 import { api } from "../lib/api";
@@ -14,8 +14,10 @@ import { api } from "../lib/api";
  * - Cart integration (add, remove, update quantity)
  *
  * Data flow:
- * - Fetches products and categories from API on mount
- * - Filters products by category + search query
+ * - Fetches categories on mount and products page by page (server-side category filter)
+ * - Loads the next page via the server's `nextCursor` ("Load more")
+ * - While a search query is entered, shows server-side search results
+ *   (`/products/search`, prefix + typo tolerant) instead of the paged list
  * - Shows cart-aware controls (add/remove/qty) for each product
  */
 const ProductPage = () => {
@@ -24,31 +26,84 @@ const ProductPage = () => {
   const [categories, setCategories] = useState<Category[]>([]);
   const [selectedCategory, setSelectedCategory] = useState<number | null>(null);
   const [query, setQuery] = useState("");
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
+  const [searchResults, setSearchResults] = useState<Product[]>([]);
 
 	// Cart actions from context
   const { add, setQty, cart } = useCart();
 
 	/* ---------------- FETCH DATA ---------------- */
   useEffect(() => {
-    api.get<Product[]>("/products").then((r) => setProducts(r.data));
     api.get<Category[]>("/categories").then((r) => setCategories(r.data));
   }, []);
 
-	/* ---------------- FILTER PRODUCTS ---------------- */
-	// Products shown = match category filter AND search query
-  const displayedProducts = products.filter((p) => {
-    const matchesCategory =
-      selectedCategory === null || p.categoryId === selectedCategory;
+  // Fetch one page of products; `cursor` = null starts over from page one
+  const fetchPage = (cursor: string | null) =>
+    api.get<ProductPageDTO>("/products/page", {
+      params: {
+        categoryId: selectedCategory ?? undefined,
+        cursor: cursor ?? undefined,
+      },
+    });
 
-    const matchesSearch =
-      query.trim() === "" ||
-      p.name
-        .toLowerCase()
-        .split(" ")
-        .some((word) => word.startsWith(query.toLowerCase().trim()));
+  // Reload from the first page whenever the category filter changes
+  useEffect(() => {
+    let cancelled = false;
+    fetchPage(null).then((r) => {
+      if (cancelled) return;
+      setProducts(r.data.items);
+      setNextCursor(r.data.nextCursor);
+    });
+    return () => {
+      cancelled = true;
+    };
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [selectedCategory]);
+
+  // Append the next page to the grid
+  const loadMore = async () => {
+    if (!nextCursor || loadingMore) return;
+    setLoadingMore(true);
+    try {
+      const r = await fetchPage(nextCursor);
+      setProducts((prev) => [...prev, ...r.data.items]);
+      setNextCursor(r.data.nextCursor);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
 
-    return matchesCategory && matchesSearch;
-  });
+	/* ---------------- SEARCH ---------------- */
+  // Debounced server-side search while the user types
+  useEffect(() => {
+    const q = query.trim();
+    if (q === "") {
+      setSearchResults([]);
+      return;
+    }
+    let cancelled = false;
+    const timer = setTimeout(() => {
+      api
+        .get<Product[]>("/products/search", { params: { q, limit: 48 } })
+        .then((r) => {
+          if (!cancelled) setSearchResults(r.data);
+        });
+    }, 150);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [query]);
+
+	/* ---------------- DISPLAYED PRODUCTS ---------------- */
+	// Search results (narrowed to the selected category) or the paged list
+  const searching = query.trim() !== "";
+  const displayedProducts = searching
+    ? searchResults.filter(
+        (p) => selectedCategory === null || p.categoryId === selectedCategory
+      )
+    : products;
 
   /* ---------------- CART HELPERS ---------------- */
   // Get current quantity of a product from cart (0 if not present)
@@ -218,6 +273,19 @@ const ProductPage = () => {
               );
             })}
           </div>
+
+          {/* --- Load more (keyset pagination) --- */}
+          {!searching && nextCursor && (
+            <div className="flex justify-center my-8">
+              <button
+                className="font-bold tracking-wide py-2 px-6 rounded-lg bg-gray-4 hover:bg-gray-7 text-black cursor-pointer"
+                onClick={() => void loadMore()}
+                disabled={loadingMore}
+              >
+                {loadingMore ? "Loading..." : "Load more"}
+              </button>
+            </div>
+          )}
         </div>
       </section>
     </main>
@@ -16,4 +16,16 @@ export type CartDTO = {
   subtotalCents: number;
   taxCents: number;
   totalCents: number;
+  /** Cart version; also the ETag. Send it back as `If-Match` to detect conflicts (409). */
+  version: number;
+};
+
+/**
+ * One operation in a batch sent to `PATCH /cart/items`.
+ * `quantity` is the delta for ADD (default 1) and the exact value for SET.
+ */
+export type CartOperation = {
+  op: "ADD" | "SET" | "REMOVE";
+  productId: number;
+  quantity?: number;
 };
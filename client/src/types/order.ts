@@ -10,15 +10,29 @@ export type Address = {
   country: string;
 };
 
+/**
+ * Checkout payload. Omit `items` to check out the server-side cart;
+ * prices are always computed by the server.
+ */
 export type CheckoutRequest = {
-  items: {
-    name: string;
-    priceCents: number;
+  items?: {
+    productId: number;
     quantity: number;
   }[];
   address: Address;
 };
 
+/**
+ * Response of `POST /checkout` and `GET /checkout/{orderId}`.
+ * `url` is missing while the payment session is still being created
+ * (HTTP 202, `status: "pending"`); poll `GET /checkout/{orderId}` until it is set.
+ */
+export type CheckoutSession = {
+  orderId: number;
+  url?: string;
+  status?: "pending" | "failed";
+};
+
 export type Order = {
   id: number;
   paid: boolean;
@@ -32,3 +46,12 @@ export type OrderItem = {
   quantity: number;
   priceCents: number;
 };
+
+/**
+ * One page of the order history (`GET /orders?before=&limit=`).
+ * `nextBefore` is an opaque cursor, null when there are no older orders.
+ */
+export type OrderPage = {
+  items: Order[];
+  nextBefore: string | null;
+};
@@ -10,3 +10,12 @@ export type Product = {
   categoryId: number;
   unit: string;
 };
+
+/**
+ * One page of the keyset-paginated product listing (`GET /products/page`).
+ * `nextCursor` is null on the last page.
+ */
+export type ProductPage = {
+  items: Product[];
+  nextCursor: string | null;
+};
@@ -1,5 +1,6 @@
 package com.healthyeats.server.auth;
 
+import com.healthyeats.server.cart.CartResolver;
 import com.healthyeats.server.user.User;
 import com.healthyeats.server.user.UserDTO;
 import com.healthyeats.server.user.UserRepository;
@@ -27,14 +28,17 @@ public class AuthController {
     private final AuthService authService;
     private final UserRepository userRepository;
     private final AuthenticationManager authenticationManager;
+    private final CartResolver carts;
 
     /**
      * Constructor-based dependency injection for required services.
      */
-    public AuthController(AuthService authService, UserRepository userRepository, AuthenticationManager authenticationManager) {
+    public AuthController(AuthService authService, UserRepository userRepository,
+                          AuthenticationManager authenticationManager, CartResolver carts) {
         this.authService = authService;
         this.userRepository = userRepository;
         this.authenticationManager = authenticationManager;
+        this.carts = carts;
     }
 
     /**
@@ -53,15 +57,18 @@ public class AuthController {
     /**
      * Logs a user in using Spring Security authentication.
      * On success, the SecurityContext is stored in the HTTP session,
-     * so that the authentication persists across page reloads.
+     * so that the authentication persists across page reloads, and an
+     * anonymous signed-cookie cart (if any) is moved into the cart store.
      *
      * @param email    user email
      * @param password user password
      * @param request  HTTP request (used to store session)
+     * @param response HTTP response (receives cart cookie changes)
      * @return DTO containing user details
      */
     @PostMapping("/login")
-    public UserDTO login(@RequestParam String email, @RequestParam String password, HttpServletRequest request) {
+    public UserDTO login(@RequestParam String email, @RequestParam String password,
+                         HttpServletRequest request, HttpServletResponse response) {
         // Authenticate using Spring Security's AuthenticationManager
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(email, password)
@@ -74,6 +81,9 @@ public class AuthController {
                 SecurityContextHolder.getContext()
         );
 
+        // Keep the cart built while browsing anonymously
+        carts.promote(request, response);
+
         // Fetch the authenticated user from the repository
         User user = userRepository.findByEmail(email).orElseThrow();
         return new UserDTO(user.getId(), user.getEmail(), user.getCreatedAt());
@@ -2,30 +2,48 @@ package com.healthyeats.server.auth;
 
 import com.healthyeats.server.user.User;
 import com.healthyeats.server.user.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  * Custom implementation of Spring Security's {@link UserDetailsService}.
  *
  * Responsible for loading user-specific data during authentication.
  * This connects the application's User entity to Spring Security's
  * internal authentication system.
+ *
+ * Every user gets the USER role; the emails listed in
+ * {@code management.admin-emails} also get ADMIN (actuator access).
  */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
 
+    /** Lower-cased emails of the users granted ADMIN. */
+    private final Set<String> adminEmails;
+
     /**
      * Constructor-based dependency injection.
      *
      * @param userRepository repository for fetching User entities
+     * @param adminEmails    comma-separated emails of the users granted ADMIN
      */
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${management.admin-emails:}") String adminEmails) {
         this.userRepository = userRepository;
+        this.adminEmails = Arrays.stream(adminEmails.split(","))
+                .map(email -> email.trim().toLowerCase(Locale.ROOT))
+                .filter(email -> !email.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     /**
@@ -52,7 +70,11 @@ public class CustomUserDetailsService implements UserDetailsService {
         return org.springframework.security.core.userdetails.User
                 .withUsername(user.getEmail())       // principal (username)
                 .password(user.getPasswordHash())    // hashed password
-                .roles("USER")                       // assign default role
+                .roles(isAdmin(user) ? new String[]{ "USER", "ADMIN" } : new String[]{ "USER" })
                 .build();
     }
+
+    private boolean isAdmin(User user) {
+        return adminEmails.contains(user.getEmail().toLowerCase(Locale.ROOT));
+    }
 }
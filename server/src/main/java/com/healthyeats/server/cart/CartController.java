@@ -1,45 +1,63 @@
 package com.healthyeats.server.cart;
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * REST controller for managing the shopping cart.
  *
- * Uses the HTTP session to store and retrieve cart state
- * for each user (cart survives across requests until logout or session expiry).
+ * Resolves the cart of each request with {@link CartResolver}: server-side in
+ * the configured {@link CartStore} under the {@link CartCookie} ID, or (for
+ * anonymous visitors with {@code cart.anonymous=signed-cookie}) in the signed
+ * {@link SignedCartCookie}. Never uses the HTTP session. Cookies are only
+ * issued by mutating requests.
+ *
+ * Versioning: every response carries the cart version as a strong ETag
+ * (e.g. {@code ETag: "7"}, also in the body as {@code version}). Mutations
+ * accept an optional {@code If-Match} header with that value; if the cart has
+ * changed since, nothing is applied and 409 (Conflict) is returned. Without
+ * If-Match, mutations are applied unconditionally (last writer wins, but
+ * concurrent requests are still serialised per cart).
  *
  * Base path: /api/cart
  * Allows cross-origin requests from frontend (localhost:5173).
  */
 @RestController
 @RequestMapping("/api/cart")
-@CrossOrigin(origins = "http://localhost:5173", allowCredentials = "true")
+@CrossOrigin(origins = "http://localhost:5173", allowCredentials = "true", exposedHeaders = HttpHeaders.ETAG)
 public class CartController {
 
     private final CartService service;
+    private final CartResolver carts;
 
     /**
      * Constructor-based dependency injection.
      *
      * @param service service layer for handling cart operations
+     * @param carts   resolves where the request's cart lives
      */
-    public CartController(CartService service) {
+    public CartController(CartService service, CartResolver carts) {
         this.service = service;
+        this.carts = carts;
     }
 
     /**
      * GET /api/cart
      *
-     * Fetch the current cart state for the session.
+     * Fetch the current cart state (empty if the client has no cart cookie yet).
      *
-     * @param session current HTTP session
+     * @param request  current HTTP request
+     * @param response current HTTP response (receives the ETag)
      * @return cart DTO representing the current cart
      */
     @GetMapping
-    public CartDTO get(HttpSession session) {
-        return service.getCart(session);
+    public CartDTO get(HttpServletRequest request, HttpServletResponse response) {
+        return withETag(response, service.getCart(carts.read(request, response).orElse(null)));
     }
 
     /**
@@ -51,17 +69,24 @@ public class CartController {
      *
      * Example: POST /api/cart/items?productId=1&quantity=2
      *
-     * @param session   current HTTP session
+     * @param request   current HTTP request
+     * @param response  current HTTP response (receives cart cookies)
      * @param productId ID of the product to update
      * @param quantity  amount to add or subtract (default = 1)
+     * @param ifMatch   optional cart version the change is based on
      * @return updated cart DTO
      */
     @PostMapping("/items")
     @ResponseStatus(HttpStatus.OK)
-    public CartDTO add(HttpSession session,
+    public CartDTO add(HttpServletRequest request,
+                       HttpServletResponse response,
                        @RequestParam Long productId,
-                       @RequestParam(defaultValue = "1") Integer quantity) {
-        return service.add(session, productId, quantity);
+                       @RequestParam(defaultValue = "1") Integer quantity,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        CartRef cart = carts.readOrCreate(request, response);
+        CartDTO dto = service.add(cart, productId, quantity, expectedVersion(ifMatch));
+        carts.commit(cart, response);
+        return withETag(response, dto);
     }
 
     /**
@@ -72,16 +97,53 @@ public class CartController {
      *
      * Example: PUT /api/cart/items/1?quantity=5
      *
-     * @param session   current HTTP session
+     * @param request   current HTTP request
+     * @param response  current HTTP response (receives cart cookies)
      * @param productId ID of the product to update
      * @param quantity  new quantity to set
+     * @param ifMatch   optional cart version the change is based on
      * @return updated cart DTO
      */
     @PutMapping("/items/{productId}")
-    public CartDTO setQty(HttpSession session,
+    public CartDTO setQty(HttpServletRequest request,
+                          HttpServletResponse response,
                           @PathVariable Long productId,
-                          @RequestParam Integer quantity) {
-        return service.setQty(session, productId, quantity);
+                          @RequestParam Integer quantity,
+                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        CartRef cart = carts.readOrCreate(request, response);
+        CartDTO dto = service.setQty(cart, productId, quantity, expectedVersion(ifMatch));
+        carts.commit(cart, response);
+        return withETag(response, dto);
+    }
+
+    /**
+     * PATCH /api/cart/items
+     *
+     * Apply a batch of add/set/remove operations in one request (e.g. restoring
+     * a cart or reordering a past order). The operations are applied in order
+     * and saved together; if any operation is invalid, nothing is changed.
+     * The cart is priced once for the final state.
+     *
+     * Example body:
+     * [{"op": "ADD", "productId": 1, "quantity": 2},
+     *  {"op": "SET", "productId": 3, "quantity": 1},
+     *  {"op": "REMOVE", "productId": 4}]
+     *
+     * @param request    current HTTP request
+     * @param response   current HTTP response (receives cart cookies)
+     * @param operations operations to apply, in order
+     * @param ifMatch    optional cart version the batch is based on
+     * @return updated cart DTO
+     */
+    @PatchMapping("/items")
+    public CartDTO apply(HttpServletRequest request,
+                         HttpServletResponse response,
+                         @RequestBody List<CartOperation> operations,
+                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        CartRef cart = carts.readOrCreate(request, response);
+        CartDTO dto = service.apply(cart, operations, expectedVersion(ifMatch));
+        carts.commit(cart, response);
+        return withETag(response, dto);
     }
 
     /**
@@ -89,26 +151,77 @@ public class CartController {
      *
      * Remove a single product completely from the cart.
      *
-     * @param session   current HTTP session
+     * @param request   current HTTP request
+     * @param response  current HTTP response (receives the ETag)
      * @param productId ID of the product to remove
+     * @param ifMatch   optional cart version the change is based on
      * @return updated cart DTO
      */
     @DeleteMapping("/items/{productId}")
-    public CartDTO delete(HttpSession session, @PathVariable Long productId) {
-        return service.remove(session, productId);
+    public CartDTO delete(HttpServletRequest request,
+                          HttpServletResponse response,
+                          @PathVariable Long productId,
+                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expected = expectedVersion(ifMatch);
+        return withETag(response, carts.read(request, response)
+                .map(cart -> {
+                    CartDTO dto = service.remove(cart, productId, expected);
+                    carts.commit(cart, response);
+                    return dto;
+                })
+                .orElseGet(() -> service.getCart(null)));
     }
 
     /**
      * DELETE /api/cart
      *
-     * Clear the entire cart for the current session.
+     * Clear the entire cart.
      *
-     * @param session current HTTP session
+     * @param request  current HTTP request
+     * @param response current HTTP response (receives the ETag)
+     * @param ifMatch  optional cart version the change is based on
      * @return updated (empty) cart DTO
      */
     @DeleteMapping
-    public CartDTO clear(HttpSession session) {
-        return service.clear(session);
+    public CartDTO clear(HttpServletRequest request,
+                         HttpServletResponse response,
+                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expected = expectedVersion(ifMatch);
+        return withETag(response, carts.read(request, response)
+                .map(cart -> {
+                    CartDTO dto = service.clear(cart, expected);
+                    carts.commit(cart, response);
+                    return dto;
+                })
+                .orElseGet(() -> service.getCart(null)));
+    }
+
+    /**
+     * Parses an If-Match header into a cart version.
+     * Accepts {@code "7"}, {@code W/"7"} and a bare {@code 7}; {@code *} or no header means "any version".
+     *
+     * @param ifMatch raw header value (may be null)
+     * @return expected version, or null if no check is requested
+     * @throws IllegalArgumentException if the header is not a cart version
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) return null;
+        String tag = ifMatch.strip();
+        if (tag.equals("*")) return null;
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must be a cart version, e.g. \"7\"");
+        }
+    }
+
+    private static CartDTO withETag(HttpServletResponse response, CartDTO cart) {
+        response.setHeader(HttpHeaders.ETAG, "\"" + cart.version() + "\"");
+        return cart;
     }
 
     /**
@@ -126,4 +239,21 @@ public class CartController {
     public String badRequest(Exception e) {
         return e.getMessage();
     }
+
+    /**
+     * Maps {@link CartVersionConflictException} (stale If-Match) to:
+     * - HTTP status 409 (Conflict)
+     * - ETag header with the current cart version, so the client can re-read and retry
+     * - Response body containing the error message
+     *
+     * @param e        the exception
+     * @param response current HTTP response
+     * @return error message as plain text
+     */
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler({ CartVersionConflictException.class })
+    public String conflict(CartVersionConflictException e, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.ETAG, "\"" + e.getCurrentVersion() + "\"");
+        return e.getMessage();
+    }
 }
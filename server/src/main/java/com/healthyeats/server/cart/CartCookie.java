@@ -0,0 +1,79 @@
+package com.healthyeats.server.cart;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the cart ID of a request from the {@value #NAME} cookie.
+ *
+ * The cart ID is independent of the HTTP session: it identifies the cart
+ * in the {@link CartStore}, so carts work without sticky sessions and
+ * survive node restarts (with a shared store). The cookie is only issued
+ * when a cart is first modified; read-only requests never create one.
+ */
+@Component
+public class CartCookie {
+
+    /** Cookie name. */
+    public static final String NAME = "CART_ID";
+
+    private static final Pattern VALID_ID = Pattern.compile("[0-9a-f-]{36}");
+
+    private final Duration maxAge;
+    private final boolean secure;
+
+    public CartCookie(@Value("${cart.ttl:P30D}") Duration maxAge,
+                      @Value("${cart.cookie.secure:false}") boolean secure) {
+        this.maxAge = maxAge;
+        this.secure = secure;
+    }
+
+    /**
+     * Reads the cart ID, ignoring missing or malformed cookies.
+     *
+     * @param request current request
+     * @return cart ID, or empty if the client has no cart yet
+     */
+    public Optional<String> read(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return Optional.empty();
+        for (Cookie c : cookies) {
+            if (NAME.equals(c.getName()) && VALID_ID.matcher(c.getValue()).matches()) {
+                return Optional.of(c.getValue());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the cart ID, issuing a new one (and its cookie) if missing.
+     *
+     * @param request  current request
+     * @param response current response (receives Set-Cookie for new IDs)
+     * @return cart ID
+     */
+    public String readOrCreate(HttpServletRequest request, HttpServletResponse response) {
+        return read(request).orElseGet(() -> {
+            String id = UUID.randomUUID().toString();
+            ResponseCookie cookie = ResponseCookie.from(NAME, id)
+                    .httpOnly(true)
+                    .secure(secure)
+                    .sameSite("Lax")
+                    .path("/")
+                    .maxAge(maxAge)
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+            return id;
+        });
+    }
+}
@@ -12,10 +12,12 @@ import java.util.List;
  * @param subtotalCents subtotal (before tax), in cents
  * @param taxCents      total tax amount, in cents
  * @param totalCents    grand total (subtotal + tax), in cents
+ * @param version       cart version (also sent as the ETag; send it back in If-Match)
  */
 public record CartDTO(
         List<CartItemDTO> items,
         Integer subtotalCents,
         Integer taxCents,
-        Integer totalCents
+        Integer totalCents,
+        Long version
 ) {}
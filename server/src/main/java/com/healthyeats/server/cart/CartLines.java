@@ -0,0 +1,295 @@
+package com.healthyeats.server.cart;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable, compact list of cart lines (productId → quantity) in insertion order.
+ *
+ * Lines are kept in two parallel primitive arrays instead of a boxed
+ * {@code LinkedHashMap<Long, Integer>}: about 12 bytes per line plus a fixed
+ * ~56 bytes per cart. The map needs an entry object, a boxed Long and a table
+ * slot per line on top of its own header; CartMemoryBenchmark measures
+ * ~600 vs ~160 bytes of heap for an 8-line cart.
+ * Carts are small, so lookups are linear scans over the ID array.
+ *
+ * Binary form ({@link #toBytes()}): the line count followed by
+ * productId/quantity pairs, all as unsigned varints. A typical line
+ * takes 2–4 bytes.
+ *
+ * Changes go through a {@link Builder}, which produces a new instance.
+ */
+public final class CartLines implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** A cart without lines. */
+    public static final CartLines EMPTY = new CartLines(new long[0], new int[0]);
+
+    /** Rough shallow sizes on a 64-bit JVM with compressed oops (object and array headers, fields). */
+    private static final int OBJECT_BYTES = 24;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final long[] productIds;
+    private final int[] quantities;
+
+    private CartLines(long[] productIds, int[] quantities) {
+        this.productIds = productIds;
+        this.quantities = quantities;
+    }
+
+    /**
+     * @return number of lines
+     */
+    public int size() {
+        return productIds.length;
+    }
+
+    public boolean isEmpty() {
+        return productIds.length == 0;
+    }
+
+    /**
+     * @param index line index (0 = first added)
+     * @return product ID of that line
+     */
+    public long productId(int index) {
+        return productIds[index];
+    }
+
+    /**
+     * @param index line index (0 = first added)
+     * @return quantity of that line
+     */
+    public int quantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * @param productId product ID
+     * @return quantity of the product, or 0 if it is not in the cart
+     */
+    public int quantityOf(long productId) {
+        int i = indexOf(productIds, productIds.length, productId);
+        return i < 0 ? 0 : quantities[i];
+    }
+
+    /**
+     * @return a builder starting from these lines
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Estimated heap footprint of this instance, in bytes.
+     *
+     * @return shallow size of the object plus both arrays
+     */
+    public long retainedBytes() {
+        return OBJECT_BYTES
+                + align(ARRAY_HEADER_BYTES + 8L * productIds.length)
+                + align(ARRAY_HEADER_BYTES + 4L * quantities.length);
+    }
+
+    /**
+     * Encodes the lines as varints: count, then (productId, quantity) per line.
+     *
+     * @return binary form (see {@link #fromBytes})
+     */
+    public byte[] toBytes() {
+        byte[] out = new byte[encodedSize()];
+        int pos = writeVarLong(out, 0, productIds.length);
+        for (int i = 0; i < productIds.length; i++) {
+            pos = writeVarLong(out, pos, productIds[i]);
+            pos = writeVarLong(out, pos, quantities[i]);
+        }
+        return out;
+    }
+
+    /**
+     * @return length of {@link #toBytes()} in bytes
+     */
+    public int encodedSize() {
+        int size = varLongSize(productIds.length);
+        for (int i = 0; i < productIds.length; i++) {
+            size += varLongSize(productIds[i]) + varLongSize(quantities[i]);
+        }
+        return size;
+    }
+
+    /**
+     * Decodes the binary form produced by {@link #toBytes()}.
+     *
+     * @param bytes encoded lines
+     * @return decoded lines
+     * @throws IllegalArgumentException if the input is truncated or malformed
+     */
+    public static CartLines fromBytes(byte[] bytes) {
+        int[] pos = { 0 };
+        long count = readVarLong(bytes, pos);
+        // Every line takes at least two bytes, which bounds the count before allocating
+        if (count < 0 || count > (bytes.length - pos[0]) / 2) {
+            throw new IllegalArgumentException("Malformed cart lines");
+        }
+        long[] ids = new long[(int) count];
+        int[] qtys = new int[(int) count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = readVarLong(bytes, pos);
+            long qty = readVarLong(bytes, pos);
+            if (qty > Integer.MAX_VALUE) throw new IllegalArgumentException("Malformed cart lines");
+            qtys[i] = (int) qty;
+        }
+        if (pos[0] != bytes.length) throw new IllegalArgumentException("Malformed cart lines");
+        return new CartLines(ids, qtys);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof CartLines other
+                && Arrays.equals(productIds, other.productIds)
+                && Arrays.equals(quantities, other.quantities));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(productIds) + Arrays.hashCode(quantities);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CartLines[");
+        for (int i = 0; i < productIds.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(productIds[i]).append('×').append(quantities[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Mutable working copy used to apply a batch of changes before producing
+     * a new {@link CartLines}. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private long[] ids;
+        private int[] qtys;
+        private int size;
+
+        private Builder(CartLines from) {
+            int capacity = Math.max(4, from.size() + 2);
+            this.ids = Arrays.copyOf(from.productIds, capacity);
+            this.qtys = Arrays.copyOf(from.quantities, capacity);
+            this.size = from.size();
+        }
+
+        /**
+         * @param productId product ID
+         * @return current quantity, or 0 if absent
+         */
+        public int get(long productId) {
+            int i = indexOf(ids, size, productId);
+            return i < 0 ? 0 : qtys[i];
+        }
+
+        /**
+         * Sets a line's quantity; existing lines keep their position,
+         * new lines are appended. A quantity <= 0 removes the line.
+         *
+         * @param productId product ID
+         * @param quantity  new quantity
+         * @return this builder
+         */
+        public Builder set(long productId, int quantity) {
+            if (quantity <= 0) return remove(productId);
+            int i = indexOf(ids, size, productId);
+            if (i >= 0) {
+                qtys[i] = quantity;
+                return this;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                qtys = Arrays.copyOf(qtys, size * 2);
+            }
+            ids[size] = productId;
+            qtys[size] = quantity;
+            size++;
+            return this;
+        }
+
+        /**
+         * Removes a line (no-op if absent); later lines move up by one.
+         *
+         * @param productId product ID
+         * @return this builder
+         */
+        public Builder remove(long productId) {
+            int i = indexOf(ids, size, productId);
+            if (i < 0) return this;
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            System.arraycopy(qtys, i + 1, qtys, i, size - i - 1);
+            size--;
+            return this;
+        }
+
+        /**
+         * Removes all lines.
+         *
+         * @return this builder
+         */
+        public Builder clear() {
+            size = 0;
+            return this;
+        }
+
+        /**
+         * @return immutable lines with exactly-sized arrays
+         */
+        public CartLines build() {
+            if (size == 0) return EMPTY;
+            return new CartLines(Arrays.copyOf(ids, size), Arrays.copyOf(qtys, size));
+        }
+    }
+
+    private static int indexOf(long[] ids, int size, long productId) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == productId) return i;
+        }
+        return -1;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarLong(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarLong(byte[] in, int[] pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= in.length) throw new IllegalArgumentException("Malformed cart lines");
+            byte b = in[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed cart lines");
+    }
+}
@@ -0,0 +1,25 @@
+package com.healthyeats.server.cart;
+
+/**
+ * A single cart mutation inside a batch sent to {@code PATCH /api/cart/items}.
+ *
+ * Semantics match the single-item endpoints:
+ * - ADD:    add {@code quantity} to the line (negative = decrement)
+ * - SET:    set the line to exactly {@code quantity} (0 = remove)
+ * - REMOVE: remove the line ({@code quantity} is ignored)
+ *
+ * Example: {"op": "ADD", "productId": 1, "quantity": 2}
+ *
+ * @param op        kind of mutation
+ * @param productId ID of the product the operation applies to
+ * @param quantity  delta (ADD) or exact quantity (SET); defaults to 1 for ADD
+ */
+public record CartOperation(
+        Type op,
+        Long productId,
+        Integer quantity
+) {
+
+    /** Kinds of cart mutations. */
+    public enum Type { ADD, SET, REMOVE }
+}
@@ -0,0 +1,54 @@
+package com.healthyeats.server.cart;
+
+/**
+ * Where the cart of a request lives, as resolved by {@link CartResolver}.
+ *
+ * - {@link Stored}: server-side, in the {@link CartStore} under a cart ID
+ *   (mutations are serialised per cart ID)
+ * - {@link Detached}: carried by the client in the signed {@link SignedCartCookie};
+ *   {@link CartService} updates it in memory and the caller writes it back
+ */
+public sealed interface CartRef permits CartRef.Stored, CartRef.Detached {
+
+    static Stored stored(String cartId) {
+        return new Stored(cartId);
+    }
+
+    static Detached detached(StoredCart cart) {
+        return new Detached(cart);
+    }
+
+    /**
+     * Cart kept in the {@link CartStore}.
+     *
+     * @param cartId cart ID (from the {@link CartCookie})
+     */
+    record Stored(String cartId) implements CartRef {}
+
+    /**
+     * Cart decoded from the client's cookie. Holds the current content and
+     * whether a mutation changed it (i.e. the cookie must be re-issued).
+     */
+    final class Detached implements CartRef {
+
+        private StoredCart cart;
+        private boolean changed;
+
+        private Detached(StoredCart cart) {
+            this.cart = cart;
+        }
+
+        public StoredCart cart() {
+            return cart;
+        }
+
+        public boolean changed() {
+            return changed;
+        }
+
+        void update(StoredCart next) {
+            this.cart = next;
+            this.changed = true;
+        }
+    }
+}
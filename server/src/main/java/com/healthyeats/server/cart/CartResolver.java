@@ -0,0 +1,129 @@
+package com.healthyeats.server.cart;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Decides where the cart of a request lives ({@code cart.anonymous}):
+ *
+ * - "store" (default): every cart is server-side, in the {@link CartStore}
+ *   under the {@link CartCookie} ID.
+ * - "signed-cookie": anonymous visitors without a server-side cart keep their
+ *   cart in the {@link SignedCartCookie}, so bots and window-shoppers use no
+ *   server memory or storage. The cart moves into the store (merged into any
+ *   existing server-side cart) when the visitor logs in or checks out, see
+ *   {@link #promote}. Authenticated users always get a server-side cart.
+ *
+ * Neither mode creates an HTTP session.
+ */
+@Component
+public class CartResolver {
+
+    private final CartCookie cartCookie;
+    private final SignedCartCookie signedCookie;
+    private final CartService service;
+    private final boolean signedMode;
+
+    public CartResolver(CartCookie cartCookie,
+                        SignedCartCookie signedCookie,
+                        CartService service,
+                        @Value("${cart.anonymous:store}") String anonymousMode) {
+        this.cartCookie = cartCookie;
+        this.signedCookie = signedCookie;
+        this.service = service;
+        this.signedMode = switch (anonymousMode) {
+            case "store" -> false;
+            case "signed-cookie" -> true;
+            default -> throw new IllegalArgumentException("cart.anonymous must be 'store' or 'signed-cookie'");
+        };
+    }
+
+    /**
+     * Resolves the cart for a read-only request. Never issues a cookie,
+     * except to move a signed cart into the store for an authenticated user.
+     *
+     * @param request  current request
+     * @param response current response
+     * @return cart, or empty if the client has none yet
+     */
+    public Optional<CartRef> read(HttpServletRequest request, HttpServletResponse response) {
+        if (signedMode && isAnonymous() && cartCookie.read(request).isEmpty()) {
+            return signedCookie.read(request).map(CartRef::detached);
+        }
+        return storedCartId(request, response).map(CartRef::stored);
+    }
+
+    /**
+     * Resolves the cart for a mutating request, creating it if missing.
+     * Pass the result to {@link #commit} after the mutation.
+     *
+     * @param request  current request
+     * @param response current response (may receive Set-Cookie)
+     * @return cart to mutate
+     */
+    public CartRef readOrCreate(HttpServletRequest request, HttpServletResponse response) {
+        if (signedMode && isAnonymous() && cartCookie.read(request).isEmpty()) {
+            return CartRef.detached(signedCookie.read(request).orElse(StoredCart.EMPTY));
+        }
+        return CartRef.stored(storedCartId(request, response)
+                .orElseGet(() -> cartCookie.readOrCreate(request, response)));
+    }
+
+    /**
+     * Writes a mutated cookie cart back to the client (no-op for stored carts).
+     *
+     * @param cart     cart returned by {@link #readOrCreate}
+     * @param response current response
+     */
+    public void commit(CartRef cart, HttpServletResponse response) {
+        if (cart instanceof CartRef.Detached detached && detached.changed()) {
+            signedCookie.write(response, detached.cart());
+        }
+    }
+
+    /**
+     * Moves the signed cookie cart (if any) into the store and deletes the cookie.
+     * Lines are added to any existing server-side cart of this client.
+     * Called at login and checkout, and whenever a signed cart shows up next to
+     * a server-side cart.
+     *
+     * @param request  current request
+     * @param response current response (receives the cookie changes)
+     */
+    public void promote(HttpServletRequest request, HttpServletResponse response) {
+        storedCartId(request, response);
+    }
+
+    /**
+     * Returns the server-side cart ID of this client, first moving a signed
+     * cookie cart into the store (issuing a cart ID if needed).
+     *
+     * @return cart ID, or empty if the client has no server-side cart
+     */
+    private Optional<String> storedCartId(HttpServletRequest request, HttpServletResponse response) {
+        Optional<String> cartId = cartCookie.read(request);
+        if (!signedMode) return cartId;
+
+        Optional<StoredCart> anonymous = signedCookie.read(request);
+        if (anonymous.isEmpty()) return cartId;
+
+        signedCookie.expire(response);
+        if (anonymous.get().lines().isEmpty()) return cartId;
+
+        String id = cartId.orElseGet(() -> cartCookie.readOrCreate(request, response));
+        service.merge(CartRef.stored(id), anonymous.get().lines());
+        return Optional.of(id);
+    }
+
+    private static boolean isAnonymous() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null || !authentication.isAuthenticated()
+                || authentication.getPrincipal().equals("anonymousUser");
+    }
+}
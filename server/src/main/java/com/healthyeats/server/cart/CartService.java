@@ -1,75 +1,136 @@
 package com.healthyeats.server.cart;
 
-import com.healthyeats.server.product.Product;
-import com.healthyeats.server.product.ProductRepository;
-import jakarta.servlet.http.HttpSession;
+import com.healthyeats.server.catalog.CatalogProduct;
+import com.healthyeats.server.catalog.CatalogService;
+import com.healthyeats.server.catalog.CatalogSnapshot;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Service layer for managing shopping cart logic.
  *
- * The cart is stored in the user's HTTP session as a map:
- *   - Key: Product ID
- *   - Value: Quantity
+ * Carts are addressed by a {@link CartRef} resolved by {@link CartResolver}:
+ * either kept in the {@link CartStore} under the cart ID from the
+ * {@link CartCookie}, or carried by the client in the {@link SignedCartCookie}.
+ * Either way the content is a compact {@link CartLines} list
+ * (product ID and quantity per line, in insertion order).
  *
- * Provides operations for adding, setting, and removing items,
- * as well as converting the raw cart map into a CartDTO
+ * Provides operations for adding, setting, and removing items
+ * (individually or as one batch via {@link #apply}),
+ * as well as converting the raw cart lines into a CartDTO
  * with line totals and computed subtotal/tax/total.
+ *
+ * Concurrency: every mutation is a load → modify → save cycle on one cart.
+ * Each change increments the cart version, and the store saves it only if
+ * the cart is still at the version it was loaded at, so two tabs or a double
+ * click cannot lose each other's updates, even when they reach different
+ * nodes. Callers may pass the version they last saw (from If-Match) and get a
+ * {@link CartVersionConflictException} if the cart has moved on since; without
+ * If-Match a conflicting cycle is simply rerun on the fresh cart.
+ * Within one node, cycles on the same stored cart are also serialised by a
+ * striped lock (one of {@code cart.lock-stripes} locks, chosen by cart ID), so
+ * they wait for each other instead of conflicting. Pricing happens after the
+ * lock is released.
+ *
+ * Prices, names and image URLs are read from the in-memory
+ * {@link CatalogService} snapshot via {@link CatalogService#cached()}, so cart
+ * operations never wait for the database: a stale snapshot is served while it
+ * is reloaded in the background (bounded by {@code catalog.max-staleness}).
+ * Prices are re-validated against the database only at checkout.
+ *
+ * Metrics: {@code cart.operations} (timer per operation: read, add, set,
+ * remove, batch, merge, clear) and {@code cart.lines} (lines per cart after
+ * each change).
  */
 @Service
 public class CartService {
-    /** Session attribute key for storing the cart map */
-    static final String CART_KEY = "CART_MAP";
 
-    private final ProductRepository productRepo;
+    /** Upper bound on operations in one batch; larger than any realistic cart. */
+    static final int MAX_BATCH_OPERATIONS = 200;
+
+    /** Attempts at a cycle without If-Match before a conflict is passed on to the client. */
+    static final int MAX_SAVE_ATTEMPTS = 10;
+
+    private final CatalogService catalog;
+    private final CartStore store;
+    private final ReentrantLock[] locks;
 
-    public CartService(ProductRepository productRepo) {
-        this.productRepo = productRepo;
+    private final Timer readTimer;
+    private final Timer addTimer;
+    private final Timer setTimer;
+    private final Timer removeTimer;
+    private final Timer batchTimer;
+    private final Timer mergeTimer;
+    private final Timer clearTimer;
+    private final DistributionSummary cartLines;
+
+    public CartService(CatalogService catalog,
+                       CartStore store,
+                       @Value("${cart.lock-stripes:64}") int lockStripes,
+                       MeterRegistry meterRegistry) {
+        this.catalog = catalog;
+        this.store = store;
+        // Round up to a power of two so the stripe index is a bit mask
+        int n = Integer.highestOneBit(Math.max(1, lockStripes - 1)) << 1;
+        this.locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) locks[i] = new ReentrantLock();
+
+        this.readTimer = operationTimer(meterRegistry, "read");
+        this.addTimer = operationTimer(meterRegistry, "add");
+        this.setTimer = operationTimer(meterRegistry, "set");
+        this.removeTimer = operationTimer(meterRegistry, "remove");
+        this.batchTimer = operationTimer(meterRegistry, "batch");
+        this.mergeTimer = operationTimer(meterRegistry, "merge");
+        this.clearTimer = operationTimer(meterRegistry, "clear");
+        this.cartLines = DistributionSummary.builder("cart.lines")
+                .description("Lines in a cart after a change")
+                .register(meterRegistry);
+    }
+
+    private static Timer operationTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("cart.operations")
+                .description("Cart service operations, including store access and pricing")
+                .tag("operation", operation)
+                .register(meterRegistry);
     }
 
     /**
-     * Retrieves the mutable cart map from the session.
-     * Creates a new empty LinkedHashMap if missing.
-     *
-     * LinkedHashMap is used to preserve insertion order,
-     * so items appear in the order they were added (better UX).
+     * Returns the current cart as a DTO, computing totals from the catalog snapshot.
+     * Never creates a cart.
      *
-     * @param session current HTTP session
-     * @return mutable cart map (productId → quantity)
+     * @param cart cart, or null if the client has no cart yet
+     * @return cart DTO
      */
-    @SuppressWarnings("unchecked")
-    private Map<Long, Integer> getCartMap(HttpSession session) {
-        Object obj = session.getAttribute(CART_KEY);
-        if (obj instanceof Map<?, ?> map) {
-            return (Map<Long, Integer>) map;
-        }
-        Map<Long, Integer> fresh = new LinkedHashMap<>();
-        session.setAttribute(CART_KEY, fresh);
-        return fresh;
+    public CartDTO getCart(CartRef cart) {
+        return readTimer.record(() -> buildDTO(load(cart)));
     }
 
     /**
-     * Returns the current cart as a DTO, computing totals from the database.
+     * Returns the raw lines of a cart (for checkout, which prices them itself).
      *
-     * @param session current HTTP session
-     * @return cart DTO
+     * @param cart cart, or null if the client has no cart yet
+     * @return cart lines (empty if none)
      */
-    public CartDTO getCart(HttpSession session) {
-        var cartMap = getCartMap(session);
-        return buildDTO(cartMap);
+    public CartLines lines(CartRef cart) {
+        return load(cart).lines();
     }
 
     /**
      * Clears the entire cart and returns an empty DTO.
      *
-     * @param session current HTTP session
+     * @param cart            cart to change
+     * @param expectedVersion version from If-Match, or null to skip the check
      * @return empty cart DTO
      */
-    public CartDTO clear(HttpSession session) {
-        session.setAttribute(CART_KEY, new LinkedHashMap<Long, Integer>());
-        return buildDTO(getCartMap(session));
+    public CartDTO clear(CartRef cart, Long expectedVersion) {
+        return mutate(cart, expectedVersion, clearTimer, CartLines.Builder::clear);
     }
 
     /**
@@ -77,25 +138,15 @@ public class CartService {
      * - If resulting qty <= 0 → remove the product line.
      * - Caps qty to a maximum of 99 to avoid unrealistic values.
      *
-     * @param session   current HTTP session
-     * @param productId ID of the product
-     * @param deltaQty  change in quantity (positive = add, negative = subtract)
+     * @param cart            cart to change
+     * @param productId       ID of the product
+     * @param deltaQty        change in quantity (positive = add, negative = subtract)
+     * @param expectedVersion version from If-Match, or null to skip the check
      * @return updated cart DTO
      */
-    public CartDTO add(HttpSession session, Long productId, Integer deltaQty) {
-        if (deltaQty == 0) return getCart(session);
-
-        var cartMap = getCartMap(session);
-        int newQty = cartMap.getOrDefault(productId, 0) + deltaQty;
-
-        if (newQty <= 0) {
-            cartMap.remove(productId);
-        } else {
-            cartMap.put(productId, Math.min(newQty, 99)); // cap qty
-        }
-
-        session.setAttribute(CART_KEY, cartMap);
-        return buildDTO(cartMap);
+    public CartDTO add(CartRef cart, Long productId, Integer deltaQty, Long expectedVersion) {
+        return mutate(cart, expectedVersion, addTimer,
+                lines -> applyQty(lines, productId, lines.get(productId) + deltaQty));
     }
 
     /**
@@ -103,86 +154,244 @@ public class CartService {
      * - If qty <= 0 → remove the product line.
      * - Caps qty to a maximum of 99.
      *
-     * @param session   current HTTP session
-     * @param productId ID of the product
-     * @param qty       exact quantity to set
+     * @param cart            cart to change
+     * @param productId       ID of the product
+     * @param qty             exact quantity to set
+     * @param expectedVersion version from If-Match, or null to skip the check
+     * @return updated cart DTO
+     */
+    public CartDTO setQty(CartRef cart, Long productId, Integer qty, Long expectedVersion) {
+        return mutate(cart, expectedVersion, setTimer, lines -> applyQty(lines, productId, qty));
+    }
+
+    /**
+     * Removes a product line from the cart by product ID.
+     *
+     * @param cart            cart to change
+     * @param productId       ID of the product to remove
+     * @param expectedVersion version from If-Match, or null to skip the check
      * @return updated cart DTO
      */
-    public CartDTO setQty(HttpSession session, Long productId, Integer qty) {
-        var cartMap = getCartMap(session);
+    public CartDTO remove(CartRef cart, Long productId, Long expectedVersion) {
+        return mutate(cart, expectedVersion, removeTimer, lines -> lines.remove(productId));
+    }
 
-        if (qty <= 0) {
-            cartMap.remove(productId);
-        } else {
-            cartMap.put(productId, Math.min(qty, 99));
+    /**
+     * Applies a batch of add/set/remove operations and prices the cart once.
+     *
+     * Steps:
+     * 1. Validate every operation up front, so a bad entry rejects the whole batch.
+     * 2. Apply the operations in order to a working copy of the cart.
+     * 3. Save the result to the store in a single write (skipped if nothing changed).
+     * 4. Build the DTO once for the final state.
+     *
+     * @param cart            cart to change
+     * @param operations      operations to apply, in order
+     * @param expectedVersion version from If-Match, or null to skip the check
+     * @return updated cart DTO
+     * @throws IllegalArgumentException if any operation is malformed
+     */
+    public CartDTO apply(CartRef cart, List<CartOperation> operations, Long expectedVersion) {
+        if (operations == null || operations.isEmpty()) return getCart(cart);
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_OPERATIONS + " operations per request");
+        }
+        for (var op : operations) {
+            validate(op);
         }
 
-        session.setAttribute(CART_KEY, cartMap);
-        return buildDTO(cartMap);
+        return mutate(cart, expectedVersion, batchTimer, lines -> {
+            for (var op : operations) {
+                switch (op.op()) {
+                    case ADD -> {
+                        int delta = op.quantity() == null ? 1 : op.quantity();
+                        applyQty(lines, op.productId(), lines.get(op.productId()) + delta);
+                    }
+                    case SET -> applyQty(lines, op.productId(), op.quantity());
+                    case REMOVE -> lines.remove(op.productId());
+                }
+            }
+        });
     }
 
     /**
-     * Removes a product line from the cart by product ID.
+     * Adds the given lines to a cart (used to move an anonymous cookie cart
+     * into the store). Quantities of lines present in both are summed (capped at 99).
      *
-     * @param session   current HTTP session
-     * @param productId ID of the product to remove
+     * @param cart  cart to merge into
+     * @param lines lines to add
      * @return updated cart DTO
      */
-    public CartDTO remove(HttpSession session, Long productId) {
-        var cartMap = getCartMap(session);
-        cartMap.remove(productId);
-        session.setAttribute(CART_KEY, cartMap);
-        return buildDTO(cartMap);
+    public CartDTO merge(CartRef cart, CartLines lines) {
+        return mutate(cart, null, mergeTimer, current -> {
+            for (int i = 0; i < lines.size(); i++) {
+                long pid = lines.productId(i);
+                applyQty(current, pid, current.get(pid) + lines.quantity(i));
+            }
+        });
     }
 
     /**
-     * Internal helper: converts the raw cart map into a CartDTO.
+     * Runs one read-modify-write cycle on a cart and prices the result.
      *
      * Steps:
-     * 1. Load products from DB by IDs in the cart map.
+     * 1. Stored carts: take the cart's stripe lock and load it from the store.
+     *    Cookie carts: use the decoded content (no lock; the client owns it).
+     * 2. Compare the version with {@code expectedVersion}.
+     * 3. Apply {@code change} to a builder over the current lines.
+     * 4. If anything changed, save the lines with version + 1, provided the
+     *    stored cart is still at the loaded version. If it is not (another node
+     *    changed it), start over from step 1 unless {@code expectedVersion} was given.
+     * 5. Price the resulting cart (outside the lock).
+     *
+     * @param cart            cart to change
+     * @param expectedVersion version the client last saw, or null to skip the check
+     * @param timer           timer of the calling operation
+     * @param change          modification applied to the lines
+     * @return updated cart DTO
+     * @throws CartVersionConflictException if the current version differs from {@code expectedVersion}
+     */
+    private CartDTO mutate(CartRef cart, Long expectedVersion, Timer timer, Consumer<CartLines.Builder> change) {
+        return timer.record(() -> buildDTO(change(cart, expectedVersion, change)));
+    }
+
+    private StoredCart change(CartRef cart, Long expectedVersion, Consumer<CartLines.Builder> change) {
+        StoredCart result = switch (cart) {
+            case CartRef.Stored stored -> {
+                ReentrantLock lock = lockFor(stored.cartId());
+                lock.lock();
+                try {
+                    yield saveLoaded(stored.cartId(), expectedVersion, change);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            case CartRef.Detached detached -> {
+                StoredCart next = next(detached.cart(), expectedVersion, change);
+                if (next != detached.cart()) detached.update(next);
+                yield next;
+            }
+        };
+        cartLines.record(result.lines().size());
+        return result;
+    }
+
+    /**
+     * Loads, changes and conditionally saves a stored cart, rerunning the cycle
+     * when another node saved first (unless the caller pinned a version).
+     */
+    private StoredCart saveLoaded(String cartId, Long expectedVersion, Consumer<CartLines.Builder> change) {
+        for (int attempt = 1; ; attempt++) {
+            StoredCart current = store.load(cartId);
+            StoredCart next = next(current, expectedVersion, change);
+            if (next == current) return current;
+            try {
+                store.save(cartId, next, current.version());
+                return next;
+            } catch (CartVersionConflictException e) {
+                if (expectedVersion != null || attempt == MAX_SAVE_ATTEMPTS) throw e;
+            }
+        }
+    }
+
+    /**
+     * Computes the next cart state: checks the version, applies the change,
+     * and bumps the version only if the lines actually changed.
+     *
+     * @return the new cart, or {@code current} itself if nothing changed
+     */
+    private static StoredCart next(StoredCart current, Long expectedVersion, Consumer<CartLines.Builder> change) {
+        if (expectedVersion != null && expectedVersion != current.version()) {
+            throw new CartVersionConflictException(expectedVersion, current.version());
+        }
+
+        CartLines.Builder builder = current.lines().toBuilder();
+        change.accept(builder);
+        CartLines lines = builder.build();
+
+        return lines.equals(current.lines()) ? current : new StoredCart(lines, current.version() + 1);
+    }
+
+    private StoredCart load(CartRef cart) {
+        return switch (cart) {
+            case null -> StoredCart.EMPTY;
+            case CartRef.Stored stored -> store.load(stored.cartId());
+            case CartRef.Detached detached -> detached.cart();
+        };
+    }
+
+    private ReentrantLock lockFor(String cartId) {
+        int h = cartId.hashCode();
+        return locks[(h ^ (h >>> 16)) & (locks.length - 1)];
+    }
+
+    /**
+     * Rejects operations that are missing required fields.
+     *
+     * @param op operation to check
+     * @throws IllegalArgumentException if the operation is malformed
+     */
+    private static void validate(CartOperation op) {
+        if (op == null || op.op() == null) {
+            throw new IllegalArgumentException("Each operation needs an op (ADD, SET or REMOVE)");
+        }
+        if (op.productId() == null) {
+            throw new IllegalArgumentException("Each operation needs a productId");
+        }
+        if (op.op() == CartOperation.Type.SET && op.quantity() == null) {
+            throw new IllegalArgumentException("SET needs a quantity");
+        }
+    }
+
+    /**
+     * Sets a line to {@code qty}, removing it when qty <= 0 and capping it at 99.
+     */
+    private static void applyQty(CartLines.Builder lines, long productId, int qty) {
+        lines.set(productId, Math.min(qty, 99));
+    }
+
+    /**
+     * Internal helper: converts a stored cart into a CartDTO.
+     *
+     * Steps:
+     * 1. Look up products by ID in the current catalog snapshot.
      * 2. Skip any products that no longer exist or have invalid quantities.
      * 3. Build CartItemDTO list with line totals.
      * 4. Compute subtotal (sum of line totals).
      * 5. Compute tax (currently 0, but can be extended per region/category).
-     * 6. Return a CartDTO with items, subtotal, tax, and total.
+     * 6. Return a CartDTO with items, subtotal, tax, total and version.
      *
-     * @param cartMap map of productId → quantity
+     * @param cart stored cart (lines plus version)
      * @return fully built CartDTO
      */
-    private CartDTO buildDTO(Map<Long, Integer> cartMap) {
-        if (cartMap.isEmpty()) return new CartDTO(List.of(), 0, 0, 0);
+    private CartDTO buildDTO(StoredCart cart) {
+        if (cart.lines().isEmpty()) return new CartDTO(List.of(), 0, 0, 0, cart.version());
 
-        // Load all products in one DB query
-        var products = productRepo.findAllById(cartMap.keySet());
-
-        // Index products by ID for quick lookup
-        Map<Long, Product> productById = new HashMap<>();
-        for (Product p : products) {
-            productById.put(p.getId(), p);
-        }
+        // Resolve products from the in-memory snapshot (no DB round trip)
+        CatalogSnapshot snapshot = catalog.cached();
 
         List<CartItemDTO> items = new ArrayList<>();
         int subtotal = 0;
 
         // Preserve insertion order for deterministic UI rendering
-        for (var entry : cartMap.entrySet()) {
-            Long pid = entry.getKey();
-            Integer qty = entry.getValue();
-            Product p = productById.get(pid);
+        CartLines lines = cart.lines();
+        for (int i = 0; i < lines.size(); i++) {
+            int qty = lines.quantity(i);
+            CatalogProduct p = snapshot.productsById().get(lines.productId(i));
 
-            if (p == null || qty == null || qty <= 0) {
+            if (p == null || qty <= 0) {
                 // Product deleted or invalid quantity → skip
                 continue;
             }
 
-            int line = p.getPriceCents() * qty;
+            int line = p.priceCents() * qty;
             subtotal += line;
 
             items.add(new CartItemDTO(
-                    p.getId(),
-                    p.getName(),
-                    p.getImageUrl(),
-                    p.getPriceCents(),
+                    p.id(),
+                    p.name(),
+                    p.imageUrl(),
+                    p.priceCents(),
                     qty,
                     line
             ));
@@ -191,6 +400,6 @@ public class CartService {
         int tax = 0; // Placeholder: extend to compute VAT dynamically
         int total = subtotal + tax;
 
-        return new CartDTO(items, subtotal, tax, total);
+        return new CartDTO(items, subtotal, tax, total, cart.version());
     }
 }
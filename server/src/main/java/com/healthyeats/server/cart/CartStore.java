@@ -0,0 +1,45 @@
+package com.healthyeats.server.cart;
+
+/**
+ * Storage for shopping carts, keyed by the cart ID from the
+ * {@link CartCookie} (not by HTTP session), so any node can serve any cart.
+ *
+ * Implementations (selected with {@code cart.store}):
+ * - {@link InMemoryCartStore} ("memory", default) → sharded in-process map with TTL eviction
+ * - {@link JdbcCartStore} ("jdbc") → database table with batched conditional writes,
+ *   shared by all nodes and surviving restarts
+ *
+ * Carts are exchanged as immutable {@link StoredCart} values (lines plus version).
+ * {@link CartService} decides the next version; the store only accepts it if the
+ * cart is still at the version it was read at (compare-and-set), so two
+ * read-modify-write cycles on different nodes cannot overwrite each other.
+ */
+public interface CartStore {
+
+    /**
+     * Loads a cart.
+     *
+     * @param cartId cart ID
+     * @return stored cart, or {@link StoredCart#EMPTY} if the cart does not exist
+     */
+    StoredCart load(String cartId);
+
+    /**
+     * Stores a cart, replacing the previous content if it is still at
+     * {@code expectedVersion}. Empty carts are kept (until they expire) so
+     * their version keeps increasing.
+     *
+     * @param cartId          cart ID
+     * @param cart            cart lines and version
+     * @param expectedVersion version the cart was loaded at (0 if it did not exist)
+     * @throws CartVersionConflictException if the stored cart has another version
+     */
+    void save(String cartId, StoredCart cart, long expectedVersion);
+
+    /**
+     * Deletes a cart (no-op if it does not exist).
+     *
+     * @param cartId cart ID
+     */
+    void delete(String cartId);
+}
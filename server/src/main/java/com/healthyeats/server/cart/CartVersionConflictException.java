@@ -0,0 +1,25 @@
+package com.healthyeats.server.cart;
+
+/**
+ * Thrown when a cart mutation carries an {@code If-Match} version that no longer
+ * matches the stored cart, i.e. the cart was changed by another request
+ * (another tab, a double click) since the client last read it.
+ *
+ * Mapped to HTTP 409 (Conflict) by {@link CartController}.
+ */
+public class CartVersionConflictException extends RuntimeException {
+
+    private final long currentVersion;
+
+    public CartVersionConflictException(long expectedVersion, long currentVersion) {
+        super("Cart was modified (expected version " + expectedVersion + ", current version " + currentVersion + ")");
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * @return version of the cart as currently stored
+     */
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
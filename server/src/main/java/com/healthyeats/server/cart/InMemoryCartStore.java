@@ -0,0 +1,143 @@
+package com.healthyeats.server.cart;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process {@link CartStore} ({@code cart.store=memory}, the default).
+ *
+ * Carts are spread over a fixed number of shards, each a plain HashMap
+ * guarded by its own lock, so concurrent requests for different carts
+ * rarely contend. Carts not touched for {@code cart.ttl} are evicted
+ * by a periodic sweep.
+ *
+ * Carts live only as long as the JVM; use {@link JdbcCartStore}
+ * to share carts between nodes and keep them across restarts.
+ *
+ * Metrics: {@code cart.store.carts} (gauge of stored carts).
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryCartStore implements CartStore {
+
+    /** Stored cart plus last access time (for TTL eviction). */
+    private static final class Entry {
+        final StoredCart cart;
+        long lastAccessNanos;
+
+        Entry(StoredCart cart, long now) {
+            this.cart = cart;
+            this.lastAccessNanos = now;
+        }
+    }
+
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, Entry> carts = new HashMap<>();
+    }
+
+    private final Shard[] shards;
+    private final long ttlNanos;
+
+    public InMemoryCartStore(@Value("${cart.memory.shards:16}") int shardCount,
+                             @Value("${cart.ttl:P30D}") Duration ttl,
+                             MeterRegistry meterRegistry) {
+        // Round up to a power of two so the shard index is a bit mask
+        int n = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        this.shards = new Shard[n];
+        for (int i = 0; i < n; i++) shards[i] = new Shard();
+        this.ttlNanos = ttl.toNanos();
+
+        Gauge.builder("cart.store.carts", this, InMemoryCartStore::size)
+                .description("Carts held in memory")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public StoredCart load(String cartId) {
+        Shard shard = shardFor(cartId);
+        shard.lock.lock();
+        try {
+            Entry e = shard.carts.get(cartId);
+            if (e == null) return StoredCart.EMPTY;
+            e.lastAccessNanos = System.nanoTime();
+            return e.cart;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void save(String cartId, StoredCart cart, long expectedVersion) {
+        Entry entry = new Entry(cart, System.nanoTime());
+        Shard shard = shardFor(cartId);
+        shard.lock.lock();
+        try {
+            Entry current = shard.carts.get(cartId);
+            long currentVersion = current == null ? 0 : current.cart.version();
+            if (currentVersion != expectedVersion) {
+                throw new CartVersionConflictException(expectedVersion, currentVersion);
+            }
+            shard.carts.put(cartId, entry);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String cartId) {
+        Shard shard = shardFor(cartId);
+        shard.lock.lock();
+        try {
+            shard.carts.remove(cartId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of stored carts (across all shards)
+     */
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                total += shard.carts.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Evicts carts idle for longer than {@code cart.ttl}, one shard at a time.
+     */
+    @Scheduled(fixedDelayString = "${cart.memory.sweep-interval:PT1M}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.carts.values().removeIf(e -> now - e.lastAccessNanos > ttlNanos);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    private Shard shardFor(String cartId) {
+        int h = cartId.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+}
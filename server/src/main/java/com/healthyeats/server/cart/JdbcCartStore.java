@@ -0,0 +1,262 @@
+package com.healthyeats.server.cart;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Database-backed {@link CartStore} ({@code cart.store=jdbc}).
+ *
+ * Carts are stored one row per cart in the {@code cart_store} table, so they
+ * survive restarts and can be read by any node.
+ *
+ * Every save is a compare-and-set on the row's version:
+ * {@code UPDATE ... WHERE cart_id = ? AND version = ?expected}, or an INSERT
+ * for a cart that does not exist yet. When no row matches, another request
+ * (possibly on another node) changed the cart first and {@link #save} throws
+ * {@link CartVersionConflictException}, so no write is ever dropped silently.
+ *
+ * Group commit: {@link #save} queues the write and waits for it. A single
+ * writer thread drains whatever has queued up (at most {@code cart.jdbc.batch-size}
+ * writes, across all carts) and sends it as one JDBC batch, so a burst of cart
+ * changes costs a few round trips instead of one per click. A save returns only
+ * once its row is written, so reads on any node always see it.
+ *
+ * Rows not updated for {@code cart.ttl} are pruned periodically.
+ *
+ * Metrics: {@code cart.store.pending} (gauge of saves waiting for the writer).
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "jdbc")
+public class JdbcCartStore implements CartStore {
+
+    private static final String UPDATE_SQL =
+            "UPDATE cart_store SET lines = ?, version = ?, updated_at = ? WHERE cart_id = ? AND version = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO cart_store (lines, version, updated_at, cart_id) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final Duration ttl;
+    private final int batchSize;
+
+    /** Saves waiting for the writer thread. */
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public JdbcCartStore(JdbcTemplate jdbc,
+                         @Value("${cart.ttl:P30D}") Duration ttl,
+                         @Value("${cart.jdbc.batch-size:500}") int batchSize,
+                         MeterRegistry meterRegistry) {
+        this.jdbc = jdbc;
+        this.ttl = ttl;
+        this.batchSize = batchSize;
+
+        Gauge.builder("cart.store.pending", queue, BlockingQueue::size)
+                .description("Cart saves waiting for the next batch")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        createTable();
+        writer = Thread.ofPlatform().name("cart-store-writer").daemon().start(this::run);
+    }
+
+    /**
+     * Creates the table on first start (it is not a JPA entity, so it is not
+     * covered by Hibernate's schema management).
+     */
+    void createTable() {
+        jdbc.execute("""
+                CREATE TABLE IF NOT EXISTS cart_store (
+                    cart_id    VARCHAR(64) PRIMARY KEY,
+                    lines      TEXT        NOT NULL,
+                    version    BIGINT      NOT NULL DEFAULT 0,
+                    updated_at TIMESTAMP   NOT NULL
+                )""");
+        jdbc.execute("ALTER TABLE cart_store ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0");
+    }
+
+    @Override
+    public StoredCart load(String cartId) {
+        List<StoredCart> rows = jdbc.query("SELECT lines, version FROM cart_store WHERE cart_id = ?",
+                (rs, i) -> new StoredCart(decode(rs.getString(1)), rs.getLong(2)), cartId);
+        return rows.isEmpty() ? StoredCart.EMPTY : rows.get(0);
+    }
+
+    /**
+     * Queues the write for the next batch and waits until it is committed.
+     *
+     * @throws CartVersionConflictException if the stored version is no longer {@code expectedVersion}
+     */
+    @Override
+    public void save(String cartId, StoredCart cart, long expectedVersion) {
+        if (!running) throw new IllegalStateException("Cart store is shutting down");
+        Write write = new Write(cartId, cart, expectedVersion, new CompletableFuture<>());
+        queue.add(write);
+        try {
+            write.done().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String cartId) {
+        jdbc.update("DELETE FROM cart_store WHERE cart_id = ?", cartId);
+    }
+
+    /**
+     * Deletes carts not updated within {@code cart.ttl}.
+     */
+    @Scheduled(fixedDelayString = "${cart.jdbc.prune-interval:PT1H}")
+    public void pruneExpired() {
+        jdbc.update("DELETE FROM cart_store WHERE updated_at < ?", Timestamp.from(Instant.now().minus(ttl)));
+    }
+
+    /**
+     * Stops accepting saves and waits for the writer to finish the queued ones.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) writer.join(10_000);
+    }
+
+    private void run() {
+        List<Write> drained = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                drained.add(first);
+                queue.drainTo(drained, batchSize - 1);
+                writeAll(drained);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drained.forEach(w -> w.done().completeExceptionally(new IllegalStateException("Cart store stopped")));
+                return;
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a drained batch. Only one write per cart goes into a statement
+     * batch (each is checked against the version before it); a second write
+     * for the same cart waits for the next round.
+     */
+    private void writeAll(List<Write> drained) {
+        List<Write> remaining = drained;
+        while (!remaining.isEmpty()) {
+            Map<String, Write> batch = new LinkedHashMap<>();
+            List<Write> later = new ArrayList<>();
+            for (Write w : remaining) {
+                if (batch.putIfAbsent(w.cartId(), w) != null) later.add(w);
+            }
+            try {
+                write(new ArrayList<>(batch.values()));
+            } catch (RuntimeException e) {
+                batch.values().forEach(w -> w.done().completeExceptionally(e));
+            }
+            remaining = later;
+        }
+    }
+
+    /**
+     * Updates the rows still at their expected version in one batch, inserts
+     * new carts in a second one, and fails every other write with a conflict.
+     */
+    private void write(List<Write> writes) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int[] updated = jdbc.batchUpdate(UPDATE_SQL, writes.stream()
+                .map(w -> new Object[]{ encode(w.cart().lines()), w.cart().version(), now, w.cartId(), w.expectedVersion() })
+                .toList());
+
+        List<Write> inserts = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            Write w = writes.get(i);
+            if (updated[i] > 0) w.done().complete(null);
+            else if (w.expectedVersion() == 0) inserts.add(w);
+            else conflict(w);
+        }
+        insertAll(inserts, now);
+    }
+
+    /**
+     * Inserts carts that did not exist when they were read. If another
+     * request created one of them meanwhile, the batch hits the primary key;
+     * the carts are then inserted one by one and the late ones conflict.
+     */
+    private void insertAll(List<Write> writes, Timestamp now) {
+        if (writes.isEmpty()) return;
+        try {
+            jdbc.batchUpdate(INSERT_SQL, writes.stream().map(w -> insertArgs(w, now)).toList());
+            writes.forEach(w -> w.done().complete(null));
+        } catch (DuplicateKeyException e) {
+            for (Write w : writes) {
+                try {
+                    jdbc.update(INSERT_SQL, insertArgs(w, now));
+                    w.done().complete(null);
+                } catch (DuplicateKeyException taken) {
+                    conflict(w);
+                }
+            }
+        }
+    }
+
+    private void conflict(Write w) {
+        List<Long> current = jdbc.queryForList("SELECT version FROM cart_store WHERE cart_id = ?", Long.class, w.cartId());
+        w.done().completeExceptionally(
+                new CartVersionConflictException(w.expectedVersion(), current.isEmpty() ? 0 : current.get(0)));
+    }
+
+    private static Object[] insertArgs(Write w, Timestamp now) {
+        return new Object[]{ encode(w.cart().lines()), w.cart().version(), now, w.cartId() };
+    }
+
+    /** A queued save and the future its caller waits on. */
+    private record Write(String cartId, StoredCart cart, long expectedVersion, CompletableFuture<Void> done) {
+    }
+
+    /** Encodes cart lines as "productId:qty,productId:qty" (insertion order). */
+    static String encode(CartLines lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(lines.productId(i)).append(':').append(lines.quantity(i));
+        }
+        return sb.toString();
+    }
+
+    static CartLines decode(String encoded) {
+        if (encoded.isEmpty()) return CartLines.EMPTY;
+        CartLines.Builder lines = CartLines.EMPTY.toBuilder();
+        for (String pair : encoded.split(",")) {
+            int colon = pair.indexOf(':');
+            lines.set(Long.parseLong(pair.substring(0, colon)), Integer.parseInt(pair.substring(colon + 1)));
+        }
+        return lines.build();
+    }
+}
@@ -0,0 +1,170 @@
+package com.healthyeats.server.cart;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Encodes an anonymous visitor's cart into the HMAC-signed {@value #NAME}
+ * cookie ({@code cart.anonymous=signed-cookie}), so anonymous carts cost no
+ * server memory or storage at all.
+ *
+ * Format: {@code <version>.<expires>.<lines>.<signature>}, where {@code expires}
+ * is the expiry in epoch seconds ({@code cart.ttl} after the last write) and
+ * {@code lines} is the base64url-encoded {@link CartLines#toBytes() binary form}
+ * (a few bytes per line), e.g. {@code 3.1767225600.AgwCBwE.Q2x3...}. The
+ * signature is a truncated HMAC-SHA256 over the cookie name and payload with
+ * {@code cart.cookie.secret}; cookies with a bad signature or format, or past
+ * their expiry, are ignored (treated as no cart). The expiry is checked on the
+ * server because a client can keep replaying a cookie after its Max-Age.
+ *
+ * The signature prevents clients from forging versions or malformed
+ * content; prices never come from the cookie (they are always resolved
+ * from the catalog). If no secret is configured, a random per-process key
+ * is used, so cookies only verify on the node that issued them until restart;
+ * set {@code CART_COOKIE_SECRET} when running more than one node.
+ */
+@Component
+public class SignedCartCookie {
+
+    /** Cookie name. */
+    public static final String NAME = "CART_DATA";
+
+    /** Stay well below the ~4 KB per-cookie limit of browsers. */
+    static final int MAX_VALUE_LENGTH = 3800;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    private final SecretKeySpec key;
+    private final Duration maxAge;
+    private final boolean secure;
+    private final Clock clock;
+
+    @Autowired
+    public SignedCartCookie(@Value("${cart.cookie.secret:}") String secret,
+                            @Value("${cart.ttl:P30D}") Duration maxAge,
+                            @Value("${cart.cookie.secure:false}") boolean secure) {
+        this(secret, maxAge, secure, Clock.systemUTC());
+    }
+
+    SignedCartCookie(String secret, Duration maxAge, boolean secure, Clock clock) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.maxAge = maxAge;
+        this.secure = secure;
+        this.clock = clock;
+    }
+
+    /**
+     * Reads and verifies the cart cookie.
+     *
+     * @param request current request
+     * @return decoded cart, or empty if the cookie is missing, tampered with, malformed or expired
+     */
+    public Optional<StoredCart> read(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return Optional.empty();
+        for (Cookie c : cookies) {
+            if (NAME.equals(c.getName())) {
+                return decode(c.getValue());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Issues the cookie for the given cart.
+     *
+     * @param response current response
+     * @param cart     cart to encode
+     * @throws IllegalArgumentException if the cart is too large for a cookie
+     */
+    public void write(HttpServletResponse response, StoredCart cart) {
+        String value = encode(cart);
+        if (value.length() > MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("Cart has too many items; sign in to keep a larger cart");
+        }
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(value, maxAge).toString());
+    }
+
+    /**
+     * Deletes the cookie on the client (after the cart moved into the store).
+     *
+     * @param response current response
+     */
+    public void expire(HttpServletResponse response) {
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie("", Duration.ZERO).toString());
+    }
+
+    String encode(StoredCart cart) {
+        long expires = clock.instant().plus(maxAge).getEpochSecond();
+        String payload = cart.version() + "." + expires + "." + BASE64.encodeToString(cart.lines().toBytes());
+        return payload + "." + sign(payload);
+    }
+
+    Optional<StoredCart> decode(String value) {
+        int sigStart = value.lastIndexOf('.');
+        if (sigStart <= 0) return Optional.empty();
+        String payload = value.substring(0, sigStart);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = value.substring(sigStart + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) return Optional.empty();
+
+        try {
+            String[] parts = payload.split("\\.", -1);
+            if (parts.length != 3) return Optional.empty();
+            long version = Long.parseLong(parts[0]);
+            long expires = Long.parseLong(parts[1]);
+            if (clock.instant().getEpochSecond() >= expires) return Optional.empty();
+            CartLines lines = CartLines.fromBytes(Base64.getUrlDecoder().decode(parts[2]));
+            return Optional.of(new StoredCart(lines, version));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update((NAME + "|").getBytes(StandardCharsets.UTF_8));
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return BASE64.encodeToString(Arrays.copyOf(digest, SIGNATURE_BYTES));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private ResponseCookie cookie(String value, Duration age) {
+        return ResponseCookie.from(NAME, value)
+                .httpOnly(true)
+                .secure(secure)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(age)
+                .build();
+    }
+}
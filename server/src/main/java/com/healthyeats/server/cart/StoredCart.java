@@ -0,0 +1,23 @@
+package com.healthyeats.server.cart;
+
+import java.io.Serializable;
+
+/**
+ * Cart content as kept in a {@link CartStore}: the lines plus a version number.
+ *
+ * The version starts at 0 for a cart that does not exist yet and is incremented
+ * by {@link CartService} on every change (including clearing the cart), so it
+ * never repeats for a given cart ID. It is returned to clients as the cart's
+ * ETag and checked against {@code If-Match} to detect lost updates.
+ *
+ * @param lines   productId → quantity, in insertion order (compact, immutable)
+ * @param version number of changes applied to this cart
+ */
+public record StoredCart(
+        CartLines lines,
+        long version
+) implements Serializable {
+
+    /** A cart that does not exist yet. */
+    public static final StoredCart EMPTY = new StoredCart(CartLines.EMPTY, 0);
+}
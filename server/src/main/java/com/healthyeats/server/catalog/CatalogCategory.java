@@ -0,0 +1,21 @@
+package com.healthyeats.server.catalog;
+
+import com.healthyeats.server.category.Category;
+
+/**
+ * Immutable, detached copy of a {@link Category} row held inside a {@link CatalogSnapshot}.
+ *
+ * Serializes to the same JSON shape as the entity ({@code {id, name}}).
+ *
+ * @param id   unique identifier of the category
+ * @param name category name (e.g., "Fruits")
+ */
+public record CatalogCategory(
+        Long id,
+        String name
+) {
+
+    static CatalogCategory of(Category c) {
+        return new CatalogCategory(c.getId(), c.getName());
+    }
+}
@@ -0,0 +1,46 @@
+package com.healthyeats.server.catalog;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint exposing the catalog snapshot state and
+ * an explicit refresh hook for operators.
+ *
+ * GET  /actuator/catalog → version, age and row counts
+ * POST /actuator/catalog → force a reload from the database
+ */
+@Component
+@Endpoint(id = "catalog")
+public class CatalogEndpoint {
+
+    private final CatalogService catalogService;
+
+    public CatalogEndpoint(CatalogService catalogService) {
+        this.catalogService = catalogService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> info() {
+        return describe(catalogService.snapshot());
+    }
+
+    @WriteOperation
+    public Map<String, Object> refresh() {
+        return describe(catalogService.refresh());
+    }
+
+    private Map<String, Object> describe(CatalogSnapshot s) {
+        return Map.of(
+                "version", s.version(),
+                "loadedAt", s.loadedAt().toString(),
+                "ageSeconds", s.age().toSeconds(),
+                "products", s.products().size(),
+                "categories", s.categories().size()
+        );
+    }
+}
@@ -0,0 +1,48 @@
+package com.healthyeats.server.catalog;
+
+import com.healthyeats.server.product.Product;
+
+/**
+ * Immutable, detached copy of a {@link Product} row held inside a {@link CatalogSnapshot}.
+ *
+ * Unlike the JPA entity it is safe to share between threads and
+ * never triggers lazy loading or a database round trip.
+ *
+ * @param id           unique identifier of the product
+ * @param name         product name (e.g., "Cucumber")
+ * @param priceCents   price per unit in cents
+ * @param imageUrl     optional image URL
+ * @param categoryId   ID of the category (null if uncategorised)
+ * @param categoryName name of the category (null if uncategorised)
+ * @param unit         unit of measure (e.g., "per piece")
+ */
+public record CatalogProduct(
+        Long id,
+        String name,
+        Integer priceCents,
+        String imageUrl,
+        Long categoryId,
+        String categoryName,
+        String unit
+) {
+
+    /**
+     * Copies the relevant fields out of a managed entity.
+     * The category must already be initialised (e.g. fetch-joined).
+     *
+     * @param p product entity
+     * @return detached catalog product
+     */
+    static CatalogProduct of(Product p) {
+        var category = p.getCategory();
+        return new CatalogProduct(
+                p.getId(),
+                p.getName(),
+                p.getPriceCents(),
+                p.getImageUrl(),
+                category != null ? category.getId() : null,
+                category != null ? category.getName() : null,
+                p.getUnit()
+        );
+    }
+}
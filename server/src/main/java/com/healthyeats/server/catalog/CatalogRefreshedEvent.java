@@ -0,0 +1,16 @@
+package com.healthyeats.server.catalog;
+
+/**
+ * Application event published by {@link CatalogService} every time
+ * a new snapshot has been swapped in.
+ *
+ * Listeners that derive data from the catalog (indexes, caches)
+ * can compare both snapshots to update themselves.
+ *
+ * @param previous snapshot that was replaced (null on first load)
+ * @param current  snapshot that is now active
+ */
+public record CatalogRefreshedEvent(
+        CatalogSnapshot previous,
+        CatalogSnapshot current
+) {}
@@ -0,0 +1,159 @@
+package com.healthyeats.server.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthyeats.server.product.ProductDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pre-serialized JSON bodies for the catalog endpoints
+ * ({@code GET /api/products}, {@code GET /api/categories}).
+ *
+ * The bodies are serialized once per catalog snapshot version and served as
+ * raw bytes, together with a strong ETag derived from the content hash.
+ * Because the ETag depends only on the bytes, every node serving the same
+ * catalog hands out the same ETag, so browsers and the reverse proxy can
+ * revalidate with {@code If-None-Match} and receive {@code 304 Not Modified}.
+ *
+ * Cache-Control is configured under {@code catalog.http.*} in application.yml.
+ */
+@Component
+public class CatalogResponseCache {
+
+    /**
+     * Serialized body plus its ETag.
+     *
+     * @param body JSON bytes
+     * @param etag strong ETag (quoted)
+     */
+    public record CachedJson(byte[] body, String etag) {}
+
+    /** Bodies computed for one snapshot version. */
+    private record Entry(long version, CachedJson products, CachedJson categories) {}
+
+    private final CatalogService catalog;
+    private final ObjectMapper objectMapper;
+    private final CacheControl cacheControl;
+
+    private final AtomicReference<Entry> current = new AtomicReference<>();
+
+    public CatalogResponseCache(CatalogService catalog,
+                                ObjectMapper objectMapper,
+                                @Value("${catalog.http.max-age:PT1M}") Duration maxAge,
+                                @Value("${catalog.http.stale-while-revalidate:PT5M}") Duration staleWhileRevalidate,
+                                @Value("${catalog.http.public:true}") boolean cachePublic) {
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+
+        CacheControl cc = CacheControl.maxAge(maxAge).staleWhileRevalidate(staleWhileRevalidate);
+        this.cacheControl = cachePublic ? cc.cachePublic() : cc.cachePrivate();
+    }
+
+    /**
+     * @return serialized product list for the current catalog version
+     */
+    public CachedJson products() {
+        return entry().products();
+    }
+
+    /**
+     * @return serialized category list for the current catalog version
+     */
+    public CachedJson categories() {
+        return entry().categories();
+    }
+
+    /**
+     * Builds the HTTP response for a cached body.
+     *
+     * For GET/HEAD requests whose {@code If-None-Match} matches the ETag,
+     * Spring MVC turns this 200 into a bodiless {@code 304 Not Modified}.
+     *
+     * @param json cached body
+     * @return response with ETag, Cache-Control and JSON content type
+     */
+    public ResponseEntity<byte[]> toResponse(CachedJson json) {
+        return ResponseEntity.ok()
+                .eTag(json.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json.body());
+    }
+
+    /**
+     * Serializes eagerly whenever a new snapshot is swapped in,
+     * so no request pays for it.
+     */
+    @EventListener
+    public void onCatalogRefreshed(CatalogRefreshedEvent event) {
+        install(build(event.current()));
+    }
+
+    /**
+     * Returns the entry for the active snapshot, rebuilding it if
+     * the snapshot changed since it was computed.
+     */
+    private Entry entry() {
+        CatalogSnapshot snapshot = catalog.snapshot();
+        Entry e = current.get();
+        if (e != null && e.version() >= snapshot.version()) {
+            return e;
+        }
+        return install(build(snapshot));
+    }
+
+    /**
+     * Publishes the entry unless one for a newer snapshot is already there.
+     *
+     * A request that read an older snapshot can finish serializing after the
+     * refresh listener stored the newer entry; swapping by version keeps it
+     * from putting the older bodies (and ETags) back.
+     *
+     * @return the entry now published (the given one or a newer one)
+     */
+    private Entry install(Entry fresh) {
+        return current.accumulateAndGet(fresh, (cur, next) ->
+                cur != null && cur.version() >= next.version() ? cur : next);
+    }
+
+    private Entry build(CatalogSnapshot snapshot) {
+        return new Entry(
+                snapshot.version(),
+                serialize(snapshot.products().stream().map(ProductDTO::of).toList()),
+                serialize(snapshot.categories())
+        );
+    }
+
+    private CachedJson serialize(Object value) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            return new CachedJson(body, etagOf(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize catalog response", e);
+        }
+    }
+
+    /**
+     * Strong ETag: first 128 bits of the SHA-256 of the body, URL-safe Base64.
+     */
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
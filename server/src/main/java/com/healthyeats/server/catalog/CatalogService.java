@@ -0,0 +1,206 @@
+package com.healthyeats.server.catalog;
+
+import com.healthyeats.server.category.CategoryRepository;
+import com.healthyeats.server.product.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service owning the in-memory {@link CatalogSnapshot}.
+ *
+ * Products and categories are read from the database once, turned into
+ * an immutable snapshot and published through an atomic reference.
+ * Product listing, cart pricing and checkout all read from the current
+ * snapshot instead of querying Postgres on every request.
+ *
+ * Two read modes:
+ * - {@link #snapshot()} → always up to date; reloads synchronously if invalidated
+ * - {@link #cached()}   → never waits for the database once warmed up; if the
+ *   snapshot is invalidated or older than {@code catalog.max-staleness}, a
+ *   background reload is started and the current snapshot is served meanwhile
+ *   (used by latency-sensitive paths such as cart pricing)
+ *
+ * Refresh hooks:
+ * - {@link #refresh()}    → reload synchronously and swap the snapshot
+ * - {@link #invalidate()} → mark the snapshot stale and start a background reload
+ * - scheduled refresh every {@code catalog.refresh-interval}
+ *
+ * Metrics:
+ * - catalog.snapshot.version → version of the active snapshot
+ * - catalog.snapshot.age     → seconds since the active snapshot was loaded
+ */
+@Service
+public class CatalogService {
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher events;
+
+    /** Currently active snapshot (null until first load). */
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+
+    /** Set by {@link #invalidate()}, cleared by the next reload. */
+    private volatile boolean stale = false;
+
+    /** Source of snapshot version numbers. */
+    private final AtomicLong versions = new AtomicLong();
+
+    /** Maximum age of a snapshot served by {@link #cached()} before a background reload starts. */
+    private final Duration maxStaleness;
+
+    /** Runs background reloads triggered by {@link #cached()} and {@link #invalidate()}. */
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("catalog-refresh").factory());
+
+    /** True while a background reload is queued or running (single flight). */
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    public CatalogService(ProductRepository productRepository,
+                          CategoryRepository categoryRepository,
+                          ApplicationEventPublisher events,
+                          MeterRegistry meterRegistry,
+                          @Value("${catalog.max-staleness:PT10M}") Duration maxStaleness) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.events = events;
+        this.maxStaleness = maxStaleness;
+
+        Gauge.builder("catalog.snapshot.version", current, ref -> {
+                    CatalogSnapshot s = ref.get();
+                    return s != null ? s.version() : 0;
+                })
+                .description("Version of the active catalog snapshot")
+                .register(meterRegistry);
+
+        Gauge.builder("catalog.snapshot.age", current, ref -> {
+                    CatalogSnapshot s = ref.get();
+                    return s != null ? s.age().toMillis() / 1000.0 : Double.NaN;
+                })
+                .description("Time since the active catalog snapshot was loaded")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the active snapshot, loading it first if it is missing
+     * or has been invalidated.
+     *
+     * @return current catalog snapshot (never null)
+     */
+    public CatalogSnapshot snapshot() {
+        CatalogSnapshot s = current.get();
+        if (s != null && !stale) {
+            return s;
+        }
+        synchronized (this) {
+            s = current.get();
+            return (s != null && !stale) ? s : refresh();
+        }
+    }
+
+    /**
+     * Returns the active snapshot without waiting for the database.
+     *
+     * Only the very first call (before any snapshot exists) loads synchronously.
+     * Afterwards an invalidated snapshot, or one older than
+     * {@code catalog.max-staleness}, keeps being served while a single
+     * background reload replaces it.
+     *
+     * @return current catalog snapshot (never null)
+     */
+    public CatalogSnapshot cached() {
+        CatalogSnapshot s = current.get();
+        if (s == null) {
+            return snapshot();
+        }
+        if (stale || s.age().compareTo(maxStaleness) > 0) {
+            refreshInBackground();
+        }
+        return s;
+    }
+
+    /**
+     * Reloads products and categories from the database and atomically
+     * swaps in a new snapshot. Publishes a {@link CatalogRefreshedEvent}.
+     *
+     * @return the newly active snapshot
+     */
+    public synchronized CatalogSnapshot refresh() {
+        stale = false;
+        var categories = categoryRepository.findAll(Sort.by("id"));
+        var products = productRepository.findAllWithCategory();
+
+        CatalogSnapshot next = CatalogSnapshot.of(versions.incrementAndGet(), Instant.now(), categories, products);
+        CatalogSnapshot previous = current.getAndSet(next);
+
+        events.publishEvent(new CatalogRefreshedEvent(previous, next));
+        return next;
+    }
+
+    /**
+     * Marks the active snapshot as stale (e.g. after products were edited or
+     * checkout found a price mismatch) and starts a background reload.
+     * {@link #snapshot()} callers reload synchronously until it completes;
+     * {@link #cached()} callers keep the old snapshot meanwhile.
+     */
+    public void invalidate() {
+        stale = true;
+        refreshInBackground();
+    }
+
+    /**
+     * Queues one background reload unless one is already pending.
+     */
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                refresh();
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Loads the first snapshot once the application is ready,
+     * so the first shopper does not pay for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        snapshot();
+    }
+
+    /**
+     * Periodic safety-net refresh for changes made outside the application
+     * (e.g. manual SQL updates).
+     */
+    @Scheduled(initialDelayString = "${catalog.refresh-interval:PT5M}",
+               fixedDelayString = "${catalog.refresh-interval:PT5M}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+}
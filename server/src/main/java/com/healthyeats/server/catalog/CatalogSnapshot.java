@@ -0,0 +1,96 @@
+package com.healthyeats.server.catalog;
+
+import com.healthyeats.server.category.Category;
+import com.healthyeats.server.product.Product;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Immutable, versioned in-memory view of the product catalog.
+ *
+ * A snapshot is built once from the database by {@link CatalogService}
+ * and then shared by every request until the next refresh swaps in a
+ * new instance. Nothing inside it is ever mutated, so readers need no locking.
+ *
+ * @param version        monotonically increasing snapshot number
+ * @param loadedAt       instant the snapshot was read from the database
+ * @param categories     all categories, ordered by ID
+ * @param products       all products, ordered by ID
+ * @param productsById   index of products by ID
+ * @param productsByName index of products by exact name (first match wins)
+ */
+public record CatalogSnapshot(
+        long version,
+        Instant loadedAt,
+        List<CatalogCategory> categories,
+        List<CatalogProduct> products,
+        Map<Long, CatalogProduct> productsById,
+        Map<String, CatalogProduct> productsByName
+) {
+
+    /**
+     * Builds a snapshot from freshly loaded entities.
+     *
+     * @param version    version number to assign
+     * @param loadedAt   load timestamp
+     * @param categories category entities
+     * @param products   product entities (with categories initialised)
+     * @return immutable snapshot
+     */
+    static CatalogSnapshot of(long version, Instant loadedAt, List<Category> categories, List<Product> products) {
+        List<CatalogCategory> categoryList = categories.stream()
+                .map(CatalogCategory::of)
+                .sorted(Comparator.comparing(CatalogCategory::id))
+                .toList();
+
+        List<CatalogProduct> productList = products.stream()
+                .map(CatalogProduct::of)
+                .sorted(Comparator.comparing(CatalogProduct::id))
+                .toList();
+
+        Map<Long, CatalogProduct> byId = new HashMap<>();
+        Map<String, CatalogProduct> byName = new HashMap<>();
+        for (CatalogProduct p : productList) {
+            byId.put(p.id(), p);
+            byName.putIfAbsent(p.name(), p);
+        }
+
+        return new CatalogSnapshot(
+                version,
+                loadedAt,
+                categoryList,
+                productList,
+                Collections.unmodifiableMap(byId),
+                Collections.unmodifiableMap(byName)
+        );
+    }
+
+    /**
+     * Looks up a product by ID.
+     *
+     * @param id product ID
+     * @return product, or empty if not part of this snapshot
+     */
+    public Optional<CatalogProduct> product(Long id) {
+        return Optional.ofNullable(productsById.get(id));
+    }
+
+    /**
+     * Looks up a product by its exact name.
+     *
+     * @param name product name
+     * @return product, or empty if not part of this snapshot
+     */
+    public Optional<CatalogProduct> productByName(String name) {
+        return Optional.ofNullable(productsByName.get(name));
+    }
+
+    /**
+     * @return time elapsed since this snapshot was loaded
+     */
+    public Duration age() {
+        return Duration.between(loadedAt, Instant.now());
+    }
+}
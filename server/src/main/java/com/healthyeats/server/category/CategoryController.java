@@ -1,12 +1,12 @@
 package com.healthyeats.server.category;
 
+import com.healthyeats.server.catalog.CatalogResponseCache;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 /**
  * REST controller for managing product categories.
  *
@@ -21,27 +21,30 @@ import java.util.List;
 @CrossOrigin(origins = "http://localhost:5173")
 public class CategoryController {
 
-    private final CategoryRepository repo;
+    private final CatalogResponseCache responses;
 
     /**
      * Constructor-based dependency injection.
      *
-     * @param repo repository for Category entities
+     * @param responses pre-serialized catalog responses
      */
-    public CategoryController(CategoryRepository repo) {
-        this.repo = repo;
+    public CategoryController(CatalogResponseCache responses) {
+        this.responses = responses;
     }
 
     /**
      * GET /api/categories
      *
-     * Fetch all available categories from the database.
+     * Fetch all available categories from the in-memory catalog snapshot.
      * Used by the frontend to display filters or navigation menus.
      *
-     * @return list of all categories
+     * The JSON body is pre-serialized per catalog version and carries a
+     * strong ETag; a matching If-None-Match yields 304 Not Modified.
+     *
+     * @return JSON array of all categories
      */
     @GetMapping
-    public List<Category> all() {
-        return repo.findAll();
+    public ResponseEntity<byte[]> all() {
+        return responses.toResponse(responses.categories());
     }
 }
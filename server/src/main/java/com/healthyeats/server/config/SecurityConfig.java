@@ -1,5 +1,6 @@
 package com.healthyeats.server.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -72,8 +73,13 @@ public class SecurityConfig {
      *     - /api/auth/** → public (register, login, etc.)
      *     - /api/products/** → public (view products)
      *     - /api/categories/** → public (browse categories)
-     *     - /api/cart/** → public (cart tied to session)
+     *     - /api/cart/** → public (cart tied to the CART_ID cookie)
      *     - /api/checkout/webhook → public (Stripe webhook)
+     *     - /actuator/health/**, /actuator/prometheus → public (probes and metric scrapes)
+     *     - other /actuator/** (metrics, POST /actuator/catalog, ...) → ADMIN only
+     *       (see management.admin-emails)
+     *     - async re-dispatches → allowed (the original request was already authorised;
+     *       checkout completes asynchronously)
      *     - all other endpoints → require authentication
      * - Form login & HTTP basic → disabled (using custom auth/session handling instead)
      *
@@ -92,6 +98,9 @@ public class SecurityConfig {
                         .requestMatchers("/api/categories/**").permitAll()
                         .requestMatchers("/api/cart/**").permitAll()
                         .requestMatchers("/api/checkout/webhook").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/health/**", "/actuator/prometheus").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .anyRequest().authenticated()
                 )
                 .formLogin(form -> form.disable())   // disable default login page
@@ -105,8 +114,9 @@ public class SecurityConfig {
      *
      * Allows:
      * - Origins: configured via the `frontend.allowed-origins` property (comma-separated)
-     * - Methods: GET, POST, PUT, DELETE, OPTIONS
-     * - Headers: all
+     * - Methods: GET, POST, PUT, PATCH, DELETE, OPTIONS
+     * - Headers: all (ETag is exposed to scripts for cart If-Match requests,
+     *   Server-Timing for request breakdowns)
      * - Credentials: true (cookies/session IDs are included)
      *
      * @return CorsConfigurationSource with allowed settings
@@ -133,8 +143,9 @@ public class SecurityConfig {
             cfg.setAllowedOriginPatterns(patternOrigins);
         }
 
-        cfg.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        cfg.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         cfg.setAllowedHeaders(List.of("*"));
+        cfg.setExposedHeaders(List.of("ETag", "Server-Timing"));
         cfg.setAllowCredentials(true);
 
         var source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,161 @@
+package com.healthyeats.server.observability;
+
+import com.google.gson.Gson;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Span exporter that keeps finished spans locally, so traces can be inspected
+ * without a tracing backend.
+ *
+ * - Memory: the last {@code tracing.local.max-spans} spans (oldest dropped first),
+ *   readable through {@link #spans()} and {@link #trace(String)} (used by tests).
+ * - File: if {@code tracing.local.file} is set, every span is also appended
+ *   to that file as one JSON object per line ({@link SpanRecord}); e.g.
+ *   {@code grep '"order.id":"1042"'} finds every span of an order.
+ *
+ * Spring Boot registers every {@link SpanExporter} bean with the OpenTelemetry
+ * SDK behind a batch processor, so this runs off the request threads. Which
+ * requests are traced at all is set by {@code management.tracing.sampling.probability}.
+ */
+@Component
+public class LocalSpanExporter implements SpanExporter {
+
+    private static final Gson GSON = new Gson();
+
+    private final int maxSpans;
+    private final ArrayDeque<SpanRecord> recent = new ArrayDeque<>();
+    private final BufferedWriter file;
+
+    public LocalSpanExporter(@Value("${tracing.local.max-spans:10000}") int maxSpans,
+                             @Value("${tracing.local.file:}") String file) {
+        this.maxSpans = maxSpans;
+        this.file = file.isBlank() ? null : open(Path.of(file));
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanRecord> records = spans.stream().map(SpanRecord::of).toList();
+        synchronized (recent) {
+            for (SpanRecord record : records) {
+                if (recent.size() == maxSpans) recent.removeFirst();
+                recent.addLast(record);
+            }
+        }
+        if (file == null) return CompletableResultCode.ofSuccess();
+        synchronized (file) {
+            try {
+                for (SpanRecord record : records) {
+                    file.write(GSON.toJson(record));
+                    file.newLine();
+                }
+                return CompletableResultCode.ofSuccess();
+            } catch (IOException e) {
+                return CompletableResultCode.ofFailure();
+            }
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        if (file == null) return CompletableResultCode.ofSuccess();
+        synchronized (file) {
+            try {
+                file.flush();
+                return CompletableResultCode.ofSuccess();
+            } catch (IOException e) {
+                return CompletableResultCode.ofFailure();
+            }
+        }
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        if (file == null) return CompletableResultCode.ofSuccess();
+        synchronized (file) {
+            try {
+                file.close();
+                return CompletableResultCode.ofSuccess();
+            } catch (IOException e) {
+                return CompletableResultCode.ofFailure();
+            }
+        }
+    }
+
+    /**
+     * @return spans kept in memory, oldest first
+     */
+    public List<SpanRecord> spans() {
+        synchronized (recent) {
+            return List.copyOf(recent);
+        }
+    }
+
+    /**
+     * @param traceId trace ID (32 hex characters)
+     * @return spans of that trace kept in memory, in the order they finished
+     */
+    public List<SpanRecord> trace(String traceId) {
+        return spans().stream().filter(s -> s.traceId().equals(traceId)).toList();
+    }
+
+    /** Drops all spans kept in memory (the file is left alone). */
+    public void clear() {
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    private static BufferedWriter open(Path path) {
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            return Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open span file " + path, e);
+        }
+    }
+
+    /**
+     * One finished span.
+     *
+     * @param traceId        trace ID
+     * @param spanId         span ID
+     * @param parentSpanId   parent span ID, or null for a root span
+     * @param name           span name, e.g. "checkout order-insert"
+     * @param startMicros    start time (epoch microseconds)
+     * @param durationMicros duration in microseconds
+     * @param attributes     span attributes, e.g. order.id
+     * @param status         UNSET, OK or ERROR
+     */
+    public record SpanRecord(String traceId, String spanId, String parentSpanId, String name,
+                             long startMicros, long durationMicros,
+                             Map<String, String> attributes, String status) {
+
+        static SpanRecord of(SpanData span) {
+            Map<String, String> attributes = new TreeMap<>();
+            span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+            return new SpanRecord(
+                    span.getTraceId(),
+                    span.getSpanId(),
+                    span.getParentSpanContext().isValid() ? span.getParentSpanId() : null,
+                    span.getName(),
+                    span.getStartEpochNanos() / 1_000,
+                    (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000,
+                    attributes,
+                    span.getStatus().getStatusCode().name());
+        }
+    }
+}
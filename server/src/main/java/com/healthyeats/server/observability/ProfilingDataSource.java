@@ -0,0 +1,115 @@
+package com.healthyeats.server.observability;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Wraps the application {@link DataSource} so that every executed SQL
+ * statement is timed into the {@link RequestProfile} of the current request.
+ *
+ * Connections and statements are JDK proxies around the pooled objects:
+ * {@code execute*} calls are timed; everything else is passed straight
+ * through. Outside a request (schedulers, the outbox, the paid-order writer)
+ * the only extra cost is one thread-local lookup per statement.
+ *
+ * This sees Hibernate and {@code JdbcTemplate} alike, unlike a Hibernate-only hook.
+ * Disabled (no wrapping at all) with {@code server-timing.enabled=false}.
+ */
+@Component
+public class ProfilingDataSource implements BeanPostProcessor {
+
+    private final boolean enabled;
+
+    public ProfilingDataSource(@Value("${server-timing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !Proxy.isProxyClass(bean.getClass())) {
+            return wrap(dataSource);
+        }
+        return bean;
+    }
+
+    /**
+     * @param dataSource data source to instrument
+     * @return a data source whose statements report to {@link RequestProfile#current()}
+     */
+    public static DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection connection ? wrapConnection(connection) : result;
+        });
+    }
+
+    private static Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            // prepareStatement(sql, ...) / prepareCall(sql, ...): remember the text
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            return switch (result) {
+                case CallableStatement call -> wrapStatement(CallableStatement.class, call, sql);
+                case PreparedStatement prepared -> wrapStatement(PreparedStatement.class, prepared, sql);
+                case Statement statement -> wrapStatement(Statement.class, statement, null);
+                case null, default -> result;
+            };
+        });
+    }
+
+    private static <S extends Statement> S wrapStatement(Class<S> type, S statement, String preparedSql) {
+        return proxy(type, statement, (target, method, args) -> {
+            RequestProfile profile = method.getName().startsWith("execute") ? RequestProfile.current() : null;
+            if (profile == null) {
+                return invoke(target, method, args);
+            }
+            // Statement.execute(sql) carries its text; batches report the prepared text
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+            long start = System.nanoTime();
+            try {
+                return invoke(target, method, args);
+            } finally {
+                profile.statement(sql, System.nanoTime() - start);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler<T> {
+        Object handle(T target, Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler<T> handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> invoke(target, method, args);
+                };
+            }
+            return handler.handle(target, method, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, invocationHandler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
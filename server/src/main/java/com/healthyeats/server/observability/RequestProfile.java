@@ -0,0 +1,189 @@
+package com.healthyeats.server.observability;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the time of one HTTP request went: SQL statements (count and time,
+ * grouped by statement text) and outbound calls.
+ *
+ * {@link ServerTimingFilter} binds a profile to the thread that serves the
+ * request ({@link #current()}); {@link ProfilingDataSource} and the payment
+ * code add to it. Work done on other threads (the payment outbox, the
+ * paid-order writer) belongs to no request and is not counted.
+ *
+ * A profile is only touched by the thread serving its request at that moment
+ * (request thread, then async dispatch thread), so it is not synchronized
+ * beyond what the outbound callbacks need.
+ */
+public final class RequestProfile {
+
+    /** Distinct statement texts tracked per request; later ones only count towards the totals. */
+    static final int MAX_DISTINCT_STATEMENTS = 64;
+
+    private static final ThreadLocal<RequestProfile> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+
+    private int statementCount;
+    private long statementNanos;
+    private final Map<String, StatementStats> statements = new HashMap<>();
+
+    private int outboundCount;
+    private long outboundNanos;
+
+    /** Set when the response body starts being written. */
+    private long bodyStartNanos;
+
+    /**
+     * @return the profile of the request served by this thread, or null
+     */
+    public static RequestProfile current() {
+        return CURRENT.get();
+    }
+
+    static void bind(RequestProfile profile) {
+        CURRENT.set(profile);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Records one executed SQL statement.
+     *
+     * @param sql   statement text (as prepared; parameters are not included)
+     * @param nanos execution time
+     */
+    public void statement(String sql, long nanos) {
+        statementCount++;
+        statementNanos += nanos;
+        if (sql == null) return;
+        StatementStats stats = statements.get(sql);
+        if (stats == null) {
+            if (statements.size() >= MAX_DISTINCT_STATEMENTS) return;
+            stats = new StatementStats(sql);
+            statements.put(sql, stats);
+        }
+        stats.count++;
+        stats.nanos += nanos;
+    }
+
+    /**
+     * Records time spent on an outbound call (or waiting for one, see the checkout).
+     *
+     * @param nanos duration
+     */
+    public synchronized void outbound(long nanos) {
+        outboundCount++;
+        outboundNanos += nanos;
+    }
+
+    /** Marks the start of response serialization (first call wins). */
+    void bodyStarted() {
+        if (bodyStartNanos == 0) bodyStartNanos = System.nanoTime();
+    }
+
+    public int statementCount() {
+        return statementCount;
+    }
+
+    public long statementNanos() {
+        return statementNanos;
+    }
+
+    public synchronized int outboundCount() {
+        return outboundCount;
+    }
+
+    public synchronized long outboundNanos() {
+        return outboundNanos;
+    }
+
+    /**
+     * @return nanoseconds since the request started
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return nanoseconds spent writing the response body so far (0 if not started)
+     */
+    public long serializationNanos() {
+        return bodyStartNanos == 0 ? 0 : System.nanoTime() - bodyStartNanos;
+    }
+
+    /**
+     * @param limit maximum number of entries
+     * @return statement texts with their count and total time, most expensive first
+     */
+    public List<StatementStats> topStatements(int limit) {
+        List<StatementStats> sorted = new ArrayList<>(statements.values());
+        sorted.sort(Comparator.comparingLong(StatementStats::nanos).reversed());
+        return sorted.size() > limit ? List.copyOf(sorted.subList(0, limit)) : sorted;
+    }
+
+    /**
+     * @param minCount smallest execution count to report
+     * @return statement texts executed at least {@code minCount} times, most frequent first
+     */
+    public List<StatementStats> repeatedStatements(int minCount) {
+        List<StatementStats> repeated = new ArrayList<>();
+        for (StatementStats stats : statements.values()) {
+            if (stats.count >= minCount) repeated.add(stats);
+        }
+        repeated.sort(Comparator.comparingInt(StatementStats::count).reversed());
+        return repeated;
+    }
+
+    /**
+     * {@code Server-Timing} value for the time measured so far, e.g.
+     * {@code db;dur=12.4;desc="7 queries", ext;dur=310.0;desc="1 calls", app;dur=330.2}.
+     */
+    public String serverTiming() {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("db;dur=").append(millis(statementNanos))
+                .append(";desc=\"").append(statementCount).append(" queries\"");
+        int outCount = outboundCount();
+        if (outCount > 0) {
+            sb.append(", ext;dur=").append(millis(outboundNanos()))
+                    .append(";desc=\"").append(outCount).append(" calls\"");
+        }
+        sb.append(", app;dur=").append(millis(elapsedNanos()));
+        return sb.toString();
+    }
+
+    /** Milliseconds with one decimal, as Server-Timing expects. */
+    static String millis(long nanos) {
+        long tenths = nanos / 100_000;
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    /** Executions of one statement text within a request. */
+    public static final class StatementStats {
+        private final String sql;
+        private int count;
+        private long nanos;
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        public String sql() {
+            return sql;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+    }
+}
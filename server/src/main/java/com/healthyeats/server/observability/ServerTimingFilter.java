@@ -0,0 +1,151 @@
+package com.healthyeats.server.observability;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures where each request's time goes and reports it.
+ *
+ * For every request a {@link RequestProfile} is bound to the serving thread
+ * (again on the async dispatch of a {@code CompletableFuture} endpoint such as
+ * checkout). It collects SQL statements ({@link ProfilingDataSource}) and
+ * outbound time. Then:
+ * - {@code Server-Timing} response header: {@code db} (time and number of
+ *   statements), {@code ext} (outbound calls, if any) and {@code app} (time
+ *   until the body started). Set by {@link ServerTimingAdvice} just before the
+ *   body is written, or here for responses without a body.
+ * - Slow-request log: requests slower than {@code server-timing.slow-log.threshold}
+ *   are logged (a {@code sample-rate} share of them) with endpoint, status,
+ *   statement count and time, outbound time, serialization time and the most
+ *   expensive statements.
+ * - Suspected N+1 log (optional, {@code server-timing.n-plus-one.threshold} > 0):
+ *   the same statement text executed at least that many times in one request
+ *   (a lazy association loaded in a loop) is logged with endpoint and count.
+ *   Tests catch the same problem earlier with a query budget (FetchPlanTests).
+ *
+ * Cost per request: one small object, a few {@code nanoTime} calls, and a map
+ * entry per distinct statement. Off entirely with {@code server-timing.enabled=false}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final Logger log = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    private static final String ATTRIBUTE = RequestProfile.class.getName();
+    private static final int MAX_SQL_LENGTH = 200;
+
+    private final boolean enabled;
+    private final long slowThresholdNanos;
+    private final double sampleRate;
+    private final int topStatements;
+    private final int nPlusOneThreshold;
+
+    public ServerTimingFilter(@Value("${server-timing.enabled:true}") boolean enabled,
+                              @Value("${server-timing.slow-log.threshold:PT1S}") Duration slowThreshold,
+                              @Value("${server-timing.slow-log.sample-rate:0.1}") double sampleRate,
+                              @Value("${server-timing.slow-log.top-statements:3}") int topStatements,
+                              @Value("${server-timing.n-plus-one.threshold:0}") int nPlusOneThreshold) {
+        this.enabled = enabled;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.topStatements = topStatements;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    /** Async dispatches (e.g. checkout completing) continue the same profile. */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestProfile profile = (RequestProfile) request.getAttribute(ATTRIBUTE);
+        if (profile == null) {
+            profile = new RequestProfile();
+            request.setAttribute(ATTRIBUTE, profile);
+        }
+        RequestProfile.bind(profile);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestProfile.unbind();
+            if (!isAsyncStarted(request)) {
+                if (!response.isCommitted()) {
+                    response.setHeader(HEADER, profile.serverTiming());
+                }
+                logIfSlow(request, response, profile);
+                if (nPlusOneThreshold > 0) {
+                    logRepeated(request, profile);
+                }
+            }
+        }
+    }
+
+    private void logIfSlow(HttpServletRequest request, HttpServletResponse response, RequestProfile profile) {
+        long elapsed = profile.elapsedNanos();
+        if (elapsed < slowThresholdNanos || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        List<String> statements = profile.topStatements(topStatements).stream()
+                .map(s -> s.count() + "x " + RequestProfile.millis(s.nanos()) + "ms " + abbreviate(s.sql()))
+                .toList();
+        log.atWarn()
+                .addKeyValue("method", request.getMethod())
+                .addKeyValue("endpoint", endpoint(request))
+                .addKeyValue("status", response.getStatus())
+                .addKeyValue("durationMs", RequestProfile.millis(elapsed))
+                .addKeyValue("queries", profile.statementCount())
+                .addKeyValue("dbMs", RequestProfile.millis(profile.statementNanos()))
+                .addKeyValue("outboundMs", RequestProfile.millis(profile.outboundNanos()))
+                .addKeyValue("serializationMs", RequestProfile.millis(profile.serializationNanos()))
+                .addKeyValue("topStatements", statements)
+                .log("Slow request");
+    }
+
+    private void logRepeated(HttpServletRequest request, RequestProfile profile) {
+        for (RequestProfile.StatementStats s : profile.repeatedStatements(nPlusOneThreshold)) {
+            log.atWarn()
+                    .addKeyValue("method", request.getMethod())
+                    .addKeyValue("endpoint", endpoint(request))
+                    .addKeyValue("executions", s.count())
+                    .addKeyValue("dbMs", RequestProfile.millis(s.nanos()))
+                    .addKeyValue("statement", abbreviate(s.sql()))
+                    .log("Suspected N+1: same statement repeated in one request");
+        }
+    }
+
+    /** Mapped pattern ({@code /api/checkout/{orderId}}) rather than the raw path, if known. */
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : request.getRequestURI();
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+}
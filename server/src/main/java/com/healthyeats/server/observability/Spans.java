@@ -0,0 +1,65 @@
+package com.healthyeats.server.observability;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+
+/**
+ * Helpers for the tracing spans around the checkout and webhook pipelines.
+ *
+ * Spans are Micrometer {@link Observation}s: with the OpenTelemetry bridge on
+ * the classpath each one becomes a span (exported by {@link LocalSpanExporter}),
+ * and each stage is also timed as {@code <pipeline>.stage{stage=...}}.
+ *
+ * The order ID is attached as the {@code order.id} attribute wherever it is
+ * known (HTTP request span, order insert, Stripe session creation, webhook),
+ * so a webhook can be matched to the checkout that created its session.
+ */
+public final class Spans {
+
+    /** Span attribute carrying the local order ID. */
+    public static final String ORDER_ID = "order.id";
+
+    private Spans() {}
+
+    /**
+     * Creates (does not start) a span for one stage of a pipeline.
+     *
+     * @param registry observation registry
+     * @param pipeline pipeline name, e.g. "checkout" (observation {@code checkout.stage})
+     * @param stage    stage name, e.g. "products" (span {@code checkout products})
+     * @return unstarted observation, child of the current one
+     */
+    public static Observation stage(ObservationRegistry registry, String pipeline, String stage) {
+        return Observation.createNotStarted(pipeline + ".stage", registry)
+                .contextualName(pipeline + " " + stage)
+                .lowCardinalityKeyValue("stage", stage);
+    }
+
+    /**
+     * Adds an attribute to the HTTP request span of the current request (the
+     * current span outside a request).
+     *
+     * In controllers the current observation is Spring Security's
+     * "secured request", a child of the HTTP span, so this walks up to the
+     * server request observation.
+     *
+     * @param registry observation registry
+     * @param key      attribute name
+     * @param value    attribute value (ignored if null)
+     */
+    public static void tagCurrent(ObservationRegistry registry, String key, Object value) {
+        Observation current = registry.getCurrentObservation();
+        if (current == null || value == null) return;
+        KeyValue attribute = KeyValue.of(key, String.valueOf(value));
+        for (ObservationView view = current; view != null; view = view.getContextView().getParentObservation()) {
+            if (view.getContextView() instanceof ServerRequestObservationContext request) {
+                request.addHighCardinalityKeyValue(attribute);
+                return;
+            }
+        }
+        current.highCardinalityKeyValue(attribute);
+    }
+}
@@ -1,29 +1,64 @@
 package com.healthyeats.server.order;
 
+import com.healthyeats.server.cart.CartLines;
+import com.healthyeats.server.cart.CartResolver;
+import com.healthyeats.server.cart.CartService;
+import com.healthyeats.server.catalog.CatalogProduct;
+import com.healthyeats.server.catalog.CatalogService;
+import com.healthyeats.server.catalog.CatalogSnapshot;
+import com.healthyeats.server.observability.RequestProfile;
+import com.healthyeats.server.observability.Spans;
+import com.healthyeats.server.product.Product;
 import com.healthyeats.server.product.ProductRepository;
 import com.healthyeats.server.user.UserRepository;
-import com.stripe.Stripe;
-import com.stripe.model.checkout.Session;
-import com.stripe.param.checkout.SessionCreateParams;
-import jakarta.annotation.PostConstruct;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * REST controller handling checkout and payment with Stripe.
  *
  * Responsibilities:
  * - Verify user authentication before checkout
- * - Persist orders in the database (pending status)
- * - Forward cart items to Stripe as line items
- * - Return a Checkout session URL to the frontend
+ * - Take the lines from the request (by product ID) or from the user's cart
+ * - Resolve all products in one batched query and price every line on the server
+ * - Persist orders in the database (pending status) together with a
+ *   {@link PaymentOutbox} row; the outbox dispatcher creates the Stripe session
+ * - Return a Checkout session URL to the frontend (asynchronously, so a slow
+ *   payment provider never holds a request thread), or 202 and a URL to poll
+ * - Deduplicate retries: an Idempotency-Key, or an unchanged cart with a
+ *   still-open unpaid order, returns the existing session instead of creating
+ *   another order and another Stripe session
+ *
+ * Each stage runs in its own tracing span ({@code checkout <stage>}, see
+ * {@link Spans}); the request span and the later stages carry the order ID.
  *
  * Base path: /api/checkout
  * Allows CORS for frontend (localhost:5173).
@@ -36,51 +71,106 @@ public class CheckoutController {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
-
-    /** Stripe secret key injected from application.yml */
-    @Value("${stripe.secret-key}")
-    private String stripeSecretKey;
+    private final CatalogService catalog;
+    private final CartResolver carts;
+    private final CartService cartService;
+    private final PaymentOutbox paymentOutbox;
+    private final CheckoutIdempotencyCache idempotency;
+    private final ObservationRegistry observations;
+    private final Duration sessionReuseWindow;
 
     public CheckoutController(UserRepository userRepository,
                               ProductRepository productRepository,
-                              OrderRepository orderRepository) {
+                              OrderRepository orderRepository,
+                              CatalogService catalog,
+                              CartResolver carts,
+                              CartService cartService,
+                              PaymentOutbox paymentOutbox,
+                              CheckoutIdempotencyCache idempotency,
+                              ObservationRegistry observations,
+                              @Value("${checkout.session-reuse-window:PT1H}") Duration sessionReuseWindow) {
         this.userRepository = userRepository;
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
-    }
-
-    /**
-     * Initializes Stripe API key once the application starts.
-     */
-    @PostConstruct
-    public void init() {
-        Stripe.apiKey = stripeSecretKey;
+        this.catalog = catalog;
+        this.carts = carts;
+        this.cartService = cartService;
+        this.paymentOutbox = paymentOutbox;
+        this.idempotency = idempotency;
+        this.observations = observations;
+        this.sessionReuseWindow = sessionReuseWindow;
     }
 
     /**
      * POST /api/checkout
      *
      * Handles checkout request:
-     * 1. Verifies user is logged in.
-     * 2. Saves order in DB with pending status.
-     * 3. Builds Stripe Checkout session with items and redirect URLs.
-     * 4. Returns the Stripe Checkout URL to the frontend.
+     * 1. Verifies user is logged in and moves an anonymous signed-cookie cart
+     *    (if any) into the server-side cart store.
+     * 2. Takes the requested lines from the payload (by product ID, or by name for
+     *    older clients) or, if the payload has no items, from the user's cart.
+     * 3. Resolves all products in one batched database query and prices every
+     *    line from the database (client prices are ignored; a mismatch with the
+     *    catalog snapshot invalidates it).
+     * 4. Hashes the priced lines and address (order content hash).
+     * 5. Looks for an earlier checkout to answer with instead (see below);
+     *    otherwise saves the order (pending status) and its outbox row in one transaction.
+     * 6. Waits for the {@link PaymentOutbox} dispatcher to create the Stripe session
+     *    and store its URL on the order, at most {@code payments.outbox.wait-timeout}.
+     *
+     * Deduplication (step 5), in order:
+     * - Idempotency-Key seen recently: the in-flight or finished result from the
+     *   {@link CheckoutIdempotencyCache} (a double click waits for the first request).
+     * - Idempotency-Key in the database: that order's URL, or a new session for it
+     *   if the first attempt failed at Stripe.
+     * - Unpaid order with the same content hash created within
+     *   {@code checkout.session-reuse-window}: its URL (or a new session for it).
+     * Reusing a key for different content is rejected with 422.
      *
-     * @param checkoutRequest payload containing address + cart items
-     * @return map containing Stripe session URL
-     * @throws Exception if authentication fails or Stripe call fails
+     * Responses:
+     * - 200 with {@code orderId} and {@code url}
+     * - 202 with {@code orderId}, {@code status: "pending"} and a Location to poll
+     *   ({@code GET /api/checkout/{orderId}}) if the session is not ready in time
+     * - 503 with Retry-After if the provider is degraded (the outbox keeps retrying)
+     *
+     * Steps 1–5 run on the request thread (they need the security context and the
+     * database); the request thread is released while waiting for the session.
+     * The number of database statements does not grow with the number of lines.
+     *
+     * @param checkoutRequest payload containing address + (optional) items
+     * @param idempotencyKey  optional client-chosen key identifying this checkout attempt
+     * @param request         current HTTP request
+     * @param response        current HTTP response (receives cart cookie changes)
+     * @return future of the response containing the Stripe session URL
      */
     @PostMapping
-    public Map<String, Object> checkout(@RequestBody CheckoutRequest checkoutRequest) throws Exception {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> checkout(
+            @RequestBody CheckoutRequest checkoutRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         // Ensure only logged-in users can checkout
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
-            throw new RuntimeException("Unauthorized");
-        }
+        Authentication authentication = authenticated();
+
+        // What to buy: explicit items, or the server-side cart (after moving an
+        // anonymous cookie cart, cart.anonymous=signed-cookie, into the cart store)
+        List<RequestedLine> requested = stage("cart").observe(() -> {
+            carts.promote(request, response);
+            return requestedLines(checkoutRequest, request, response);
+        });
+
+        // Resolve all products in one batched query; DB state is authoritative here
+        Map<Long, Product> products = stage("products").observe(() -> {
+            Map<Long, Product> byId = new HashMap<>();
+            for (Product p : productRepository.findAllById(requested.stream().map(RequestedLine::productId).toList())) {
+                byId.put(p.getId(), p);
+            }
+            return byId;
+        });
 
         // Save order with pending status
         Order order = new Order();
-        order.setUser(userRepository.findByEmail(authentication.getName()).orElseThrow());
+        order.setUser(stage("user").observe(() -> userRepository.findByEmail(authentication.getName()).orElseThrow()));
         order.setPaid(false);
 
         // Set shipping address
@@ -91,56 +181,355 @@ public class CheckoutController {
         order.setZip(address.getZip());
         order.setCountry(address.getCountry());
 
-        // Create OrderItems from request
+        // Price every line from the resolved products
+        CatalogSnapshot snapshot = catalog.cached();
         List<OrderItem> orderItems = new ArrayList<>();
-        for (CheckoutItem item : checkoutRequest.getItems()) {
+        boolean snapshotStale = false;
+        for (RequestedLine line : requested) {
+            Product product = products.get(line.productId());
+            if (product == null) {
+                throw new NoSuchElementException("Product no longer available: " + line.productId());
+            }
+            CatalogProduct cached = snapshot.productsById().get(product.getId());
+            snapshotStale |= cached == null
+                    || !product.getPriceCents().equals(cached.priceCents())
+                    || !product.getName().equals(cached.name());
+
             OrderItem oi = new OrderItem();
             oi.setOrder(order);
-            oi.setProduct(productRepository.findByName(item.getName()).orElseThrow());
-            oi.setQuantity(item.getQuantity());
-            oi.setPriceCents(item.getPriceCents());
+            oi.setProduct(product);
+            oi.setQuantity(line.quantity());
+            oi.setPriceCents(product.getPriceCents());
             orderItems.add(oi);
         }
+        if (snapshotStale) {
+            catalog.invalidate(); // carts will pick up the new prices after the background reload
+        }
         order.setItems(orderItems);
+        order.setContentHash(contentHash(orderItems, address));
+
+        String key = normalizeIdempotencyKey(idempotencyKey);
+        if (key == null) {
+            return startCheckout(order, null).thenApply(CheckoutController::toResponse);
+        }
+
+        // Same key as a recent or in-flight request: answer with its result
+        String scope = order.getUser().getId() + ":" + key;
+        CompletableFuture<CheckoutResult> result = new CompletableFuture<>();
+        CompletableFuture<CheckoutResult> existing = idempotency.putIfAbsent(scope, order.getContentHash(), result);
+        if (existing != null) {
+            return existing.thenApply(CheckoutController::toResponse);
+        }
+        try {
+            startCheckout(order, key).whenComplete((r, e) -> {
+                if (e != null || r.pending()) {
+                    idempotency.forget(scope, result); // let a retry look again
+                }
+                if (e == null) {
+                    result.complete(r);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            idempotency.forget(scope, result);
+            throw e;
+        }
+        return result.thenApply(CheckoutController::toResponse);
+    }
+
+    /**
+     * GET /api/checkout/{orderId}
+     *
+     * Polls for the Checkout URL of one of the user's orders after a 202 from
+     * {@code POST /api/checkout}.
+     *
+     * @param orderId order ID from the 202 response
+     * @return 200 with the URL; 202 while the session is being created;
+     *         502 if creating it failed for good (POST the checkout again to retry);
+     *         404 if the order is not the user's
+     */
+    @GetMapping("/{orderId}")
+    public ResponseEntity<Map<String, Object>> session(@PathVariable Long orderId) {
+        Authentication authentication = authenticated();
+
+        Optional<Order> order = orderRepository.findByIdAndUserEmail(orderId, authentication.getName());
+        if (order.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (order.get().getCheckoutUrl() != null) {
+            return toResponse(new CheckoutResult(orderId, order.get().getCheckoutUrl()));
+        }
+        if (paymentOutbox.status(orderId).orElse(null) == PaymentOutbox.Status.FAILED) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("orderId", orderId);
+            body.put("status", "failed");
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(body);
+        }
+        return toResponse(new CheckoutResult(orderId, null));
+    }
+
+    /**
+     * Finds the order to pay for (earlier one with the same key, open one with the
+     * same content, or the new {@code order}, which is then saved with its outbox
+     * row) and waits for its Checkout URL.
+     */
+    private CompletableFuture<CheckoutResult> startCheckout(Order order, String key) {
+        Long userId = order.getUser().getId();
+
+        Optional<Order> earlier = stage("find-existing").observe(() -> {
+            // Key evicted from the cache, or first used on another node
+            if (key != null) {
+                Optional<Order> previous = orderRepository.findByUserIdAndIdempotencyKey(userId, key);
+                if (previous.isPresent()) {
+                    return Optional.of(sameContent(previous.get(), order));
+                }
+            }
+            // Retry without a key, back button, second tab: the cart has not changed since
+            return orderRepository.findFirstByUserIdAndPaidFalseAndContentHashAndCreatedAtAfterOrderByCreatedAtDescIdDesc(
+                    userId, order.getContentHash(), LocalDateTime.now().minus(sessionReuseWindow));
+        });
+        if (earlier.isPresent()) {
+            return existingSession(earlier.get());
+        }
+
+        // Persist order and outbox row in one transaction
+        order.setIdempotencyKey(key);
+        Observation insert = stage("order-insert").start();
+        try (Observation.Scope scope = insert.openScope()) {
+            paymentOutbox.saveWithOutbox(order);
+            insert.highCardinalityKeyValue(Spans.ORDER_ID, String.valueOf(order.getId()));
+        } catch (DataIntegrityViolationException e) {
+            insert.error(e);
+            // Lost a race on (user, key) against another node
+            if (key == null) throw e;
+            Order winner = orderRepository.findByUserIdAndIdempotencyKey(userId, key).orElseThrow(() -> e);
+            return existingSession(sameContent(winner, order));
+        } catch (RuntimeException e) {
+            insert.error(e);
+            throw e;
+        } finally {
+            insert.stop();
+        }
+        return awaitSession(order.getId());
+    }
+
+    /**
+     * Returns an existing order's Checkout URL, or re-arms its outbox row and waits.
+     */
+    private CompletableFuture<CheckoutResult> existingSession(Order order) {
+        Spans.tagCurrent(observations, Spans.ORDER_ID, order.getId());
+        String url = order.getCheckoutUrl();
+        if (url == null) {
+            url = paymentOutbox.requeue(order.getId());
+        }
+        if (url != null) {
+            return CompletableFuture.completedFuture(new CheckoutResult(order.getId(), url));
+        }
+        return awaitSession(order.getId());
+    }
+
+    /**
+     * Waits for the outbox dispatcher; a timeout yields a pending result (202), not an error.
+     * The wait is reported as outbound time in Server-Timing ({@code ext}).
+     */
+    private CompletableFuture<CheckoutResult> awaitSession(Long orderId) {
+        Spans.tagCurrent(observations, Spans.ORDER_ID, orderId);
+        RequestProfile profile = RequestProfile.current();
+        long waitStart = System.nanoTime();
+        Observation wait = stage("session-wait")
+                .highCardinalityKeyValue(Spans.ORDER_ID, String.valueOf(orderId))
+                .start();
+        return paymentOutbox.awaitCheckoutUrl(orderId)
+                .thenApply(url -> new CheckoutResult(orderId, url))
+                .exceptionallyCompose(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        return CompletableFuture.completedFuture(new CheckoutResult(orderId, null));
+                    }
+                    wait.error(cause);
+                    return CompletableFuture.failedFuture(cause);
+                })
+                .whenComplete((r, e) -> {
+                    wait.stop();
+                    if (profile != null) profile.outbound(System.nanoTime() - waitStart);
+                });
+    }
+
+    /** 200 with the Stripe Checkout URL, or 202 with where to poll for it. */
+    private static ResponseEntity<Map<String, Object>> toResponse(CheckoutResult result) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("orderId", result.orderId());
+        if (!result.pending()) {
+            body.put("url", result.url());
+            return ResponseEntity.ok(body);
+        }
+        body.put("status", "pending");
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/checkout/" + result.orderId()))
+                .body(body);
+    }
 
-        // Persist order in DB
-        orderRepository.save(order);
-
-        // Convert to Stripe line items
-        List<SessionCreateParams.LineItem> lineItems = new ArrayList<>();
-        for (CheckoutItem item : checkoutRequest.getItems()) {
-            lineItems.add(
-                SessionCreateParams.LineItem.builder()
-                    .setQuantity((long) item.getQuantity())
-                    .setPriceData(
-                        SessionCreateParams.LineItem.PriceData.builder()
-                            .setCurrency("eur")
-                            .setUnitAmount((long) item.getPriceCents())
-                            .setProductData(
-                                    SessionCreateParams.LineItem.PriceData.ProductData.builder()
-                                            .setName(item.getName())
-                                            .build()
-                            )
-                            .build()
-                    )
-                    .build()
-            );
-        }
-
-        // Create Stripe Checkout session
-        SessionCreateParams params = SessionCreateParams.builder()
-            .setMode(SessionCreateParams.Mode.PAYMENT)
-            .setSuccessUrl("http://localhost:5173/success/?session_id={CHECKOUT_SESSION_ID}")
-            .setCancelUrl("http://localhost:5173/cancel")
-            .setClientReferenceId(order.getId().toString()) // tie Stripe session to order
-            .addAllLineItem(lineItems)
-            .build();
-
-        Session session = Session.create(params);
-
-        // Response contains Stripe Checkout URL
-        Map<String, Object> response = new HashMap<>();
-        response.put("url", session.getUrl());
-        return response;
+    /** Span for one checkout stage (child of the request span). */
+    private Observation stage(String name) {
+        return Spans.stage(observations, "checkout", name);
+    }
+
+    /**
+     * @throws RuntimeException if no user is logged in
+     */
+    private static Authentication authenticated() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new RuntimeException("Unauthorized");
+        }
+        return authentication;
+    }
+
+    /**
+     * @throws IdempotencyKeyReusedException if {@code previous} was created from different content
+     */
+    private static Order sameContent(Order previous, Order requested) {
+        if (!requested.getContentHash().equals(previous.getContentHash())) {
+            throw new IdempotencyKeyReusedException();
+        }
+        return previous;
+    }
+
+    /**
+     * @return the trimmed key, or null if none was sent
+     * @throws IllegalArgumentException if the key is longer than 255 characters
+     */
+    private static String normalizeIdempotencyKey(String key) {
+        if (key == null || key.isBlank()) return null;
+        key = key.strip();
+        if (key.length() > 255) {
+            throw new IllegalArgumentException("Idempotency-Key must be at most 255 characters");
+        }
+        return key;
+    }
+
+    /**
+     * SHA-256 over the priced lines (sorted by product) and the shipping address,
+     * so the same cart at the same prices to the same address hashes the same.
+     */
+    static String contentHash(List<OrderItem> items, ShippingAddress address) {
+        StringBuilder canonical = new StringBuilder();
+        items.stream()
+                .sorted(Comparator.comparing((OrderItem oi) -> oi.getProduct().getId()))
+                .forEach(oi -> canonical.append(oi.getProduct().getId()).append(':')
+                        .append(oi.getQuantity()).append(':')
+                        .append(oi.getPriceCents()).append(';'));
+        for (String field : new String[] { address.getFullName(), address.getStreet(), address.getCity(),
+                address.getZip(), address.getCountry() }) {
+            String value = field == null ? "" : field.strip();
+            canonical.append('|').append(value.length()).append(':').append(value);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * A product and quantity to check out, before pricing.
+     */
+    private record RequestedLine(Long productId, int quantity) {}
+
+    /**
+     * Collects the lines to check out.
+     * - Payload items: by product ID; items without an ID are looked up by name
+     *   in the catalog snapshot (in memory).
+     * - No payload items: the lines of the user's server-side cart.
+     *
+     * @throws IllegalArgumentException if there is nothing to buy or a line is invalid
+     */
+    private List<RequestedLine> requestedLines(CheckoutRequest checkoutRequest,
+                                               HttpServletRequest request,
+                                               HttpServletResponse response) {
+        List<RequestedLine> lines = new ArrayList<>();
+        List<CheckoutItem> items = checkoutRequest.getItems();
+
+        if (items == null || items.isEmpty()) {
+            CartLines cart = cartService.lines(carts.read(request, response).orElse(null));
+            for (int i = 0; i < cart.size(); i++) {
+                lines.add(new RequestedLine(cart.productId(i), cart.quantity(i)));
+            }
+        } else {
+            CatalogSnapshot snapshot = null;
+            for (CheckoutItem item : items) {
+                Long productId = item.getProductId();
+                if (productId == null) {
+                    if (item.getName() == null) {
+                        throw new IllegalArgumentException("Each item needs a productId");
+                    }
+                    if (snapshot == null) snapshot = catalog.snapshot();
+                    productId = snapshot.productByName(item.getName())
+                            .map(CatalogProduct::id)
+                            .orElseThrow(() -> new NoSuchElementException("Product no longer available: " + item.getName()));
+                }
+                lines.add(new RequestedLine(productId, item.getQuantity()));
+            }
+        }
+
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to check out");
+        }
+        for (RequestedLine line : lines) {
+            if (line.quantity() < 1 || line.quantity() > 99) {
+                throw new IllegalArgumentException("Quantity must be between 1 and 99");
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Global exception handler for invalid checkout requests.
+     *
+     * Maps {@link IllegalArgumentException} to:
+     * - HTTP status 400 (Bad Request)
+     * - Response body containing the error message
+     *
+     * @param e the exception
+     * @return error message as plain text
+     */
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler({ IllegalArgumentException.class })
+    public String badRequest(Exception e) {
+        return e.getMessage();
+    }
+
+    /**
+     * Maps {@link IdempotencyKeyReusedException} to:
+     * - HTTP status 422 (Unprocessable Entity)
+     * - Response body containing the error message
+     *
+     * @param e the exception
+     * @return error message as plain text
+     */
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    @ExceptionHandler({ IdempotencyKeyReusedException.class })
+    public String idempotencyKeyReused(IdempotencyKeyReusedException e) {
+        return e.getMessage();
+    }
+
+    /**
+     * Maps {@link PaymentUnavailableException} (circuit open, bulkhead full,
+     * provider timeout or error) to:
+     * - HTTP status 503 (Service Unavailable), with Retry-After
+     * - Response body containing the error message
+     *
+     * @param e        the exception
+     * @param response current HTTP response
+     * @return error message as plain text
+     */
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler({ PaymentUnavailableException.class })
+    public String paymentUnavailable(PaymentUnavailableException e, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+        return e.getMessage();
     }
 }
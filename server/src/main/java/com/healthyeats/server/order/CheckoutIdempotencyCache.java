@@ -0,0 +1,99 @@
+package com.healthyeats.server.order;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bounded in-memory map of recent checkout Idempotency-Keys to their result
+ * (the order and its Stripe Checkout URL).
+ *
+ * Entries are kept in LRU order; the least recently used one is dropped once
+ * {@code checkout.idempotency.cache-size} is reached, and entries older than
+ * {@code checkout.idempotency.ttl} are ignored. A key is registered before any
+ * work starts, so a double click arriving while the first request is still
+ * waiting for Stripe gets the same in-flight future.
+ *
+ * This is only the fast path: keys are also stored on the {@link Order}, so a
+ * key evicted here (or seen by another node) is still found in the database.
+ */
+@Component
+public class CheckoutIdempotencyCache {
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    @Autowired
+    public CheckoutIdempotencyCache(@Value("${checkout.idempotency.cache-size:10000}") int maxEntries,
+                                    @Value("${checkout.idempotency.ttl:PT24H}") Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    CheckoutIdempotencyCache(int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CheckoutIdempotencyCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Registers {@code result} for the key unless a live entry already exists.
+     *
+     * @param scope       user and key, e.g. "42:5f0c…"
+     * @param contentHash hash of the checkout content the key was sent with
+     * @param result      future the caller will complete if it becomes the owner
+     * @return the existing future for this key, or null if the caller now owns it
+     * @throws IdempotencyKeyReusedException if the key was used for different content
+     */
+    public synchronized CompletableFuture<CheckoutResult> putIfAbsent(String scope, String contentHash,
+                                                                      CompletableFuture<CheckoutResult> result) {
+        Instant now = clock.instant();
+        Entry existing = entries.get(scope);
+        if (existing != null && existing.createdAt().plus(ttl).isAfter(now)) {
+            if (!existing.contentHash().equals(contentHash)) {
+                throw new IdempotencyKeyReusedException();
+            }
+            return existing.result();
+        }
+        entries.put(scope, new Entry(contentHash, result, now));
+        return null;
+    }
+
+    /**
+     * Drops the entry for a key if it still holds {@code result}
+     * (used when the checkout failed or is still pending, so a retry looks again).
+     *
+     * @param scope  user and key
+     * @param result the future registered by {@link #putIfAbsent}
+     */
+    public synchronized void forget(String scope, CompletableFuture<CheckoutResult> result) {
+        Entry existing = entries.get(scope);
+        if (existing != null && existing.result() == result) {
+            entries.remove(scope);
+        }
+    }
+
+    /**
+     * @return number of cached keys
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry(String contentHash, CompletableFuture<CheckoutResult> result, Instant createdAt) {}
+}
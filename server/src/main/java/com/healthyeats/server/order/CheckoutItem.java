@@ -8,14 +8,18 @@ import lombok.Data;
  *
  * Sent from the frontend during checkout to indicate
  * which products and quantities the user wants to purchase.
+ * Products are identified by ID; prices are always taken from the database.
  */
 @Data
 public class CheckoutItem {
 
-    /** Product name (used for display in Stripe and DB lookup). */
+    /** Product ID (preferred). */
+    private Long productId;
+
+    /** Product name; only used to resolve the product when no ID is given (legacy clients). */
     private String name;
 
-    /** Price per unit in cents (integer, avoids floating-point issues). */
+    /** Ignored: the server prices every line. Kept so older clients can still send it. */
     private int priceCents;
 
     /** Quantity of this product being purchased. */
@@ -8,15 +8,15 @@ import java.util.List;
  * sent by the frontend to initiate a checkout.
  *
  * Contains:
- * - A list of items being purchased
+ * - A list of items being purchased (or none, to check out the cart)
  * - The shipping address for the order
  */
 @Data
 public class CheckoutRequest {
 
     /**
-     * List of items the user wants to purchase.
-     * Each item includes name, unit price (in cents), and quantity.
+     * List of items the user wants to purchase (product ID + quantity).
+     * Optional: if null or empty, the user's server-side cart is checked out.
      */
     private List<CheckoutItem> items;
 
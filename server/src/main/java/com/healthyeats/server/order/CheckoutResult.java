@@ -0,0 +1,18 @@
+package com.healthyeats.server.order;
+
+/**
+ * Outcome of a checkout request: the order and its Stripe Checkout URL.
+ *
+ * @param orderId order being paid for
+ * @param url     hosted checkout URL, or null while the session is still being
+ *                created (the client polls {@code GET /api/checkout/{orderId}})
+ */
+public record CheckoutResult(Long orderId, String url) {
+
+    /**
+     * @return true if the Checkout URL is not known yet
+     */
+    public boolean pending() {
+        return url == null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.healthyeats.server.order;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Minimal consecutive-failure circuit breaker guarding calls to the payment provider.
+ *
+ * States:
+ * - CLOSED: calls pass; {@code failureThreshold} consecutive failures open the circuit
+ * - OPEN: calls are rejected immediately until {@code openDuration} has passed
+ * - HALF_OPEN: a single trial call is let through; success closes the circuit,
+ *   failure opens it again for another {@code openDuration}
+ *
+ * Thread-safe; all transitions happen under the instance lock (they are rare
+ * and cheap compared with the remote call they guard).
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openDuration.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Asks for permission to make a call.
+     *
+     * @return true if the call may proceed (it must then report {@link #onSuccess()} or {@link #onFailure()})
+     */
+    synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.millis() - openedAt < openMillis) return false;
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+                // fall through: this caller may become the trial call
+            case HALF_OPEN:
+            default:
+                if (trialInFlight) return false;
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Gives back a permission that was granted but not used for a call
+     * (e.g. the bulkhead was full).
+     */
+    synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) trialInFlight = false;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.millis();
+            trialInFlight = false;
+        }
+    }
+
+    synchronized State state() {
+        if (state == State.OPEN && clock.millis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,12 @@
+package com.healthyeats.server.order;
+
+/**
+ * Thrown when a checkout Idempotency-Key is sent again with a different cart
+ * or address. Mapped to HTTP 422 by {@link CheckoutController}.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException() {
+        super("Idempotency-Key was already used for a different checkout");
+    }
+}
@@ -14,25 +14,51 @@ import java.util.List;
  * and stores shipping address + payment status.
  *
  * Mapped to the "orders" table.
+ *
+ * All associations are lazy. The named entity graph {@value #WITH_ITEMS}
+ * loads an order together with its items and their products in one query.
+ *
+ * Checkout deduplication (see {@link CheckoutController}): an order remembers
+ * the client's Idempotency-Key (unique per user), a hash of its lines, prices
+ * and address, and the Stripe Checkout URL it was given.
  */
 @Entity
-@Table(name = "orders")
+@Table(name = "orders",
+        uniqueConstraints = @UniqueConstraint(name = "uk_orders_user_idempotency_key",
+                columnNames = { "user_id", "idempotency_key" }),
+        indexes = {
+                @Index(name = "idx_orders_user_content_hash", columnList = "user_id, content_hash"),
+                @Index(name = "idx_orders_user_created_at", columnList = "user_id, created_at, id")
+        })
+@NamedEntityGraph(
+        name = Order.WITH_ITEMS,
+        attributeNodes = @NamedAttributeNode(value = "items", subgraph = "items"),
+        subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("product"))
+)
 @Data
 public class Order {
 
+    /** Entity graph: order + items + items.product. */
+    public static final String WITH_ITEMS = "Order.withItems";
+
     /**
      * Primary key.
-     * Auto-generated using database identity column.
+     * Taken from the pooled sequence "orders_seq": one sequence call hands out 50 IDs,
+     * and since IDs are known before INSERT, Hibernate can batch the inserts
+     * (an identity column would force one round trip per row).
+     * Each node draws its own block, so IDs are not in creation order: list
+     * orders by {@link #createdAt} (ID only as tie-breaker).
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     /**
      * The user who placed the order.
-     * Mandatory relationship (cannot be null).
+     * Mandatory relationship (cannot be null). Lazy: order history never needs it.
      */
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private User user;
 
     /**
@@ -65,6 +91,20 @@ public class Order {
     /** Country name. */
     private String country;
 
+    // --- Checkout deduplication ---
+
+    /** Idempotency-Key sent with the checkout that created this order (optional). */
+    @Column(length = 255)
+    private String idempotencyKey;
+
+    /** SHA-256 (hex) of the priced lines and shipping address. */
+    @Column(length = 64)
+    private String contentHash;
+
+    /** Stripe Checkout URL, once the session has been created. */
+    @Column(length = 2048)
+    private String checkoutUrl;
+
     /**
      * List of order items (products purchased).
      * Cascade type ALL ensures items are persisted/removed together with the order.
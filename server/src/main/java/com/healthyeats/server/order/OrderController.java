@@ -1,13 +1,11 @@
 package com.healthyeats.server.order;
 
-import com.healthyeats.server.user.User;
-import com.healthyeats.server.user.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.web.bind.annotation.CrossOrigin;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 
@@ -15,7 +13,8 @@ import java.util.List;
  * REST controller for managing user orders.
  *
  * Provides endpoints for fetching the authenticated user's
- * order history including address, items, and payment status.
+ * order history including address, items, and payment status,
+ * either all at once or page by page.
  *
  * Base path: /api/orders
  * Allows cross-origin requests from the frontend (localhost:5173).
@@ -26,17 +25,18 @@ import java.util.List;
 public class OrderController {
 
     private final OrderRepository orderRepository;
-    private final UserRepository userRepository;
+
+    /** Upper bound for {@code limit} on the paginated history. */
+    @Value("${orders.page.max-size:50}")
+    private int maxPageSize;
 
     /**
      * Constructor-based dependency injection.
      *
      * @param orderRepository repository for Order entities
-     * @param userRepository  repository for User entities
      */
-    public OrderController(OrderRepository orderRepository, UserRepository userRepository) {
+    public OrderController(OrderRepository orderRepository) {
         this.orderRepository = orderRepository;
-        this.userRepository = userRepository;
     }
 
     /**
@@ -46,9 +46,9 @@ public class OrderController {
      *
      * Steps:
      * 1. Get authenticated user's email from SecurityContext.
-     * 2. Load user from database (throws if missing).
-     * 3. Fetch all orders for this user.
-     * 4. Map orders into {@link OrderDTO} objects, including:
+     * 2. Load the user's orders with items and products in one query
+     *    (entity graph {@link Order#WITH_ITEMS}, newest first by creation time, then ID).
+     * 3. Map orders into {@link OrderDTO} objects, including:
      *    - Order ID
      *    - Paid status
      *    - Creation timestamp
@@ -62,32 +62,57 @@ public class OrderController {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String email = authentication.getName();
 
-        // Load user from database (required for userId)
-        User user = userRepository.findByEmail(email)
-            .orElseThrow(() -> new RuntimeException("User not found: " + email));
-
-        // Fetch orders and map into DTOs
-        return orderRepository.findByUserId(user.getId())
+        // Single statement: orders ⨝ items ⨝ products, filtered by user email
+        return orderRepository.findByUserEmailOrderByCreatedAtDescIdDesc(email)
             .stream()
-            .map(order -> new OrderDTO(
-                order.getId(),
-                order.isPaid(),
-                order.getCreatedAt().toString(),
-                new AddressDTO(
-                    order.getFullName(),
-                    order.getStreet(),
-                    order.getCity(),
-                    order.getZip(),
-                    order.getCountry()
-                ),
-                order.getItems().stream()
-                    .map(i -> new OrderItemDTO(
-                        i.getProduct().getName(),
-                        i.getQuantity(),
-                        i.getPriceCents()
-                    ))
-                    .toList()
-            ))
+            .map(OrderDTO::from)
             .toList();
     }
+
+    /**
+     * GET /api/orders?before={cursor}&limit={n}
+     *
+     * Fetch one page of the authenticated user's orders, newest first,
+     * using keyset pagination on (creation time, order ID).
+     * - before (optional): {@code nextBefore} of the previous page (omit for the first page)
+     * - limit (required): page size, capped at orders.page.max-size
+     *
+     * Always two statements regardless of page size or items per order:
+     * 1. page of order IDs (limit + 1, to detect a next page)
+     * 2. those orders with items and products (entity graph {@link Order#WITH_ITEMS})
+     *
+     * @return page of OrderDTOs plus the cursor for the next page
+     */
+    @GetMapping(params = "limit")
+    public OrderPageDTO getOrdersPage(@RequestParam(required = false) String before,
+                                      @RequestParam int limit) {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        OrderCursor after = before != null && !before.isBlank() ? OrderCursor.decode(before) : null;
+
+        Limit fetch = Limit.of(size + 1);
+        List<Long> ids = after != null
+                ? orderRepository.findIdsByUserEmailBefore(email, after.createdAt(), after.id(), fetch)
+                : orderRepository.findIdsByUserEmail(email, fetch);
+        boolean hasMore = ids.size() > size;
+        if (hasMore) ids = ids.subList(0, size);
+        if (ids.isEmpty()) return new OrderPageDTO(List.of(), null);
+
+        List<Order> orders = orderRepository.findWithItemsByIdIn(ids);
+        return new OrderPageDTO(
+                orders.stream().map(OrderDTO::from).toList(),
+                hasMore ? OrderCursor.after(orders.get(orders.size() - 1)).encode() : null);
+    }
+
+    /**
+     * Maps a malformed {@code before} cursor to HTTP 400 with the error message as body.
+     *
+     * @param e the exception
+     * @return error message as plain text
+     */
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler({ IllegalArgumentException.class })
+    public String badRequest(Exception e) {
+        return e.getMessage();
+    }
 }
@@ -0,0 +1,58 @@
+package com.healthyeats.server.order;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for the paginated order history.
+ *
+ * Holds the sort key of the last order on a page (creation time + ID), so
+ * the next page is fetched with a {@code (created_at, id) < (?, ?)} predicate
+ * instead of an OFFSET. The ID only breaks ties: IDs come from a pooled
+ * sequence, so they are not in creation order across nodes.
+ *
+ * Encoded as URL-safe Base64 of {@code "<id>:<createdAt ISO-8601>"}.
+ *
+ * @param createdAt creation time of the last order on the previous page
+ * @param id        ID of the last order on the previous page
+ */
+public record OrderCursor(
+        LocalDateTime createdAt,
+        long id
+) {
+
+    /**
+     * Builds the cursor pointing after (i.e. older than) the given order.
+     */
+    static OrderCursor after(Order last) {
+        return new OrderCursor(last.getCreatedAt(), last.getId());
+    }
+
+    /**
+     * @return opaque token to hand to the client
+     */
+    public String encode() {
+        String raw = id + ":" + createdAt;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a token previously produced by {@link #encode()}.
+     *
+     * @param token opaque cursor token
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":", 2);
+            if (parts.length != 2) throw new IllegalArgumentException("Malformed cursor");
+            return new OrderCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[0]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -20,4 +20,34 @@ public record OrderDTO(
         String createdAt,
         AddressDTO address,
         List<OrderItemDTO> items
-) {}
+) {
+
+    /**
+     * Maps an order entity (with items and products initialised,
+     * see {@link Order#WITH_ITEMS}) into a DTO.
+     *
+     * @param order order entity
+     * @return DTO
+     */
+    public static OrderDTO from(Order order) {
+        return new OrderDTO(
+                order.getId(),
+                order.isPaid(),
+                order.getCreatedAt().toString(),
+                new AddressDTO(
+                        order.getFullName(),
+                        order.getStreet(),
+                        order.getCity(),
+                        order.getZip(),
+                        order.getCountry()
+                ),
+                order.getItems().stream()
+                        .map(i -> new OrderItemDTO(
+                                i.getProduct().getName(),
+                                i.getQuantity(),
+                                i.getPriceCents()
+                        ))
+                        .toList()
+        );
+    }
+}
@@ -19,24 +19,27 @@ public class OrderItem {
 
     /**
      * Primary key.
-     * Auto-generated using database identity column.
+     * Taken from the pooled sequence "order_items_seq": one sequence call hands out 50 IDs,
+     * and since IDs are known before INSERT, Hibernate can batch the inserts
+     * (an identity column would force one round trip per row).
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = 50)
     private Long id;
 
     /**
      * The parent order that this item belongs to.
-     * Mandatory relationship.
+     * Mandatory relationship (lazy).
      */
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Order order;
 
     /**
      * The product that was purchased.
-     * Mandatory relationship.
+     * Mandatory relationship (lazy; see {@link Order#WITH_ITEMS}).
      */
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Product product;
 
     /**
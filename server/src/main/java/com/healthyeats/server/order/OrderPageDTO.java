@@ -0,0 +1,15 @@
+package com.healthyeats.server.order;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing one page of the order history.
+ *
+ * @param items      orders on this page, newest first
+ * @param nextBefore opaque {@link OrderCursor} to pass as {@code before} for the
+ *                   next (older) page, or null if there are no older orders
+ */
+public record OrderPageDTO(
+        List<OrderDTO> items,
+        String nextBefore
+) {}
@@ -1,10 +1,72 @@
 package com.healthyeats.server.order;
 
-import com.healthyeats.server.user.User;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUserId(Long userId);
+
+    /** Order history with items and products in a single query (newest first by creation time). */
+    @EntityGraph(Order.WITH_ITEMS)
+    List<Order> findByUserEmailOrderByCreatedAtDescIdDesc(String email);
+
+    // --- Keyset-paginated order history ---
+    // Step 1 pages over order IDs only (a LIMIT on a collection fetch join would be applied in memory),
+    // step 2 loads exactly those orders with items and products.
+
+    /** IDs of the user's newest orders (first page), newest first. */
+    @Query("""
+            select o.id from Order o
+            where o.user.email = :email
+            order by o.createdAt desc, o.id desc""")
+    List<Long> findIdsByUserEmail(@Param("email") String email, Limit limit);
+
+    /** IDs of the user's orders older than the cursor position {@code (createdAt, id)}, newest first. */
+    @Query("""
+            select o.id from Order o
+            where o.user.email = :email
+              and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))
+            order by o.createdAt desc, o.id desc""")
+    List<Long> findIdsByUserEmailBefore(@Param("email") String email,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") long id,
+                                        Limit limit);
+
+    /** Orders with items and products for the given IDs, newest first. */
+    @EntityGraph(Order.WITH_ITEMS)
+    @Query("select o from Order o where o.id in :ids order by o.createdAt desc, o.id desc")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // --- Checkout deduplication ---
+
+    /** The order created by an earlier checkout with this Idempotency-Key. */
+    Optional<Order> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    /** The newest unpaid order of the user with the same content, created after {@code after}. */
+    Optional<Order> findFirstByUserIdAndPaidFalseAndContentHashAndCreatedAtAfterOrderByCreatedAtDescIdDesc(
+            Long userId, String contentHash, LocalDateTime after);
+
+    /** One of the user's orders (checkout status polling). */
+    Optional<Order> findByIdAndUserEmail(Long id, String email);
+
+    /** Stores the Stripe Checkout URL without loading the order. */
+    @Transactional
+    @Modifying
+    @Query("update Order o set o.checkoutUrl = :url where o.id = :id")
+    int updateCheckoutUrl(@Param("id") Long id, @Param("url") String url);
+
+    /** Marks a batch of orders paid in one statement (webhook ingestion). */
+    @Transactional
+    @Modifying
+    @Query("update Order o set o.paid = true where o.id in :ids and o.paid = false")
+    int markPaid(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,221 @@
+package com.healthyeats.server.order;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-process queue between the Stripe webhook and the orders table.
+ *
+ * The webhook only verifies the event and {@link #offer}s the order ID (with
+ * the event ID), then answers Stripe right away. A single worker thread drains whatever has queued
+ * up (at most {@code webhooks.batch.max-size} IDs) and marks all of them paid with
+ * one {@code UPDATE orders SET paid = true WHERE id IN (...)}. A burst of
+ * checkout.session.completed events therefore costs a few statements, not one
+ * transaction per event.
+ *
+ * When the queue is full, {@link #offer} returns false and the webhook answers
+ * 503, so Stripe redelivers the event later. Stripe has already been answered
+ * for every queued ID, so a failed update is never dropped: the batch is retried
+ * with exponential backoff ({@code webhooks.batch.retry-delay}, doubled up to
+ * {@code webhooks.batch.max-retry-delay}) until it succeeds. Meanwhile new events
+ * fill the queue and are refused with 503 once it is full. IDs still queued at
+ * shutdown are flushed; whatever cannot be written before the shutdown timeout
+ * is logged with its order IDs.
+ *
+ * Event IDs are recorded in the {@link WebhookEventLog} only after their orders
+ * were marked paid. Until then a redelivery or a manual resend from the Stripe
+ * dashboard is processed again (marking paid is idempotent), so an event lost
+ * with the process, or with a shutdown that timed out, can still be recovered.
+ *
+ * Metrics: {@code webhooks.queue.depth} (gauge), {@code webhooks.batch.size}
+ * (distribution of IDs per UPDATE), {@code webhooks.rejected} (queue full),
+ * {@code webhooks.update.failed} (failed UPDATE attempts, each retried).
+ * Each batch is traced as a {@code webhooks.mark-paid} span listing its order IDs.
+ */
+@Component
+public class PaidOrderQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(PaidOrderQueue.class);
+
+    private final OrderRepository orderRepository;
+    private final WebhookEventLog eventLog;
+    private final BlockingQueue<PaidEvent> queue;
+    private final int maxBatchSize;
+    private final Duration retryDelay;
+    private final Duration maxRetryDelay;
+    private final ObservationRegistry observations;
+
+    private final DistributionSummary batchSize;
+    private final Counter rejected;
+    private final Counter failed;
+
+    private volatile boolean running = true;
+    private volatile List<PaidEvent> inFlight = List.of();
+    private Thread worker;
+
+    public PaidOrderQueue(OrderRepository orderRepository,
+                          WebhookEventLog eventLog,
+                          @Value("${webhooks.queue.capacity:10000}") int capacity,
+                          @Value("${webhooks.batch.max-size:500}") int maxBatchSize,
+                          @Value("${webhooks.batch.retry-delay:PT1S}") Duration retryDelay,
+                          @Value("${webhooks.batch.max-retry-delay:PT1M}") Duration maxRetryDelay,
+                          MeterRegistry meterRegistry,
+                          ObservationRegistry observations) {
+        this.orderRepository = orderRepository;
+        this.eventLog = eventLog;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.observations = observations;
+
+        Gauge.builder("webhooks.queue.depth", queue, BlockingQueue::size)
+                .description("Paid-order events waiting to be written")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("webhooks.batch.size")
+                .description("Orders marked paid per UPDATE statement")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("webhooks.rejected")
+                .description("Webhook events refused because the queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("webhooks.update.failed")
+                .description("Failed attempts to mark a batch of orders paid (the batch is retried)")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = Thread.ofPlatform().name("paid-order-writer").daemon().start(this::run);
+    }
+
+    /**
+     * Queues an order to be marked paid.
+     *
+     * @param orderId order ID from the event's client_reference_id
+     * @param eventId Stripe event ID, recorded once the order is marked paid
+     * @return false if the queue is full (the event should be refused)
+     */
+    public boolean offer(Long orderId, String eventId) {
+        if (running && queue.offer(new PaidEvent(orderId, eventId))) return true;
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * @return number of queued order IDs
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting events and waits for the worker to flush the queue.
+     * Orders it could not mark paid in time are logged, so they can be fixed
+     * by resending their events from the Stripe dashboard.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker == null) return;
+        worker.join(10_000);
+        if (worker.isAlive()) {
+            List<PaidEvent> pending = new ArrayList<>(inFlight);
+            pending.addAll(queue);
+            log.atError()
+                    .addKeyValue("orderIds", pending.stream().map(PaidEvent::orderId).toList())
+                    .addKeyValue("eventIds", pending.stream().map(PaidEvent::eventId).toList())
+                    .log("Shutting down with orders not yet marked paid; resend these events from Stripe");
+        }
+    }
+
+    private void run() {
+        List<PaidEvent> drained = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PaidEvent first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                drained.add(first);
+                queue.drainTo(drained, maxBatchSize - 1);
+                markPaid(drained);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void markPaid(List<PaidEvent> drained) throws InterruptedException {
+        // The same session can be delivered more than once
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(drained.stream().map(PaidEvent::orderId).toList()));
+        Observation span = Observation.createNotStarted("webhooks.mark-paid", observations)
+                .highCardinalityKeyValue("order.ids", ids.toString())
+                .start();
+        inFlight = List.copyOf(drained);
+        try {
+            update(ids, span);
+            record(drained);
+        } finally {
+            inFlight = List.of();
+            span.stop();
+        }
+    }
+
+    /** Retries until the update succeeds: the events were acknowledged, Stripe will not resend them. */
+    private void update(List<Long> ids, Observation span) throws InterruptedException {
+        Duration delay = retryDelay;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                orderRepository.markPaid(ids);
+                batchSize.record(ids.size());
+                return;
+            } catch (RuntimeException e) {
+                failed.increment();
+                if (attempt == 1) span.error(e);
+                log.atError()
+                        .addKeyValue("orderIds", ids)
+                        .addKeyValue("attempt", attempt)
+                        .addKeyValue("retryInMs", delay.toMillis())
+                        .setCause(e)
+                        .log("Could not mark orders paid, retrying");
+                Thread.sleep(delay.toMillis());
+                delay = delay.multipliedBy(2).compareTo(maxRetryDelay) > 0 ? maxRetryDelay : delay.multipliedBy(2);
+            }
+        }
+    }
+
+    /** The orders are paid; failing to record the events only means a redelivery is processed again. */
+    private void record(List<PaidEvent> events) {
+        List<String> eventIds = events.stream().map(PaidEvent::eventId).distinct().toList();
+        try {
+            eventLog.record(eventIds);
+        } catch (RuntimeException e) {
+            log.atWarn()
+                    .addKeyValue("eventIds", eventIds)
+                    .setCause(e)
+                    .log("Could not record webhook events");
+        }
+    }
+
+    private record PaidEvent(Long orderId, String eventId) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.healthyeats.server.order;
+
+import com.stripe.StripeClient;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.checkout.SessionCreateParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Makes outbound calls to the payment provider (Stripe) off the request threads.
+ *
+ * Every call runs on its own virtual thread, so a slow provider never pins
+ * Tomcat workers; the controller returns a {@link CompletableFuture} and the
+ * servlet thread goes back to serving catalog and cart traffic.
+ *
+ * Protection (all configurable under {@code payments.*}):
+ * - Bulkhead: at most {@code max-concurrent} calls in flight; further calls are
+ *   rejected at once instead of queueing behind a slow provider.
+ * - Timeouts: connect/read timeouts on the HTTP call itself, plus an overall
+ *   {@code call-timeout} after which the caller gets an answer regardless.
+ * - Circuit breaker: {@code breaker.failure-threshold} consecutive failures
+ *   (network errors, 5xx, 429, timeouts) stop calls for {@code breaker.open-duration};
+ *   then one trial call decides whether to resume.
+ *
+ * Each call reports exactly one outcome to the breaker: a call that outlives
+ * {@code call-timeout} counts as the timeout failure, not again when it ends.
+ *
+ * Rejections and failures surface as {@link PaymentUnavailableException}.
+ * Calls go through its own {@link StripeClient} rather than the static
+ * {@code Stripe.apiKey}; {@code stripe.api-base} points it at another host
+ * (e.g. the fake Stripe server used by the checkout load test).
+ *
+ * Every provider round trip is timed in {@code payments.stripe.requests},
+ * tagged with the operation and its outcome (success, rejected by Stripe,
+ * failure).
+ */
+@Component
+public class PaymentGateway {
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("payment-", 0).factory());
+
+    private final Semaphore bulkhead;
+    private final CircuitBreaker breaker;
+    private final StripeClient stripe;
+    private final Duration callTimeout;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter rejected;
+    private final Counter failed;
+
+    public PaymentGateway(@Value("${stripe.secret-key:}") String secretKey,
+                          @Value("${stripe.api-base:}") String apiBase,
+                          @Value("${payments.max-concurrent:32}") int maxConcurrent,
+                          @Value("${payments.connect-timeout:PT2S}") Duration connectTimeout,
+                          @Value("${payments.read-timeout:PT8S}") Duration readTimeout,
+                          @Value("${payments.call-timeout:PT10S}") Duration callTimeout,
+                          @Value("${payments.breaker.failure-threshold:5}") int failureThreshold,
+                          @Value("${payments.breaker.open-duration:PT30S}") Duration openDuration,
+                          MeterRegistry meterRegistry) {
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.breaker = new CircuitBreaker(failureThreshold, openDuration, Clock.systemUTC());
+        StripeClient.StripeClientBuilder client = StripeClient.builder()
+                .setApiKey(secretKey)
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setReadTimeout((int) readTimeout.toMillis());
+        if (!apiBase.isBlank()) {
+            client.setApiBase(apiBase);
+        }
+        this.stripe = client.build();
+        this.callTimeout = callTimeout;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("payments.inflight", bulkhead, b -> maxConcurrent - b.availablePermits())
+                .description("Payment provider calls currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("payments.breaker.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the payment circuit breaker is open or half-open")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("payments.rejected")
+                .description("Payment calls rejected by the bulkhead or the open circuit")
+                .register(meterRegistry);
+        this.failed = Counter.builder("payments.failed")
+                .description("Payment calls that failed or timed out")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates a Stripe Checkout session asynchronously.
+     *
+     * @param params         session parameters
+     * @param idempotencyKey Stripe Idempotency-Key; a retry with the same key
+     *                       returns the session created by the first attempt
+     * @return future completing with the hosted checkout URL, or exceptionally
+     *         with {@link PaymentUnavailableException}
+     */
+    public CompletableFuture<String> createCheckoutSession(SessionCreateParams params, String idempotencyKey) {
+        RequestOptions options = RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
+        return call("checkout.sessions.create", () -> stripe.checkout().sessions().create(params, options).getUrl());
+    }
+
+    /**
+     * @return calls that can start right now without being rejected by the bulkhead
+     */
+    public int availableCapacity() {
+        return bulkhead.availablePermits();
+    }
+
+    /**
+     * Runs one provider call through breaker, bulkhead and timeout.
+     *
+     * @param operation Stripe operation, used as the timer tag
+     */
+    private <T> CompletableFuture<T> call(String operation, StripeCall<T> call) {
+        if (!breaker.tryAcquirePermission()) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                    new PaymentUnavailableException("Payment provider unavailable (circuit open), please retry shortly"));
+        }
+        if (!bulkhead.tryAcquire()) {
+            breaker.releasePermission();
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                    new PaymentUnavailableException("Too many payments in progress, please retry shortly"));
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // The call-timeout and the call itself race to report; the breaker and counter hear only the first
+        AtomicBoolean reported = new AtomicBoolean();
+        try {
+            executor.execute(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                String outcome = "failure";
+                try {
+                    T value = call.run();
+                    reportSuccess(reported);
+                    outcome = "success";
+                    result.complete(value);
+                } catch (StripeException e) {
+                    if (countsAsFailure(e)) {
+                        reportFailure(reported);
+                        result.completeExceptionally(new PaymentUnavailableException("Payment provider error", e));
+                    } else {
+                        // The provider answered; a rejected request says nothing about its health
+                        reportSuccess(reported);
+                        outcome = "rejected";
+                        result.completeExceptionally(e);
+                    }
+                } catch (RuntimeException e) {
+                    reportFailure(reported);
+                    result.completeExceptionally(new PaymentUnavailableException("Payment provider error", e));
+                } finally {
+                    bulkhead.release();
+                    sample.stop(Timer.builder("payments.stripe.requests")
+                            .description("Round trips to the payment provider")
+                            .tag("operation", operation)
+                            .tag("outcome", outcome)
+                            .register(meterRegistry));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            breaker.releasePermission();
+            return CompletableFuture.failedFuture(new PaymentUnavailableException("Payment gateway is shutting down", e));
+        }
+
+        return result
+                .orTimeout(callTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        reportFailure(reported);
+                        return CompletableFuture.failedFuture(
+                                new PaymentUnavailableException("Payment provider timed out, please retry", cause));
+                    }
+                    return CompletableFuture.failedFuture(cause);
+                });
+    }
+
+    private void reportSuccess(AtomicBoolean reported) {
+        if (reported.compareAndSet(false, true)) {
+            breaker.onSuccess();
+        }
+    }
+
+    private void reportFailure(AtomicBoolean reported) {
+        if (reported.compareAndSet(false, true)) {
+            breaker.onFailure();
+            failed.increment();
+        }
+    }
+
+    /**
+     * Network errors, rate limiting and server-side errors indicate an unhealthy provider.
+     * Stripe reports no response (connect or read timeout) as status 0.
+     */
+    private static boolean countsAsFailure(StripeException e) {
+        Integer status = e.getStatusCode();
+        return e instanceof ApiConnectionException || status == null || status == 0 || status == 429 || status >= 500;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface StripeCall<T> {
+        T run() throws StripeException;
+    }
+}
@@ -0,0 +1,396 @@
+package com.healthyeats.server.order;
+
+import com.healthyeats.server.observability.Spans;
+import com.stripe.param.checkout.SessionCreateParams;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transactional outbox between order creation and the payment provider.
+ *
+ * Checkout never calls Stripe directly. {@link #saveWithOutbox} writes the
+ * order and a {@code payment_outbox} row in one transaction. After that, the
+ * order cannot exist without a pending session request, and a failed Stripe
+ * call does not leave an orphaned order behind.
+ *
+ * A dispatcher (every {@code payments.outbox.poll-interval}, and right after each
+ * checkout via {@link #kick()}):
+ * 1. Claims up to {@code batch-size} due rows with {@code SELECT ... FOR UPDATE SKIP LOCKED}
+ *    and marks them PROCESSING with a lease, so several nodes never claim the same row.
+ * 2. Loads the orders with items and products in one query and creates the
+ *    Stripe sessions through {@link PaymentGateway} (no more than the bulkhead has room for).
+ * 3. On success, stores the Checkout URL on the order and marks the row DONE
+ *    (one transaction). On a provider failure, reschedules the row with
+ *    exponential backoff, or marks it FAILED after {@code max-attempts} or a
+ *    rejected request.
+ * Rows whose lease ran out (node died mid-call) are claimed again.
+ * Each Stripe call is traced as a {@code payments.session.create} span
+ * carrying the order ID. Every call for an order sends the Stripe Idempotency-Key
+ * {@code order-<id>}, so a retry after a timeout, or after a crash between the
+ * call and the DONE write, gets the session created the first time instead of
+ * a second one.
+ *
+ * Requests wait for their order through {@link #awaitCheckoutUrl}, which is bounded by
+ * {@code payments.outbox.wait-timeout}; past that, the client polls. The waiter
+ * is registered by {@link #saveWithOutbox} and {@link #requeue} before the row
+ * can be dispatched, and a finished waiter stays until it is awaited, so a fast
+ * dispatch cannot finish unnoticed.
+ *
+ * The table is created on first start (not a JPA entity, like {@code cart_store}).
+ */
+@Component
+public class PaymentOutbox {
+
+    /** Row states in {@code payment_outbox.status}. */
+    public enum Status { PENDING, PROCESSING, DONE, FAILED }
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutbox.class);
+
+    private static final String CLAIM_SQL = """
+            SELECT id, order_id, attempts FROM payment_outbox
+            WHERE (status = 'PENDING' AND next_attempt_at <= ?)
+               OR (status = 'PROCESSING' AND locked_until < ?)
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED""";
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final OrderRepository orderRepository;
+    private final PaymentGateway paymentGateway;
+    private final ObservationRegistry observations;
+
+    private final int batchSize;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration waitTimeout;
+    private final Duration retention;
+
+    /** Requests waiting for an order's Checkout URL on this node (removed once awaited). */
+    private final ConcurrentHashMap<Long, CompletableFuture<String>> waiters = new ConcurrentHashMap<>();
+
+    private final ExecutorService kicker = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("payment-outbox").factory());
+    private final AtomicBoolean kickQueued = new AtomicBoolean();
+
+    public PaymentOutbox(JdbcTemplate jdbc,
+                         PlatformTransactionManager transactionManager,
+                         OrderRepository orderRepository,
+                         PaymentGateway paymentGateway,
+                         ObservationRegistry observations,
+                         @Value("${payments.outbox.batch-size:20}") int batchSize,
+                         @Value("${payments.outbox.lease:PT1M}") Duration lease,
+                         @Value("${payments.outbox.max-attempts:8}") int maxAttempts,
+                         @Value("${payments.outbox.retry-backoff:PT2S}") Duration retryBackoff,
+                         @Value("${payments.outbox.wait-timeout:PT10S}") Duration waitTimeout,
+                         @Value("${payments.outbox.retention:P7D}") Duration retention) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.orderRepository = orderRepository;
+        this.paymentGateway = paymentGateway;
+        this.observations = observations;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.waitTimeout = waitTimeout;
+        this.retention = retention;
+    }
+
+    @PostConstruct
+    public void createTable() {
+        jdbc.execute("""
+                CREATE TABLE IF NOT EXISTS payment_outbox (
+                    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                    order_id        BIGINT       NOT NULL UNIQUE,
+                    status          VARCHAR(16)  NOT NULL,
+                    attempts        INT          NOT NULL DEFAULT 0,
+                    next_attempt_at TIMESTAMP    NOT NULL,
+                    locked_until    TIMESTAMP,
+                    last_error      VARCHAR(500),
+                    created_at      TIMESTAMP    NOT NULL
+                )""");
+        jdbc.execute("CREATE INDEX IF NOT EXISTS idx_payment_outbox_due ON payment_outbox (status, next_attempt_at)");
+    }
+
+    /**
+     * Saves a new order (with its items) and its outbox row in one transaction.
+     *
+     * @param order unsaved order
+     * @throws org.springframework.dao.DataIntegrityViolationException if the order
+     *         violates a constraint (e.g. a duplicate Idempotency-Key); nothing is written
+     */
+    public void saveWithOutbox(Order order) {
+        try {
+            tx.executeWithoutResult(status -> {
+                orderRepository.saveAndFlush(order);
+                insert(order.getId());
+                // Before commit, so the dispatcher cannot claim the row ahead of the waiter
+                register(order.getId());
+            });
+        } catch (RuntimeException e) {
+            if (order.getId() != null) waiters.remove(order.getId());
+            throw e;
+        }
+    }
+
+    /**
+     * Makes sure an existing order without a Checkout URL has a pending outbox row:
+     * adds one for orders created before the outbox existed, and re-arms a FAILED one
+     * (the user is explicitly retrying).
+     *
+     * @param orderId order ID
+     * @return the Checkout URL if the row turned out to be done already, else null
+     */
+    public String requeue(Long orderId) {
+        // Before reading the row: a dispatch finishing after the read completes this waiter
+        CompletableFuture<String> waiter = register(orderId);
+        String url = tx.execute(status -> {
+            List<String> rows = jdbc.queryForList(
+                    "SELECT status FROM payment_outbox WHERE order_id = ? FOR UPDATE", String.class, orderId);
+            if (rows.isEmpty()) {
+                insert(orderId);
+            } else if (Status.FAILED.name().equals(rows.get(0))) {
+                jdbc.update("""
+                        UPDATE payment_outbox
+                        SET status = 'PENDING', attempts = 0, next_attempt_at = ?, last_error = NULL
+                        WHERE order_id = ?""", now(), orderId);
+            } else if (Status.DONE.name().equals(rows.get(0))) {
+                return orderRepository.findById(orderId).map(Order::getCheckoutUrl).orElse(null);
+            }
+            return null;
+        });
+        if (url != null) waiters.remove(orderId, waiter);
+        return url;
+    }
+
+    /**
+     * Waits (asynchronously) for the dispatcher to create the order's Stripe session.
+     * Call after {@link #saveWithOutbox} or {@link #requeue}, which register the wait.
+     *
+     * @param orderId order with a pending outbox row
+     * @return future completing with the Checkout URL; with the provider failure
+     *         if the attempt fails; or with {@link TimeoutException} after
+     *         {@code payments.outbox.wait-timeout} (the row is still processed)
+     */
+    public CompletableFuture<String> awaitCheckoutUrl(Long orderId) {
+        CompletableFuture<String> shared = waiters.computeIfAbsent(orderId, id -> new CompletableFuture<>());
+        kick();
+        return shared.copy()
+                .orTimeout(waitTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((url, e) -> waiters.remove(orderId, shared));
+    }
+
+    /**
+     * @param orderId order ID
+     * @return state of the order's outbox row, if it has one
+     */
+    public Optional<Status> status(Long orderId) {
+        return jdbc.queryForList("SELECT status FROM payment_outbox WHERE order_id = ?", String.class, orderId)
+                .stream().findFirst().map(Status::valueOf);
+    }
+
+    /**
+     * Runs a dispatch soon on a background thread (coalesces concurrent kicks).
+     */
+    public void kick() {
+        if (kickQueued.compareAndSet(false, true)) {
+            try {
+                kicker.execute(() -> {
+                    kickQueued.set(false);
+                    dispatch();
+                });
+            } catch (RejectedExecutionException e) {
+                kickQueued.set(false); // shutting down; the next node picks the rows up
+            }
+        }
+    }
+
+    /**
+     * Claims due rows and starts their Stripe calls (see class comment).
+     * Returns once the calls are started; they complete on the gateway's threads.
+     */
+    @Scheduled(fixedDelayString = "${payments.outbox.poll-interval:PT1S}")
+    public void dispatch() {
+        int limit = Math.min(batchSize, paymentGateway.availableCapacity());
+        if (limit <= 0) return;
+
+        List<Claim> claims = claim(limit);
+        if (claims.isEmpty()) return;
+
+        Map<Long, Order> orders = new HashMap<>();
+        for (Order order : orderRepository.findWithItemsByIdIn(claims.stream().map(Claim::orderId).toList())) {
+            orders.put(order.getId(), order);
+        }
+
+        for (Claim claim : claims) {
+            Order order = orders.get(claim.orderId());
+            if (order == null) {
+                failed(claim, new IllegalStateException("Order " + claim.orderId() + " not found"));
+            } else if (order.getCheckoutUrl() != null) {
+                succeeded(claim, order.getCheckoutUrl()); // finished before a crash, row not updated
+            } else {
+                Observation span = Observation.createNotStarted("payments.session.create", observations)
+                        .lowCardinalityKeyValue("attempt", claim.attempts() > 1 ? "retry" : "first")
+                        .highCardinalityKeyValue(Spans.ORDER_ID, String.valueOf(claim.orderId()))
+                        .start();
+                paymentGateway.createCheckoutSession(sessionParams(order), idempotencyKey(order)).whenComplete((url, e) -> {
+                    if (e == null) {
+                        succeeded(claim, url);
+                    } else {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        span.error(cause);
+                        failed(claim, cause);
+                    }
+                    span.stop();
+                });
+            }
+        }
+    }
+
+    /**
+     * Deletes DONE rows older than {@code payments.outbox.retention}
+     * (the URL lives on the order).
+     */
+    @Scheduled(fixedDelayString = "${payments.outbox.cleanup-interval:PT1H}")
+    public void purgeDone() {
+        jdbc.update("DELETE FROM payment_outbox WHERE status = 'DONE' AND created_at < ?",
+                Timestamp.from(Instant.now().minus(retention)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        kicker.shutdown();
+    }
+
+    /** Starts a wait for the order's next dispatch (replacing one that already finished). */
+    private CompletableFuture<String> register(Long orderId) {
+        return waiters.compute(orderId, (id, existing) ->
+                existing == null || existing.isDone() ? new CompletableFuture<>() : existing);
+    }
+
+    /** A claimed row; {@code attempts} includes the current one. */
+    private record Claim(long id, long orderId, int attempts) {}
+
+    private void insert(Long orderId) {
+        Timestamp now = now();
+        jdbc.update("""
+                INSERT INTO payment_outbox (order_id, status, attempts, next_attempt_at, created_at)
+                VALUES (?, 'PENDING', 0, ?, ?)""", orderId, now, now);
+    }
+
+    private List<Claim> claim(int limit) {
+        return tx.execute(status -> {
+            Timestamp now = now();
+            List<Claim> claims = jdbc.query(CLAIM_SQL,
+                    (rs, i) -> new Claim(rs.getLong(1), rs.getLong(2), rs.getInt(3) + 1), now, now, limit);
+            Timestamp lockedUntil = Timestamp.from(now.toInstant().plus(lease));
+            jdbc.batchUpdate(
+                    "UPDATE payment_outbox SET status = 'PROCESSING', locked_until = ?, attempts = attempts + 1 WHERE id = ?",
+                    claims.stream().map(c -> new Object[]{ lockedUntil, c.id() }).toList());
+            return claims;
+        });
+    }
+
+    private void succeeded(Claim claim, String url) {
+        try {
+            tx.executeWithoutResult(status -> {
+                orderRepository.updateCheckoutUrl(claim.orderId(), url);
+                jdbc.update("UPDATE payment_outbox SET status = 'DONE', locked_until = NULL, last_error = NULL WHERE id = ?",
+                        claim.id());
+            });
+        } finally {
+            // The session exists either way; if the write failed, the lease expires and the row is retried
+            CompletableFuture<String> waiter = waiters.get(claim.orderId());
+            if (waiter != null) waiter.complete(url);
+        }
+    }
+
+    private void failed(Claim claim, Throwable cause) {
+        boolean retry = cause instanceof PaymentUnavailableException && claim.attempts() < maxAttempts;
+        String error = cause.toString();
+        if (error.length() > 500) error = error.substring(0, 500);
+        try {
+            if (retry) {
+                Duration backoff = retryBackoff.multipliedBy(1L << Math.min(claim.attempts() - 1, 16));
+                jdbc.update("""
+                        UPDATE payment_outbox
+                        SET status = 'PENDING', locked_until = NULL, next_attempt_at = ?, last_error = ?
+                        WHERE id = ?""",
+                        Timestamp.from(Instant.now().plus(backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff)),
+                        error, claim.id());
+            } else {
+                jdbc.update("UPDATE payment_outbox SET status = 'FAILED', locked_until = NULL, last_error = ? WHERE id = ?",
+                        error, claim.id());
+                log.atWarn()
+                        .addKeyValue("orderId", claim.orderId())
+                        .addKeyValue("attempts", claim.attempts())
+                        .setCause(cause)
+                        .log("Giving up on Stripe session for order");
+            }
+        } finally {
+            CompletableFuture<String> waiter = waiters.get(claim.orderId());
+            if (waiter != null) waiter.completeExceptionally(cause);
+        }
+    }
+
+    /** Same key for every attempt of an order, so Stripe creates at most one session for it. */
+    private static String idempotencyKey(Order order) {
+        return "order-" + order.getId();
+    }
+
+    /** Stripe Checkout session for an order, priced from its stored lines. */
+    private static SessionCreateParams sessionParams(Order order) {
+        List<SessionCreateParams.LineItem> lineItems = new ArrayList<>();
+        for (OrderItem oi : order.getItems()) {
+            lineItems.add(
+                SessionCreateParams.LineItem.builder()
+                    .setQuantity((long) oi.getQuantity())
+                    .setPriceData(
+                        SessionCreateParams.LineItem.PriceData.builder()
+                            .setCurrency("eur")
+                            .setUnitAmount((long) oi.getPriceCents())
+                            .setProductData(
+                                    SessionCreateParams.LineItem.PriceData.ProductData.builder()
+                                            .setName(oi.getProduct().getName())
+                                            .build()
+                            )
+                            .build()
+                    )
+                    .build()
+            );
+        }
+
+        return SessionCreateParams.builder()
+            .setMode(SessionCreateParams.Mode.PAYMENT)
+            .setSuccessUrl("http://localhost:5173/success/?session_id={CHECKOUT_SESSION_ID}")
+            .setCancelUrl("http://localhost:5173/cancel")
+            .setClientReferenceId(order.getId().toString()) // tie Stripe session to order
+            .addAllLineItem(lineItems)
+            .build();
+    }
+
+    private static Timestamp now() {
+        return Timestamp.from(Instant.now());
+    }
+}
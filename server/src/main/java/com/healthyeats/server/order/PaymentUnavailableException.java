@@ -0,0 +1,20 @@
+package com.healthyeats.server.order;
+
+/**
+ * Thrown when the payment provider cannot be called right now: the circuit
+ * breaker is open, the concurrency bulkhead is full, the call timed out, or
+ * the provider failed.
+ *
+ * Mapped to HTTP 503 (Service Unavailable) by {@link CheckoutController};
+ * the pending order is kept, so the user can simply retry.
+ */
+public class PaymentUnavailableException extends RuntimeException {
+
+    public PaymentUnavailableException(String message) {
+        super(message);
+    }
+
+    public PaymentUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
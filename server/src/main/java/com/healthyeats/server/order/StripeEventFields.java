@@ -0,0 +1,95 @@
+package com.healthyeats.server.order;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * The few fields of a Stripe webhook event the application acts on.
+ *
+ * {@link #parse} reads them with a streaming {@link JsonReader} and skips
+ * everything else, instead of binding the whole event (and then the whole
+ * Checkout Session) into SDK objects. No objects are built for skipped
+ * values, and parsing stops once all four fields are found.
+ * StripeEventParsingBenchmark compares both paths.
+ *
+ * @param id                event ID ({@code evt_...})
+ * @param type              event type, e.g. {@code checkout.session.completed}
+ * @param clientReferenceId {@code data.object.client_reference_id} (our order ID), or null
+ * @param paymentStatus     {@code data.object.payment_status}, or null
+ */
+public record StripeEventFields(String id, String type, String clientReferenceId, String paymentStatus) {
+
+    /**
+     * Extracts the fields from a (signature-verified) event payload.
+     *
+     * @param payload raw event JSON
+     * @return extracted fields; absent ones are null
+     * @throws IllegalArgumentException if the payload is not a JSON object
+     */
+    public static StripeEventFields parse(String payload) {
+        Fields fields = new Fields();
+        try (JsonReader reader = new JsonReader(new StringReader(payload))) {
+            reader.beginObject();
+            while (reader.hasNext() && !fields.complete()) {
+                switch (reader.nextName()) {
+                    case "id" -> fields.id = nextString(reader);
+                    case "type" -> fields.type = nextString(reader);
+                    case "data" -> readData(reader, fields);
+                    default -> reader.skipValue();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed event payload", e);
+        }
+        return new StripeEventFields(fields.id, fields.type, fields.clientReferenceId, fields.paymentStatus);
+    }
+
+    /** {@code "data": { "object": { ... }, "previous_attributes": ... }} */
+    private static void readData(JsonReader reader, Fields fields) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"object".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "client_reference_id" -> fields.clientReferenceId = nextString(reader);
+                    case "payment_status" -> fields.paymentStatus = nextString(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+
+    /** A string (or number) value; null for JSON null or any other token. */
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static final class Fields {
+        String id;
+        String type;
+        String clientReferenceId;
+        String paymentStatus;
+
+        boolean complete() {
+            return id != null && type != null && clientReferenceId != null && paymentStatus != null;
+        }
+    }
+}
@@ -1,22 +1,36 @@
 package com.healthyeats.server.order;
 
-import com.stripe.model.Event;
-import com.stripe.model.EventDataObjectDeserializer;
-import com.stripe.model.StripeObject;
-import com.stripe.model.checkout.Session;
-import com.stripe.net.ApiResource;
+import com.healthyeats.server.observability.Spans;
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.net.Webhook;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Set;
+
 /**
  * REST controller that handles Stripe webhook events.
  *
  * Specifically listens for "checkout.session.completed" events,
- * which indicate that a Stripe Checkout payment has succeeded.
- * When received, the corresponding {@link Order} in the database
- * is marked as paid.
+ * which indicate that a Stripe Checkout payment has succeeded, and for
+ * "checkout.session.async_payment_succeeded", which follows a completed
+ * session that was still unpaid (delayed payment methods such as bank debits).
+ * When received, the corresponding {@link Order} is queued on the
+ * {@link PaidOrderQueue}, which marks orders paid in batches; the
+ * event is acknowledged without waiting for the database.
+ * Redeliveries of an accepted event are recognised by event ID
+ * ({@link WebhookEventLog}) and acknowledged without further work.
+ *
+ * Each step runs in its own tracing span ({@code webhook <stage>}); the
+ * request span carries the event ID and the order ID, which links it to the
+ * checkout that created the session (see {@link Spans}).
  *
  * Base path: /api/checkout/webhook
  */
@@ -24,14 +38,27 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/checkout")
 public class StripeWebhookController {
 
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookController.class);
+
+    /** Events that can mean a Checkout Session is paid. */
+    private static final Set<String> PAID_EVENTS = Set.of(
+            "checkout.session.completed",
+            "checkout.session.async_payment_succeeded");
+
     /** Stripe webhook signing secret (injected from application.yml). */
     @Value("${stripe.webhook-secret}")
     private String webhookSecret;
 
-    private final OrderRepository orderRepository;
+    private final PaidOrderQueue paidOrders;
+    private final WebhookEventLog eventLog;
+    private final ObservationRegistry observations;
 
-    public StripeWebhookController(OrderRepository orderRepository) {
-        this.orderRepository = orderRepository;
+    public StripeWebhookController(PaidOrderQueue paidOrders,
+                                   WebhookEventLog eventLog,
+                                   ObservationRegistry observations) {
+        this.paidOrders = paidOrders;
+        this.eventLog = eventLog;
+        this.observations = observations;
     }
 
     /**
@@ -40,70 +67,93 @@ public class StripeWebhookController {
      * Main entry point for Stripe webhook calls.
      *
      * Steps:
-     * 1. Verify event signature using Stripe's SDK.
-     * 2. Parse the event payload into a Stripe {@link Session}.
-     * 3. If event type is "checkout.session.completed", mark the
-     *    corresponding order as paid in the database.
+     * 1. Verify event signature using Stripe's SDK (signature only; the
+     *    event is not bound into SDK objects).
+     * 2. Stream the few fields we need out of the payload ({@link StripeEventFields}).
+     * 3. If event type is "checkout.session.completed" or
+     *    "checkout.session.async_payment_succeeded", the event ID was not
+     *    accepted before and the session is paid, queue the corresponding
+     *    order to be marked as paid.
      *
      * @param request HTTP request (used to read signature header)
      * @param payload raw JSON body from Stripe
-     * @return "success" if processed, or "Invalid signature" if verification fails
+     * @return "success" if accepted, "duplicate" for a redelivered event,
+     *         "Invalid signature" if verification fails, 400 if the signed
+     *         payload is not a JSON object, or 503 if the queue
+     *         is full (Stripe retries the event later)
      */
     @PostMapping("/webhook")
-    public String handleWebhook(HttpServletRequest request, @RequestBody String payload) {
+    public ResponseEntity<String> handleWebhook(HttpServletRequest request, @RequestBody String payload) {
         String sigHeader = request.getHeader("Stripe-Signature");
-        Event event;
+        StripeEventFields event;
         try {
-            event = Webhook.constructEvent(
-                    payload,
-                    sigHeader,
-                    webhookSecret
-            );
-        } catch (Exception e) {
-            return "Invalid signature";
+            stage("verify").observeChecked(() -> {
+                Webhook.Signature.verifyHeader(payload, sigHeader, webhookSecret, Webhook.DEFAULT_TOLERANCE);
+            });
+        } catch (SignatureVerificationException e) {
+            return ResponseEntity.ok("Invalid signature");
         }
+        try {
+            event = stage("parse").observe(() -> StripeEventFields.parse(payload));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Malformed event");
+        }
+        Spans.tagCurrent(observations, "stripe.event.id", event.id());
+        Spans.tagCurrent(observations, "stripe.event.type", event.type());
 
-        // Handle only checkout session completion events
-        if ("checkout.session.completed".equals(event.getType())) {
-            EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
-
-            // Try deserializing event into a Session object
-            if (dataObjectDeserializer.getObject().isPresent()) {
-                StripeObject stripeObject = dataObjectDeserializer.getObject().get();
-
-                if (stripeObject instanceof Session) {
-                    handleSession((Session) stripeObject);
-                } else {
-                    System.out.println("Unexpected object type: " + stripeObject.getClass());
-                }
-            } else {
-                // Fallback: parse raw JSON into Session
-                String rawJson = dataObjectDeserializer.getRawJson();
-                Session session = ApiResource.GSON.fromJson(rawJson, Session.class);
-                handleSession(session);
+        // Handle only events that can complete a checkout session's payment
+        if (PAID_EVENTS.contains(event.type()) && event.id() != null) {
+            // Stripe retries deliveries; an event accepted before needs no more work
+            String eventId = event.id();
+            if (!stage("dedupe").observe(() -> eventLog.firstDelivery(eventId))) {
+                return ResponseEntity.ok("duplicate");
             }
+            if (!handleSession(event)) return busy(event);
         }
 
-        return "success";
+        return ResponseEntity.ok("success");
     }
 
     /**
-     * Marks the order associated with a Stripe session as paid.
+     * Queues the order associated with a completed Stripe session to be marked as paid.
      *
-     * Uses clientReferenceId (set in CheckoutController) to link
-     * the Stripe Checkout Session back to the local Order.
+     * Uses clientReferenceId (set by the payment outbox) to link
+     * the Stripe Checkout Session back to the local Order. Sessions completed
+     * with a delayed payment method are still "unpaid" and are not queued; the
+     * order is queued by the later async_payment_succeeded event instead.
      *
-     * @param session Stripe Checkout session
+     * @param event fields of the checkout.session.completed or async_payment_succeeded event
+     * @return false if the queue is full
      */
-    private void handleSession(Session session) {
-        String orderId = session.getClientReferenceId();
-        System.out.println("clientReferenceId: " + orderId);
+    private boolean handleSession(StripeEventFields event) {
+        if ("unpaid".equals(event.paymentStatus())) {
+            return true;
+        }
+        String orderId = event.clientReferenceId();
+        Long id;
+        try {
+            id = Long.valueOf(orderId);
+        } catch (NumberFormatException e) {
+            log.atWarn()
+                    .addKeyValue("eventId", event.id())
+                    .addKeyValue("clientReferenceId", orderId)
+                    .log("Ignoring checkout session without order reference");
+            return true;
+        }
+        Spans.tagCurrent(observations, Spans.ORDER_ID, id);
+        return stage("enqueue")
+                .highCardinalityKeyValue(Spans.ORDER_ID, String.valueOf(id))
+                .observe(() -> paidOrders.offer(id, event.id()));
+    }
+
+    /** Span for one webhook stage (child of the request span). */
+    private Observation stage(String name) {
+        return Spans.stage(observations, "webhook", name);
+    }
 
-        orderRepository.findById(Long.valueOf(orderId))
-                .ifPresent(order -> {
-                    order.setPaid(true);
-                    orderRepository.save(order);
-                    System.out.println("Order Id: " + order.getId() + " is paid");
-                });
+    /** 503: not accepted now, Stripe redelivers with backoff (so the event must not count as seen). */
+    private ResponseEntity<String> busy(StripeEventFields event) {
+        eventLog.forget(event.id());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Busy");
     }
 }
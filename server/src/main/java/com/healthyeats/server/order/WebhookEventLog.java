@@ -0,0 +1,165 @@
+package com.healthyeats.server.order;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers which Stripe webhook events were already accepted, so a redelivery
+ * is dropped before it reaches the {@link PaidOrderQueue} or the orders table.
+ *
+ * Two levels:
+ * - A bounded in-memory LRU of recent event IDs ({@code webhooks.dedupe.cache-size}):
+ *   most retries arrive within minutes and are answered with one hash lookup.
+ *   An event is claimed here as soon as it is accepted, so a retry racing the
+ *   queue is not accepted twice on this node.
+ * - The {@code stripe_webhook_event} table, which catches what the LRU forgot
+ *   (restart, eviction, another node). An event is only {@link #record}ed there
+ *   after its order was marked paid, so an accepted event that never reached the
+ *   orders table (the process died with it queued) is processed again when
+ *   Stripe or an operator resends it. Rows older than
+ *   {@code webhooks.dedupe.retention} are pruned; Stripe stops retrying after
+ *   three days.
+ *
+ * Suppressed duplicates are counted in {@code webhooks.duplicates}.
+ * The table is created on first start (not a JPA entity, like {@code cart_store}).
+ */
+@Component
+public class WebhookEventLog {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO stripe_webhook_event (event_id, received_at) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final int cacheSize;
+    private final Duration retention;
+    private final Counter duplicates;
+
+    private final LinkedHashMap<String, Boolean> recent;
+
+    public WebhookEventLog(JdbcTemplate jdbc,
+                           @Value("${webhooks.dedupe.cache-size:100000}") int cacheSize,
+                           @Value("${webhooks.dedupe.retention:P30D}") Duration retention,
+                           MeterRegistry meterRegistry) {
+        this.jdbc = jdbc;
+        this.cacheSize = cacheSize;
+        this.retention = retention;
+        this.duplicates = Counter.builder("webhooks.duplicates")
+                .description("Webhook deliveries suppressed because the event was already accepted")
+                .register(meterRegistry);
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > WebhookEventLog.this.cacheSize;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void createTable() {
+        jdbc.execute("""
+                CREATE TABLE IF NOT EXISTS stripe_webhook_event (
+                    event_id    VARCHAR(255) PRIMARY KEY,
+                    received_at TIMESTAMP    NOT NULL
+                )""");
+        jdbc.execute("CREATE INDEX IF NOT EXISTS idx_stripe_webhook_event_received ON stripe_webhook_event (received_at)");
+    }
+
+    /**
+     * Claims an event ID unless it was accepted before.
+     *
+     * @param eventId Stripe event ID ({@code evt_...})
+     * @return true for the first delivery, false for a duplicate (counted)
+     */
+    public boolean firstDelivery(String eventId) {
+        synchronized (recent) {
+            if (recent.get(eventId) != null) {
+                duplicates.increment();
+                return false;
+            }
+        }
+        Integer stored = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM stripe_webhook_event WHERE event_id = ?", Integer.class, eventId);
+        synchronized (recent) {
+            if (stored != null && stored > 0) {
+                remember(eventId);
+                duplicates.increment();
+                return false;
+            }
+            // Another delivery of the same event may have claimed it meanwhile
+            if (recent.putIfAbsent(eventId, Boolean.TRUE) != null) {
+                duplicates.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Persists handled event IDs, so redeliveries are recognised after a
+     * restart or on another node. Called once the events' orders are marked paid.
+     *
+     * @param eventIds Stripe event IDs
+     */
+    public void record(List<String> eventIds) {
+        if (eventIds.isEmpty()) return;
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = eventIds.stream().map(id -> new Object[] { id, now }).toList();
+        try {
+            jdbc.batchUpdate(INSERT_SQL, rows);
+        } catch (DuplicateKeyException e) {
+            // Also handled by another delivery or node; insert the rest one by one
+            for (Object[] row : rows) {
+                try {
+                    jdbc.update(INSERT_SQL, row);
+                } catch (DuplicateKeyException recorded) {
+                    // Already recorded
+                }
+            }
+        }
+        synchronized (recent) {
+            for (String eventId : eventIds) {
+                remember(eventId);
+            }
+        }
+    }
+
+    /**
+     * Releases a claimed event ID, so its redelivery is processed (used when
+     * the event was claimed but could not be accepted).
+     *
+     * @param eventId Stripe event ID
+     */
+    public void forget(String eventId) {
+        synchronized (recent) {
+            recent.remove(eventId);
+        }
+    }
+
+    /**
+     * Deletes event IDs older than {@code webhooks.dedupe.retention}.
+     */
+    @Scheduled(fixedDelayString = "${webhooks.dedupe.prune-interval:PT1H}")
+    public void prune() {
+        jdbc.update("DELETE FROM stripe_webhook_event WHERE received_at < ?",
+                Timestamp.from(Instant.now().minus(retention)));
+    }
+
+    private void remember(String eventId) {
+        synchronized (recent) {
+            recent.put(eventId, Boolean.TRUE);
+        }
+    }
+}
@@ -8,8 +8,15 @@ import lombok.*;
  * Entity representing a product available in the store.
  *
  * Includes name, price, image, category, and unit of measure.
+ *
+ * Indexes back the keyset-paginated listing (see {@link ProductRepository}):
+ * filtering by category and ordering by price/ID is an index range scan.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_product_category_price", columnList = "category_id, price_cents, id"),
+        @Index(name = "idx_product_price", columnList = "price_cents, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -49,8 +56,9 @@ public class Product {
     /**
      * The category this product belongs to.
      * Example: "Vegetables", "Snacks".
+     * Lazy: fetch-join it (see {@link ProductRepository#findAllWithCategory()}) when needed.
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Category category;
 
     /**
@@ -1,5 +1,11 @@
 package com.healthyeats.server.product;
 
+import com.healthyeats.server.catalog.CatalogResponseCache;
+import com.healthyeats.server.catalog.CatalogService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -7,7 +13,9 @@ import java.util.List;
 /**
  * REST controller for managing products.
  *
- * Provides endpoints for browsing all products available in the store.
+ * Provides endpoints for browsing all products available in the store,
+ * either as one full list or as keyset-paginated pages, and for
+ * searching them by name/category.
  *
  * Base path: /api/products
  * CORS handled globally in {@link com.healthyeats.server.config.SecurityConfig}.
@@ -16,22 +24,43 @@ import java.util.List;
 @RequestMapping("/api/products")
 public class ProductController {
 
+    private final CatalogService catalog;
     private final ProductRepository repo;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogResponseCache responses;
+
+    /** Page size used when the client does not send {@code limit}. */
+    @Value("${products.page.default-size:24}")
+    private int defaultPageSize;
+
+    /** Upper bound for {@code limit}; larger values are capped. */
+    @Value("${products.page.max-size:100}")
+    private int maxPageSize;
 
     /**
      * Constructor-based dependency injection.
      *
-     * @param repo repository for Product entities
+     * @param catalog in-memory catalog snapshot service
+     * @param repo        repository for Product entities
+     * @param searchIndex in-memory product search index
+     * @param responses   pre-serialized catalog responses
      */
-    public ProductController(ProductRepository repo) {
+    public ProductController(CatalogService catalog,
+                             ProductRepository repo,
+                             ProductSearchIndex searchIndex,
+                             CatalogResponseCache responses) {
+        this.catalog = catalog;
         this.repo = repo;
+        this.searchIndex = searchIndex;
+        this.responses = responses;
     }
 
     /**
      * GET /api/products
      *
-     * Fetch all products from the database and map them into DTOs.
-     * Each DTO contains:
+     * Fetch all products. The JSON body is serialized once per catalog
+     * snapshot version (see {@link CatalogResponseCache}) and served as bytes.
+     * Each product contains:
      * - Product ID
      * - Name
      * - Price in cents
@@ -39,19 +68,102 @@ public class ProductController {
      * - Category ID
      * - Unit of measure
      *
-     * @return list of ProductDTOs
+     * Responses carry a strong ETag; a matching If-None-Match yields 304 Not Modified.
+     *
+     * @return JSON array of ProductDTOs
      */
     @GetMapping
-    public List<ProductDTO> all() {
-        return repo.findAll().stream()
-                .map(p -> new ProductDTO(
-                        p.getId(),
-                        p.getName(),
-                        p.getPriceCents(),
-                        p.getImageUrl(),
-                        p.getCategory().getId(),
-                        p.getUnit()
-                ))
+    public ResponseEntity<byte[]> all() {
+        return responses.toResponse(responses.products());
+    }
+
+    /**
+     * GET /api/products/search
+     *
+     * Search products by name and category name using the in-memory index.
+     * Supports prefix matching for autocomplete ("straw" → "Strawberries")
+     * and tolerates small typos ("brocoli" → "Broccoli").
+     * - q (required): search text; every word must match
+     * - limit (default = 10): capped at products.page.max-size
+     *
+     * Example: GET /api/products/search?q=gre%20yog
+     *
+     * @return matching products, best match first
+     */
+    @GetMapping("/search")
+    public List<ProductDTO> search(@RequestParam String q,
+                                   @RequestParam(defaultValue = "10") Integer limit) {
+        catalog.snapshot(); // make sure the index has been populated
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        return searchIndex.search(q, size).stream()
+                .map(ProductDTO::of)
                 .toList();
     }
+
+    /**
+     * GET /api/products/page
+     *
+     * Fetch one page of products using keyset (cursor) pagination.
+     * - categoryId (optional): only products of this category
+     * - sort (default = id): one of "id", "price_asc", "price_desc"
+     * - limit (default = products.page.default-size): capped at products.page.max-size
+     * - cursor (optional): {@code nextCursor} of the previous page
+     *
+     * Example: GET /api/products/page?categoryId=2&sort=price_asc&limit=24
+     *
+     * @return page of ProductDTOs plus the cursor for the next page (null on the last page)
+     */
+    @GetMapping("/page")
+    public ProductPageDTO page(@RequestParam(required = false) Long categoryId,
+                               @RequestParam(required = false) String sort,
+                               @RequestParam(required = false) Integer limit,
+                               @RequestParam(required = false) String cursor) {
+        ProductSort order = ProductSort.parse(sort);
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        ProductCursor after = cursor != null && !cursor.isBlank() ? ProductCursor.decode(cursor, order) : null;
+
+        // Fetch one extra row to learn whether another page exists
+        Limit fetch = Limit.of(size + 1);
+        List<ProductDTO> rows = switch (order) {
+            case ID -> {
+                long afterId = after != null ? after.id() : 0L;
+                yield categoryId != null
+                        ? repo.findCategoryPageById(categoryId, afterId, fetch)
+                        : repo.findPageById(afterId, fetch);
+            }
+            case PRICE_ASC -> {
+                int afterPrice = after != null ? after.priceCents() : Integer.MIN_VALUE;
+                long afterId = after != null ? after.id() : Long.MIN_VALUE;
+                yield categoryId != null
+                        ? repo.findCategoryPageByPriceAsc(categoryId, afterPrice, afterId, fetch)
+                        : repo.findPageByPriceAsc(afterPrice, afterId, fetch);
+            }
+            case PRICE_DESC -> {
+                int afterPrice = after != null ? after.priceCents() : Integer.MAX_VALUE;
+                long afterId = after != null ? after.id() : Long.MAX_VALUE;
+                yield categoryId != null
+                        ? repo.findCategoryPageByPriceDesc(categoryId, afterPrice, afterId, fetch)
+                        : repo.findPageByPriceDesc(afterPrice, afterId, fetch);
+            }
+        };
+
+        if (rows.size() <= size) {
+            return new ProductPageDTO(rows, null);
+        }
+        List<ProductDTO> items = rows.subList(0, size);
+        return new ProductPageDTO(items, ProductCursor.after(order, items.get(size - 1)).encode());
+    }
+
+    /**
+     * Maps invalid paging parameters (unknown sort, malformed cursor)
+     * to HTTP 400 with the error message as body.
+     *
+     * @param e the exception
+     * @return error message as plain text
+     */
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler({ IllegalArgumentException.class })
+    public String badRequest(Exception e) {
+        return e.getMessage();
+    }
 }
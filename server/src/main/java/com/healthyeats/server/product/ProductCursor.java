@@ -0,0 +1,60 @@
+package com.healthyeats.server.product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for the paginated product listing.
+ *
+ * Holds the sort key of the last product on a page (price + ID), so the
+ * next page is fetched with a {@code WHERE (price, id) > (?, ?)} predicate
+ * instead of an OFFSET. Deep pages therefore cost the same as page one.
+ *
+ * Encoded as URL-safe Base64 of {@code "<sort>:<priceCents>:<id>"}.
+ *
+ * @param sort       ordering the cursor was issued for
+ * @param priceCents price of the last product on the previous page
+ * @param id         ID of the last product on the previous page
+ */
+public record ProductCursor(
+        ProductSort sort,
+        int priceCents,
+        long id
+) {
+
+    /**
+     * Builds the cursor pointing after the given product.
+     */
+    static ProductCursor after(ProductSort sort, ProductDTO last) {
+        return new ProductCursor(sort, last.getPriceCents(), last.getId());
+    }
+
+    /**
+     * @return opaque token to hand to the client
+     */
+    public String encode() {
+        String raw = sort.name() + ":" + priceCents + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a token previously produced by {@link #encode()}.
+     *
+     * @param token opaque cursor token
+     * @param sort  ordering of the current request (must match the token)
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the token is malformed or was issued for another sort
+     */
+    public static ProductCursor decode(String token, ProductSort sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":");
+            if (parts.length != 3 || ProductSort.valueOf(parts[0]) != sort) {
+                throw new IllegalArgumentException("Cursor does not match sort " + sort);
+            }
+            return new ProductCursor(sort, Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.healthyeats.server.product;
 
+import com.healthyeats.server.catalog.CatalogProduct;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -31,4 +32,21 @@ public class ProductDTO {
 
     /** Unit of measure (e.g., "per piece", "per 200g"). */
     private String unit;
+
+    /**
+     * Maps a catalog snapshot product to its API representation.
+     *
+     * @param p catalog product
+     * @return DTO
+     */
+    public static ProductDTO of(CatalogProduct p) {
+        return new ProductDTO(
+                p.id(),
+                p.name(),
+                p.priceCents(),
+                p.imageUrl(),
+                p.categoryId(),
+                p.unit()
+        );
+    }
 }
@@ -0,0 +1,14 @@
+package com.healthyeats.server.product;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing one page of the product listing.
+ *
+ * @param items      products on this page
+ * @param nextCursor opaque token for the next page, or null if this is the last page
+ */
+public record ProductPageDTO(
+        List<ProductDTO> items,
+        String nextCursor
+) {}
@@ -1,8 +1,92 @@
 package com.healthyeats.server.product;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
-import java.util.Optional;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
-    Optional<Product> findByName(String name);
+
+    /** Loads all products with their category in a single query (used to build the catalog snapshot). */
+    @Query("select p from Product p left join fetch p.category order by p.id")
+    List<Product> findAllWithCategory();
+
+    // --- Keyset pagination (see ProductCursor) ---
+    // Each query seeks past the last row of the previous page instead of using OFFSET,
+    // so every page is an index range scan of `limit` rows. Each ordering has an
+    // unfiltered variant (idx_product_price / primary key) and a category variant
+    // (idx_product_category_price); a single query with an optional category
+    // ("categoryId is null or ...") would leave the planner unable to use either.
+
+    /** Page ordered by ID, starting after {@code afterId}. */
+    @Query("""
+            select new com.healthyeats.server.product.ProductDTO(
+                p.id, p.name, p.priceCents, p.imageUrl, p.category.id, p.unit)
+            from Product p
+            where p.id > :afterId
+            order by p.id""")
+    List<ProductDTO> findPageById(@Param("afterId") long afterId,
+                                  Limit limit);
+
+    /** Page of one category ordered by ID, starting after {@code afterId}. */
+    @Query("""
+            select new com.healthyeats.server.product.ProductDTO(
+                p.id, p.name, p.priceCents, p.imageUrl, p.category.id, p.unit)
+            from Product p
+            where p.category.id = :categoryId
+              and p.id > :afterId
+            order by p.id""")
+    List<ProductDTO> findCategoryPageById(@Param("categoryId") long categoryId,
+                                          @Param("afterId") long afterId,
+                                          Limit limit);
+
+    /** Page ordered by ascending price, starting after ({@code afterPrice}, {@code afterId}). */
+    @Query("""
+            select new com.healthyeats.server.product.ProductDTO(
+                p.id, p.name, p.priceCents, p.imageUrl, p.category.id, p.unit)
+            from Product p
+            where p.priceCents > :afterPrice or (p.priceCents = :afterPrice and p.id > :afterId)
+            order by p.priceCents, p.id""")
+    List<ProductDTO> findPageByPriceAsc(@Param("afterPrice") int afterPrice,
+                                        @Param("afterId") long afterId,
+                                        Limit limit);
+
+    /** Page of one category ordered by ascending price, starting after ({@code afterPrice}, {@code afterId}). */
+    @Query("""
+            select new com.healthyeats.server.product.ProductDTO(
+                p.id, p.name, p.priceCents, p.imageUrl, p.category.id, p.unit)
+            from Product p
+            where p.category.id = :categoryId
+              and (p.priceCents > :afterPrice or (p.priceCents = :afterPrice and p.id > :afterId))
+            order by p.priceCents, p.id""")
+    List<ProductDTO> findCategoryPageByPriceAsc(@Param("categoryId") long categoryId,
+                                                @Param("afterPrice") int afterPrice,
+                                                @Param("afterId") long afterId,
+                                                Limit limit);
+
+    /** Page ordered by descending price, starting after ({@code afterPrice}, {@code afterId}). */
+    @Query("""
+            select new com.healthyeats.server.product.ProductDTO(
+                p.id, p.name, p.priceCents, p.imageUrl, p.category.id, p.unit)
+            from Product p
+            where p.priceCents < :afterPrice or (p.priceCents = :afterPrice and p.id < :afterId)
+            order by p.priceCents desc, p.id desc""")
+    List<ProductDTO> findPageByPriceDesc(@Param("afterPrice") int afterPrice,
+                                         @Param("afterId") long afterId,
+                                         Limit limit);
+
+    /** Page of one category ordered by descending price, starting after ({@code afterPrice}, {@code afterId}). */
+    @Query("""
+            select new com.healthyeats.server.product.ProductDTO(
+                p.id, p.name, p.priceCents, p.imageUrl, p.category.id, p.unit)
+            from Product p
+            where p.category.id = :categoryId
+              and (p.priceCents < :afterPrice or (p.priceCents = :afterPrice and p.id < :afterId))
+            order by p.priceCents desc, p.id desc""")
+    List<ProductDTO> findCategoryPageByPriceDesc(@Param("categoryId") long categoryId,
+                                                 @Param("afterPrice") int afterPrice,
+                                                 @Param("afterId") long afterId,
+                                                 Limit limit);
 }
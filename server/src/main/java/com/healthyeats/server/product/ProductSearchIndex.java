@@ -0,0 +1,272 @@
+package com.healthyeats.server.product;
+
+import com.healthyeats.server.catalog.CatalogProduct;
+import com.healthyeats.server.catalog.CatalogRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over product names and category names.
+ *
+ * Structure:
+ * - postings: sorted map token → IDs of products containing it
+ *   (sorted so that all tokens with a given prefix form one contiguous range)
+ * - docs: product ID → indexed product + the tokens it was indexed under
+ *
+ * Matching, per query token (best tier wins):
+ * 1. exact token match
+ * 2. prefix match (autocomplete: "straw" → "strawberries")
+ * 3. fuzzy prefix match within a small edit distance ("brocoli" → "broccoli"),
+ *    only tried when the token has no exact/prefix match
+ *
+ * All query tokens must match (AND). Category hits score lower than name hits.
+ *
+ * The index follows the catalog: on every {@link CatalogRefreshedEvent}
+ * only added, changed and removed products are re-indexed.
+ * Reads are lock-free; writes are serialized.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final double EXACT = 3.0;
+    private static final double PREFIX = 2.0;
+    private static final double FUZZY = 1.0;
+    private static final double CATEGORY_WEIGHT = 0.5;
+
+    /** Indexed product plus the tokens it contributes (needed to un-index it later). */
+    private record Doc(CatalogProduct product, Set<String> nameTokens, Set<String> categoryTokens) {}
+
+    /** Scored search result. */
+    private record Hit(CatalogProduct product, double score) {}
+
+    private final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Doc> docs = new ConcurrentHashMap<>();
+
+    /**
+     * Applies the difference between two catalog snapshots to the index.
+     *
+     * @param event refresh event carrying the previous and current snapshot
+     */
+    @EventListener
+    public void onCatalogRefreshed(CatalogRefreshedEvent event) {
+        Map<Long, CatalogProduct> current = event.current().productsById();
+
+        // Remove products that disappeared from the catalog
+        for (Long id : new ArrayList<>(docs.keySet())) {
+            if (!current.containsKey(id)) remove(id);
+        }
+
+        // Add new products and re-index changed ones (records compare by value)
+        for (CatalogProduct p : current.values()) {
+            Doc existing = docs.get(p.id());
+            if (existing == null || !existing.product().equals(p)) upsert(p);
+        }
+    }
+
+    /**
+     * Adds a product to the index, replacing any previous version of it.
+     *
+     * @param product product to index
+     */
+    public synchronized void upsert(CatalogProduct product) {
+        remove(product.id());
+
+        Doc doc = new Doc(product, tokenSet(product.name()), tokenSet(product.categoryName()));
+        docs.put(product.id(), doc);
+        for (String t : doc.nameTokens()) addPosting(t, product.id());
+        for (String t : doc.categoryTokens()) addPosting(t, product.id());
+    }
+
+    /**
+     * Removes a product from the index (no-op if it is not indexed).
+     *
+     * @param productId ID of the product
+     */
+    public synchronized void remove(Long productId) {
+        Doc doc = docs.remove(productId);
+        if (doc == null) return;
+        for (String t : doc.nameTokens()) removePosting(t, productId);
+        for (String t : doc.categoryTokens()) removePosting(t, productId);
+    }
+
+    /**
+     * @return number of indexed products
+     */
+    public int size() {
+        return docs.size();
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query free text (e.g. "gre yog" or "brocoli")
+     * @param limit maximum number of results
+     * @return best matching products, highest score first (ties by name)
+     */
+    public List<CatalogProduct> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) return List.of();
+
+        Map<Long, Double> scores = null;
+        for (String term : terms) {
+            Map<Long, Double> termScores = scoreTerm(term);
+
+            // AND semantics: keep only products matching every term
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                Map<Long, Double> merged = new HashMap<>();
+                for (var e : scores.entrySet()) {
+                    Double s = termScores.get(e.getKey());
+                    if (s != null) merged.put(e.getKey(), e.getValue() + s);
+                }
+                scores = merged;
+            }
+            if (scores.isEmpty()) return List.of();
+        }
+
+        // Top-k selection: min-heap of the best `limit` hits (score desc, then name asc)
+        Comparator<Hit> byRank = Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(h -> h.product().name());
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, byRank.reversed());
+        for (var e : scores.entrySet()) {
+            Doc doc = docs.get(e.getKey());
+            if (doc == null) continue; // removed concurrently
+            top.add(new Hit(doc.product(), e.getValue()));
+            if (top.size() > limit) top.poll();
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(byRank);
+        List<CatalogProduct> results = new ArrayList<>(hits.size());
+        for (Hit h : hits) results.add(h.product());
+        return results;
+    }
+
+    /**
+     * Scores every product matching a single query term.
+     */
+    private Map<Long, Double> scoreTerm(String term) {
+        Map<Long, Double> scores = new HashMap<>();
+
+        // Exact + prefix: one contiguous range of the sorted token map
+        for (var e : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            double tier = e.getKey().length() == term.length() ? EXACT : PREFIX;
+            credit(scores, e.getKey(), e.getValue(), tier);
+        }
+        if (!scores.isEmpty() || term.length() < 3) {
+            return scores;
+        }
+
+        // Fuzzy fallback: bounded edit distance against token prefixes.
+        // Like most search engines we assume the first letter is right; tokens starting
+        // with the second letter are scanned too so that a swapped first pair still matches.
+        int maxEdits = term.length() <= 5 ? 1 : 2;
+        char first = term.charAt(0);
+        char second = term.charAt(1);
+        fuzzyScan(scores, term, maxEdits, first);
+        if (second != first) fuzzyScan(scores, term, maxEdits, second);
+        return scores;
+    }
+
+    /** Fuzzy-matches {@code term} against every token starting with {@code initial}. */
+    private void fuzzyScan(Map<Long, Double> scores, String term, int maxEdits, char initial) {
+        String from = String.valueOf(initial);
+        String to = String.valueOf((char) (initial + 1));
+        for (var e : postings.subMap(from, true, to, false).entrySet()) {
+            String token = e.getKey();
+            if (token.length() < term.length() - maxEdits) continue;
+            int d = prefixDistance(term, token, maxEdits);
+            if (d <= maxEdits) {
+                credit(scores, token, e.getValue(), FUZZY - 0.25 * d);
+            }
+        }
+    }
+
+    /** Adds the tier score for each product posting, keeping the best tier per product. */
+    private void credit(Map<Long, Double> scores, String token, Set<Long> ids, double tier) {
+        for (Long id : ids) {
+            Doc doc = docs.get(id);
+            if (doc == null) continue;
+            double s = doc.nameTokens().contains(token) ? tier : tier * CATEGORY_WEIGHT;
+            scores.merge(id, s, Math::max);
+        }
+    }
+
+    private void addPosting(String token, Long id) {
+        postings.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    private void removePosting(String token, Long id) {
+        postings.computeIfPresent(token, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Edit distance between {@code term} and the closest prefix of {@code token}
+     * (Levenshtein with the token allowed to continue past the end of the term).
+     *
+     * Only the diagonal band of width {@code 2 * max + 1} is computed, and the
+     * scan stops early (returning {@code max + 1}) once a whole row exceeds {@code max}.
+     */
+    static int prefixDistance(String term, String token, int max) {
+        int m = term.length();
+        int n = Math.min(token.length(), m + max); // longer prefixes can only be worse
+        int over = max + 1;
+        int[] prev = new int[n + 1];
+        int[] curr = new int[n + 1];
+        for (int j = 0; j <= n; j++) prev[j] = Math.min(j, over);
+
+        for (int i = 1; i <= m; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(n, i + max);
+            curr[0] = Math.min(i, over);
+            if (from > 1) curr[from - 1] = over;
+            int rowMin = curr[0];
+            char c = term.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = c == token.charAt(j - 1) ? 0 : 1;
+                int left = j - 1 >= from || j == 1 ? curr[j - 1] : over;
+                int up = j <= i - 1 + max ? prev[j] : over;
+                curr[j] = Math.min(Math.min(left + 1, up + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (to < n) curr[to + 1] = over;
+            if (rowMin > max) return over;
+            int[] tmp = prev; prev = curr; curr = tmp;
+        }
+
+        // Whole term consumed; best match against any token prefix
+        int best = over;
+        for (int j = Math.max(0, m - max); j <= n; j++) best = Math.min(best, prev[j]);
+        return best;
+    }
+
+    /**
+     * Lower-cases, strips accents and splits on anything that is not a letter or digit.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        List<String> tokens = new ArrayList<>();
+        for (String t : NON_ALNUM.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!t.isEmpty()) tokens.add(t);
+        }
+        return tokens;
+    }
+
+    private static Set<String> tokenSet(String text) {
+        return Set.copyOf(tokenize(text));
+    }
+}
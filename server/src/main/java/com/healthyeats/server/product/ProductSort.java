@@ -0,0 +1,37 @@
+package com.healthyeats.server.product;
+
+import java.util.Locale;
+
+/**
+ * Supported orderings for the paginated product listing.
+ *
+ * Every ordering ends with the product ID as a tie-breaker,
+ * which makes it a total order and therefore usable for keyset pagination.
+ */
+public enum ProductSort {
+
+    /** Ascending by ID (catalog order). */
+    ID,
+
+    /** Cheapest first, ties broken by ascending ID. */
+    PRICE_ASC,
+
+    /** Most expensive first, ties broken by descending ID. */
+    PRICE_DESC;
+
+    /**
+     * Parses the value of the {@code sort} query parameter.
+     *
+     * @param value e.g. "price_asc" (case-insensitive), null → {@link #ID}
+     * @return matching sort
+     * @throws IllegalArgumentException if the value is unknown
+     */
+    public static ProductSort parse(String value) {
+        if (value == null || value.isBlank()) return ID;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort: " + value);
+        }
+    }
+}
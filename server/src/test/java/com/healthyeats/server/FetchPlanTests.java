@@ -0,0 +1,216 @@
+package com.healthyeats.server;
+
+import com.healthyeats.server.catalog.CatalogService;
+import com.healthyeats.server.category.Category;
+import com.healthyeats.server.category.CategoryRepository;
+import com.healthyeats.server.order.Order;
+import com.healthyeats.server.order.OrderItem;
+import com.healthyeats.server.order.OrderRepository;
+import com.healthyeats.server.product.Product;
+import com.healthyeats.server.product.ProductRepository;
+import com.healthyeats.server.support.QueryRecorder;
+import com.healthyeats.server.user.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Asserts the exact number of SQL statements issued behind each read
+ * endpoint, so any change to a fetch plan (an extra lazy load, a lost join
+ * fetch) shows up here, while {@link QueryBudgetTests} holds the endpoints
+ * to their upper bounds.
+ *
+ * Requests go through MockMvc, i.e. the real filters, controllers, open
+ * session in view and JSON serialization, so a lazy load anywhere on the
+ * way to the response body is counted.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fetch-plan;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureMockMvc
+@Import(QueryRecorder.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FetchPlanTests {
+
+    private static final String EMAIL = "shopper@example.com";
+    private static final String PASSWORD = "secret-password";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private CatalogService catalog;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Product> products = new ArrayList<>();
+    private MockHttpSession session;
+
+    @BeforeAll
+    void seed() throws Exception {
+        mvc.perform(post("/api/auth/register").param("email", EMAIL).param("password", PASSWORD))
+                .andExpect(status().isOk());
+        session = (MockHttpSession) mvc.perform(post("/api/auth/login").param("email", EMAIL).param("password", PASSWORD))
+                .andExpect(status().isOk())
+                .andReturn().getRequest().getSession();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Category> categories = new ArrayList<>();
+            for (int c = 0; c < 3; c++) {
+                categories.add(categoryRepository.save(new Category(null, "Category " + c)));
+            }
+            for (int p = 0; p < 9; p++) {
+                products.add(productRepository.save(new Product(null, "Product " + p, 100 + p, "/images/" + p + ".jpg",
+                        categories.get(p % 3), "per piece")));
+            }
+
+            var user = userRepository.findByEmail(EMAIL).orElseThrow();
+            for (int o = 0; o < 4; o++) {
+                Order order = new Order();
+                order.setUser(user);
+                List<OrderItem> items = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    OrderItem item = new OrderItem();
+                    item.setOrder(order);
+                    item.setProduct(products.get(o + i));
+                    item.setQuantity(i + 1);
+                    item.setPriceCents(100);
+                    items.add(item);
+                }
+                order.setItems(items);
+                orderRepository.save(order);
+            }
+        });
+        catalog.refresh();
+    }
+
+    /** GET /api/orders: orders, items and product names in one statement. */
+    @Test
+    void orderHistoryIsOneStatement() throws Exception {
+        perform(1, get("/api/orders").session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[*].items", everyItem(hasSize(3))));
+    }
+
+    /** GET /api/orders?limit=: one page of orders in two statements, whatever the page size. */
+    @Test
+    void orderHistoryPageIsTwoStatements() throws Exception {
+        MvcResult result = perform(2, get("/api/orders").param("limit", "3").session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(3)))
+                .andExpect(jsonPath("$.items[*].items", everyItem(hasSize(3))))
+                .andReturn();
+
+        String body = result.getResponse().getContentAsString();
+        assertThat(LocalDateTime.parse(JsonPath.read(body, "$.items[0].createdAt")))
+                .isAfterOrEqualTo(LocalDateTime.parse(JsonPath.read(body, "$.items[2].createdAt")));
+    }
+
+    /** Catalog snapshot load (backs GET /api/products and /api/categories): two statements. */
+    @Test
+    void catalogRefreshIsTwoStatements() {
+        assertStatements(2, QueryRecorder.record(catalog::refresh));
+
+        assertThat(catalog.snapshot().products()).hasSize(9);
+        assertThat(catalog.snapshot().products()).allSatisfy(p -> assertThat(p.categoryName()).isNotNull());
+    }
+
+    /** GET /api/products and /api/categories are served from the snapshot: zero statements. */
+    @Test
+    void catalogEndpointsIssueNoStatements() throws Exception {
+        perform(0, get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(9)));
+        perform(0, get("/api/categories"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)));
+    }
+
+    /** Cart pricing (every /api/cart call) is served from the snapshot: zero statements. */
+    @Test
+    void cartPricingIssuesNoStatements() throws Exception {
+        Cookie[] cookies = perform(0, post("/api/cart/items")
+                        .param("productId", String.valueOf(products.get(0).getId())).param("quantity", "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookies();
+        perform(0, post("/api/cart/items").cookie(cookies)
+                        .param("productId", String.valueOf(products.get(1).getId())).param("quantity", "1"))
+                .andExpect(status().isOk());
+
+        perform(0, get("/api/cart").cookie(cookies))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[*].name", everyItem(notNullValue())));
+    }
+
+    /** GET /api/products/page: one statement per page, DTOs built by the query. */
+    @Test
+    void productPageIsOneStatement() throws Exception {
+        perform(1, get("/api/products/page").param("sort", "price_asc").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(5)))
+                .andExpect(jsonPath("$.nextCursor", notNullValue()));
+    }
+
+    /** Performs the request and asserts it issued exactly {@code expected} statements. */
+    private ResultActions perform(int expected, RequestBuilder request) {
+        AtomicReference<ResultActions> result = new AtomicReference<>();
+        assertStatements(expected, QueryRecorder.record(() -> {
+            try {
+                result.set(mvc.perform(request));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        return result.get();
+    }
+
+    private static void assertStatements(int expected, List<String> statements) {
+        assertEquals(expected, statements.size(), () -> "SQL statements:\n" + String.join("\n", statements));
+    }
+}
@@ -0,0 +1,178 @@
+package com.healthyeats.server;
+
+import com.healthyeats.server.category.Category;
+import com.healthyeats.server.category.CategoryRepository;
+import com.healthyeats.server.order.Order;
+import com.healthyeats.server.order.OrderDTO;
+import com.healthyeats.server.order.OrderItem;
+import com.healthyeats.server.order.OrderRepository;
+import com.healthyeats.server.product.Product;
+import com.healthyeats.server.product.ProductRepository;
+import com.healthyeats.server.support.QueryBudget;
+import com.healthyeats.server.support.QueryRecorder;
+import com.healthyeats.server.user.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Holds each read endpoint to a {@link QueryBudget}, so a lazy association
+ * touched in a loop (N+1) fails the build, with the offending statements
+ * listed, instead of reaching production. The exact statement counts are
+ * pinned by {@link FetchPlanTests}; the budgets here are the ceiling.
+ *
+ * Requests go through MockMvc, i.e. the real filters, controllers, open
+ * session in view and JSON serialization, so a lazy load anywhere on the
+ * way to the response body is counted.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-budget;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureMockMvc
+@Import(QueryRecorder.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryBudgetTests {
+
+    private static final String EMAIL = "budget@example.com";
+    private static final String PASSWORD = "secret-password";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private MockHttpSession session;
+
+    @BeforeAll
+    void seed() throws Exception {
+        mvc.perform(post("/api/auth/register").param("email", EMAIL).param("password", PASSWORD))
+                .andExpect(status().isOk());
+        session = (MockHttpSession) mvc.perform(post("/api/auth/login").param("email", EMAIL).param("password", PASSWORD))
+                .andExpect(status().isOk())
+                .andReturn().getRequest().getSession();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Category category = categoryRepository.save(new Category(null, "Budget"));
+            List<Product> products = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                products.add(productRepository.save(new Product(null, "Budget " + p, 100 + p, "/images/" + p + ".jpg",
+                        category, "per piece")));
+            }
+
+            var user = userRepository.findByEmail(EMAIL).orElseThrow();
+            for (int o = 0; o < 3; o++) {
+                Order order = new Order();
+                order.setUser(user);
+                List<OrderItem> items = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    OrderItem item = new OrderItem();
+                    item.setOrder(order);
+                    item.setProduct(products.get(o + i));
+                    item.setQuantity(1);
+                    item.setPriceCents(100);
+                    items.add(item);
+                }
+                order.setItems(items);
+                orderRepository.save(order);
+            }
+        });
+    }
+
+    @Test
+    void orderHistoryStaysWithinBudget() throws Exception {
+        perform("GET /api/orders", 1, get("/api/orders").session(session));
+        perform("GET /api/orders?limit=", 2, get("/api/orders").param("limit", "2").session(session));
+    }
+
+    @Test
+    void catalogEndpointsStayWithinBudget() throws Exception {
+        perform("GET /api/products", 0, get("/api/products"));
+        perform("GET /api/categories", 0, get("/api/categories"));
+        perform("GET /api/products/page", 1, get("/api/products/page").param("limit", "2"));
+    }
+
+    /** The budget catches a lazy load in a stream and lists the repeated statement. */
+    @Test
+    void lazyItemsInLoopExceedBudget() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        assertThatThrownBy(() -> QueryBudget.of("GET /api/orders", 1).call(() -> tx.execute(status ->
+                orderRepository.findAll().stream()
+                        .map(OrderDTO::from)
+                        .toList())))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageStartingWith("GET /api/orders: ")
+                .hasMessageContaining("Repeated statements (suspected N+1)")
+                .hasMessageContaining("order_items");
+    }
+
+    /** Statements that bypass Hibernate are counted too. */
+    @Test
+    void jdbcTemplateStatementsAreCounted() {
+        assertThatThrownBy(() -> QueryBudget.of("orders count", 0)
+                .run(() -> jdbc.queryForObject("SELECT COUNT(*) FROM orders", Long.class)))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("SELECT COUNT(*) FROM orders");
+    }
+
+    /** Work on other threads (schedulers, background writers) does not count against the budget. */
+    @Test
+    void otherThreadsAreNotCounted() {
+        QueryBudget.of("no statements", 0).run(() -> {
+            Thread worker = Thread.ofPlatform().start(() -> jdbc.queryForObject("SELECT COUNT(*) FROM orders", Long.class));
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /** Performs the request within the endpoint's budget and expects 200. */
+    private void perform(String endpoint, int maxStatements, RequestBuilder request) throws Exception {
+        QueryBudget.of(endpoint, maxStatements).call(() -> {
+            try {
+                return mvc.perform(request);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,207 @@
+package com.healthyeats.server.cart;
+
+import com.healthyeats.server.catalog.CatalogProduct;
+import com.healthyeats.server.catalog.CatalogService;
+import com.healthyeats.server.catalog.CatalogSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Hammers a single cart from many threads (the "two tabs / double click" case)
+ * and checks that no update is lost and that versions detect conflicts.
+ */
+class CartConcurrencyTests {
+
+    private static final int PRODUCTS = 40;
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 6;
+
+    private CartService service;
+    private CartRef cart;
+
+    @BeforeEach
+    void setUp() {
+        List<CatalogProduct> products = new ArrayList<>();
+        for (long id = 1; id <= PRODUCTS; id++) {
+            products.add(new CatalogProduct(id, "Product " + id, 100, "/img/" + id + ".png", 1L, "Fruit", "piece"));
+        }
+        Map<Long, CatalogProduct> byId = products.stream()
+                .collect(Collectors.toMap(CatalogProduct::id, Function.identity()));
+        var snapshot = new CatalogSnapshot(1, Instant.now(), List.of(), products, byId, Map.of());
+
+        CatalogService catalog = mock(CatalogService.class);
+        when(catalog.cached()).thenReturn(snapshot);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service = new CartService(catalog, new InMemoryCartStore(4, Duration.ofDays(1), registry), 8, registry);
+        cart = CartRef.stored(UUID.randomUUID().toString());
+    }
+
+    /** Unconditional increments from many threads are all applied, one version each. */
+    @Test
+    void concurrentAddsLoseNoUpdates() throws Exception {
+        runConcurrently(thread -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (long pid = 1; pid <= PRODUCTS; pid++) {
+                    service.add(cart, pid, 1, null);
+                }
+            }
+        });
+
+        CartDTO dto = service.getCart(cart);
+        assertThat(dto.items()).hasSize(PRODUCTS);
+        assertThat(dto.items()).allSatisfy(item -> assertThat(item.quantity()).isEqualTo(THREADS * ROUNDS));
+        assertThat(dto.version()).isEqualTo((long) THREADS * ROUNDS * PRODUCTS);
+    }
+
+    /** Mixed single-item and batch mutations keep lines and version consistent. */
+    @Test
+    void concurrentBatchesAndSingleOpsInterleaveAtomically() throws Exception {
+        runConcurrently(thread -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                // Batch adds 1 to two products and adds then removes a third: net change on two lines
+                service.apply(cart, List.of(
+                        new CartOperation(CartOperation.Type.ADD, 1L, 1),
+                        new CartOperation(CartOperation.Type.ADD, 2L, 1),
+                        new CartOperation(CartOperation.Type.ADD, 3L, 5),
+                        new CartOperation(CartOperation.Type.REMOVE, 3L, null)
+                ), null);
+                service.add(cart, 4L, 1, null);
+            }
+        });
+
+        CartDTO dto = service.getCart(cart);
+        assertThat(dto.items()).extracting(CartItemDTO::productId).containsExactly(1L, 2L, 4L);
+        assertThat(dto.items()).allSatisfy(item -> assertThat(item.quantity()).isEqualTo(THREADS * ROUNDS));
+        assertThat(dto.version()).isEqualTo(2L * THREADS * ROUNDS);
+    }
+
+    /** Optimistic retries with If-Match: every increment lands exactly once. */
+    @Test
+    void ifMatchRetriesConvergeWithoutLostUpdates() throws Exception {
+        AtomicInteger conflicts = new AtomicInteger();
+        // Every thread reads the empty cart before anyone writes, so the first round always conflicts
+        CyclicBarrier firstRead = new CyclicBarrier(THREADS);
+
+        runConcurrently(thread -> {
+            for (int round = 0; round < ROUNDS * 10; round++) {
+                boolean first = round == 0;
+                while (true) {
+                    CartDTO seen = service.getCart(cart);
+                    int qty = seen.items().isEmpty() ? 0 : seen.items().get(0).quantity();
+                    if (first) {
+                        firstRead.await(30, TimeUnit.SECONDS);
+                        first = false;
+                    }
+                    try {
+                        service.setQty(cart, 1L, qty + 1, seen.version());
+                        break;
+                    } catch (CartVersionConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        CartDTO dto = service.getCart(cart);
+        // Quantity is capped at 99, so count versions instead of the line itself
+        assertThat(dto.version()).isEqualTo(Math.min(99L, (long) THREADS * ROUNDS * 10));
+        assertThat(dto.items().get(0).quantity()).isEqualTo(99);
+        assertThat(conflicts.get()).isPositive();
+    }
+
+    /** Of many writers racing on the same version, exactly one wins. */
+    @Test
+    void onlyOneWriterWinsTheSameVersion() throws Exception {
+        long version = service.add(cart, 1L, 1, null).version();
+        AtomicInteger wins = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            try {
+                service.setQty(cart, 1L, thread + 2, version);
+                wins.incrementAndGet();
+            } catch (CartVersionConflictException e) {
+                conflicts.incrementAndGet();
+            }
+        });
+
+        assertThat(wins.get()).isEqualTo(1);
+        assertThat(conflicts.get()).isEqualTo(THREADS - 1);
+        assertThat(service.getCart(cart).version()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void staleVersionIsRejectedWithoutChanges() {
+        long v1 = service.add(cart, 1L, 1, null).version();
+        service.add(cart, 2L, 1, v1);
+
+        assertThatThrownBy(() -> service.clear(cart, v1))
+                .isInstanceOf(CartVersionConflictException.class);
+        assertThat(service.getCart(cart).items()).hasSize(2);
+    }
+
+    @Test
+    void clearingKeepsVersionIncreasing() {
+        service.add(cart, 1L, 1, null);
+        CartDTO cleared = service.clear(cart, null);
+        CartDTO refilled = service.add(cart, 1L, 1, null);
+
+        assertThat(cleared.items()).isEmpty();
+        assertThat(cleared.version()).isEqualTo(2);
+        assertThat(refilled.version()).isEqualTo(3);
+    }
+
+    @Test
+    void parsesIfMatchHeaders() {
+        assertThat(CartController.expectedVersion(null)).isNull();
+        assertThat(CartController.expectedVersion("*")).isNull();
+        assertThat(CartController.expectedVersion("\"7\"")).isEqualTo(7L);
+        assertThat(CartController.expectedVersion("W/\"7\"")).isEqualTo(7L);
+        assertThat(CartController.expectedVersion("7")).isEqualTo(7L);
+        assertThatThrownBy(() -> CartController.expectedVersion("\"abc\""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** Starts {@link #THREADS} workers on a latch so they hit the cart at the same time. */
+    private void runConcurrently(ThrowingIntConsumer body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    body.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrowingIntConsumer {
+        void accept(int value) throws Exception;
+    }
+}
@@ -0,0 +1,127 @@
+package com.healthyeats.server.cart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Memory benchmark: 100k simulated carts held as boxed
+ * {@code LinkedHashMap<Long, Integer>} versus {@link CartLines}.
+ *
+ * Reports, per representation:
+ * - retained heap (measured: used heap after GC, before vs after building all carts)
+ * - serialized size (JDK serialization of the map vs {@link CartLines#toBytes()})
+ *
+ * Heap footprint is not something JMH measures, so this is a plain program;
+ * run it with a fixed heap so GC noise stays small:
+ *   ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *       -Dexec.args="-Xms1g -Xmx1g -cp %classpath com.healthyeats.server.cart.CartMemoryBenchmark"
+ */
+public class CartMemoryBenchmark {
+
+    private static final int CARTS = 100_000;
+    private static final int MAX_LINES = 15;
+    private static final int CATALOG_SIZE = 5_000;
+
+    public static void main(String[] args) {
+        int carts = args.length > 0 ? Integer.parseInt(args[0]) : CARTS;
+
+        long lines = 0;
+        for (Map<Long, Integer> cart : boxedCarts(carts)) lines += cart.size();
+        System.out.printf("%,d carts, %,d lines (%.1f lines/cart)%n%n", carts, lines, (double) lines / carts);
+
+        long boxedHeap = measure(() -> boxedCarts(carts));
+        long compactHeap = measure(() -> compactCarts(carts));
+
+        Map<Long, Integer>[] boxed = boxedCarts(carts);
+        CartLines[] compact = compactCarts(carts);
+        long boxedSerialized = 0;
+        long compactSerialized = 0;
+        long compactEstimated = 0;
+        for (int i = 0; i < carts; i++) {
+            boxedSerialized += jdkSerializedSize(boxed[i]);
+            compactSerialized += compact[i].encodedSize();
+            compactEstimated += compact[i].retainedBytes();
+        }
+
+        System.out.printf("%-28s %14s %14s %14s%n", "", "heap/cart", "heap/line", "serialized/cart");
+        print("LinkedHashMap<Long,Integer>", boxedHeap, boxedSerialized, carts, lines);
+        print("CartLines", compactHeap, compactSerialized, carts, lines);
+        System.out.printf("%nCartLines.retainedBytes() estimate: %,d B/cart%n", compactEstimated / carts);
+        System.out.printf("Heap reduction: %.1fx, serialized reduction: %.1fx%n",
+                (double) boxedHeap / compactHeap, (double) boxedSerialized / compactSerialized);
+    }
+
+    /** Same random carts for every call (fixed seed), as boxed maps. */
+    @SuppressWarnings("unchecked")
+    static Map<Long, Integer>[] boxedCarts(int carts) {
+        Random random = new Random(42);
+        Map<Long, Integer>[] result = new Map[carts];
+        for (int c = 0; c < carts; c++) {
+            Map<Long, Integer> cart = new LinkedHashMap<>();
+            int n = 1 + random.nextInt(MAX_LINES);
+            for (int i = 0; i < n; i++) {
+                cart.put(1L + random.nextInt(CATALOG_SIZE), 1 + random.nextInt(5));
+            }
+            result[c] = cart;
+        }
+        return result;
+    }
+
+    /** Same random carts for every call (fixed seed), as compact lines. */
+    static CartLines[] compactCarts(int carts) {
+        Random random = new Random(42);
+        CartLines[] result = new CartLines[carts];
+        for (int c = 0; c < carts; c++) {
+            CartLines.Builder cart = CartLines.EMPTY.toBuilder();
+            int n = 1 + random.nextInt(MAX_LINES);
+            for (int i = 0; i < n; i++) {
+                cart.set(1L + random.nextInt(CATALOG_SIZE), 1 + random.nextInt(5));
+            }
+            result[c] = cart.build();
+        }
+        return result;
+    }
+
+    /** Used heap retained by the result of {@code factory}, in bytes (GC before and after). */
+    private static long measure(java.util.function.Supplier<Object> factory) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedAfterGc(memory);
+        Object retained = factory.get();
+        long after = usedAfterGc(memory);
+        if (retained.hashCode() == 42) System.out.print(""); // keep reachable until measured
+        return after - before;
+    }
+
+    private static long usedAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static int jdkSerializedSize(Object value) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.size();
+    }
+
+    private static void print(String label, long heap, long serialized, int carts, long lines) {
+        System.out.printf("%-28s %,12d B %,12d B %,12d B%n", label, heap / carts, heap / lines, serialized / carts);
+    }
+}
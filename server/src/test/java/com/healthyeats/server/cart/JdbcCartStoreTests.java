@@ -0,0 +1,171 @@
+package com.healthyeats.server.cart;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Saves are compare-and-set on the stored version: a write based on an
+ * outdated read is refused with a conflict instead of being dropped or
+ * overwriting a newer cart, also between two stores (nodes) sharing the table.
+ */
+class JdbcCartStoreTests {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 10;
+
+    private JdbcTemplate jdbc;
+    private JdbcCartStore store;
+    private JdbcCartStore otherNode;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:cart-store;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(h2);
+        store = newStore();
+        otherNode = newStore();
+        jdbc.update("DELETE FROM cart_store");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        store.stop();
+        otherNode.stop();
+    }
+
+    @Test
+    void newCartIsInsertedAndLoadedOnAnyNode() {
+        store.save("cart-1", cart(1L, 2, 1), 0);
+
+        StoredCart loaded = otherNode.load("cart-1");
+        assertThat(loaded.version()).isEqualTo(1);
+        assertThat(loaded.lines().quantityOf(1L)).isEqualTo(2);
+        assertThat(otherNode.load("missing")).isEqualTo(StoredCart.EMPTY);
+    }
+
+    @Test
+    void saveAtExpectedVersionUpdatesTheRow() {
+        store.save("cart-1", cart(1L, 2, 1), 0);
+        otherNode.save("cart-1", cart(1L, 5, 2), 1);
+
+        StoredCart loaded = store.load("cart-1");
+        assertThat(loaded.version()).isEqualTo(2);
+        assertThat(loaded.lines().quantityOf(1L)).isEqualTo(5);
+    }
+
+    @Test
+    void staleSaveConflictsAndKeepsTheNewerCart() {
+        store.save("cart-1", cart(1L, 2, 1), 0);
+        otherNode.save("cart-1", cart(1L, 3, 2), 1);
+
+        // Read at version 1 before the other node's save
+        assertThatThrownBy(() -> store.save("cart-1", cart(1L, 9, 2), 1))
+                .isInstanceOfSatisfying(CartVersionConflictException.class,
+                        e -> assertThat(e.getCurrentVersion()).isEqualTo(2));
+
+        assertThat(store.load("cart-1").lines().quantityOf(1L)).isEqualTo(3);
+    }
+
+    @Test
+    void secondCreationOfTheSameCartConflicts() {
+        store.save("cart-1", cart(1L, 1, 1), 0);
+
+        assertThatThrownBy(() -> otherNode.save("cart-1", cart(2L, 1, 1), 0))
+                .isInstanceOf(CartVersionConflictException.class);
+        assertThat(store.load("cart-1").lines().quantityOf(2L)).isZero();
+    }
+
+    /** Racing saves from the same version: exactly one wins, on either node. */
+    @Test
+    void concurrentSavesFromOneVersionHaveOneWinner() throws Exception {
+        store.save("cart-1", cart(1L, 1, 1), 0);
+        AtomicInteger conflicts = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            JdbcCartStore node = thread % 2 == 0 ? store : otherNode;
+            try {
+                node.save("cart-1", cart(1L, 10 + thread, 2), 1);
+            } catch (CartVersionConflictException e) {
+                conflicts.incrementAndGet();
+            }
+        });
+
+        assertThat(conflicts.get()).isEqualTo(THREADS - 1);
+        assertThat(store.load("cart-1").version()).isEqualTo(2);
+    }
+
+    /** Read-modify-write cycles retried on conflict lose no increment across nodes. */
+    @Test
+    void concurrentIncrementsLoseNoUpdates() throws Exception {
+        runConcurrently(thread -> {
+            JdbcCartStore node = thread % 2 == 0 ? store : otherNode;
+            for (int i = 0; i < INCREMENTS; i++) {
+                while (true) {
+                    StoredCart current = node.load("cart-1");
+                    int qty = current.lines().quantityOf(1L);
+                    try {
+                        node.save("cart-1", cart(1L, qty + 1, current.version() + 1), current.version());
+                        break;
+                    } catch (CartVersionConflictException e) {
+                        // Another thread saved first: read again
+                    }
+                }
+            }
+        });
+
+        StoredCart loaded = store.load("cart-1");
+        assertThat(loaded.lines().quantityOf(1L)).isEqualTo(THREADS * INCREMENTS);
+        assertThat(loaded.version()).isEqualTo((long) THREADS * INCREMENTS);
+    }
+
+    private JdbcCartStore newStore() {
+        JdbcCartStore s = new JdbcCartStore(jdbc, Duration.ofDays(1), 50, new SimpleMeterRegistry());
+        s.start();
+        return s;
+    }
+
+    private static StoredCart cart(long productId, int qty, long version) {
+        return new StoredCart(CartLines.EMPTY.toBuilder().set(productId, qty).build(), version);
+    }
+
+    /** Starts {@link #THREADS} workers on a latch so they save at the same time. */
+    private static void runConcurrently(ThrowingIntConsumer body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    body.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrowingIntConsumer {
+        void accept(int value) throws Exception;
+    }
+}
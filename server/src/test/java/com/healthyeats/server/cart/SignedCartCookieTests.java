@@ -0,0 +1,148 @@
+package com.healthyeats.server.cart;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The CART_DATA cookie is client-controlled input: anything not signed by
+ * this server, cut short, garbled or past its expiry must read as "no cart".
+ */
+class SignedCartCookieTests {
+
+    private static final String SECRET = "test-secret";
+    private static final Duration TTL = Duration.ofDays(30);
+    private static final Instant NOW = Instant.parse("2026-10-01T12:00:00Z");
+
+    private final SignedCartCookie cookie = at(NOW);
+
+    private final StoredCart cart = new StoredCart(CartLines.EMPTY.toBuilder()
+            .set(7L, 2)
+            .set(300L, 1)
+            .set(Long.MAX_VALUE, 99)
+            .build(), 5);
+
+    @Test
+    void roundTripsThroughTheResponseCookie() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cookie.write(response, cart);
+
+        String setCookie = response.getHeader(HttpHeaders.SET_COOKIE);
+        assertThat(setCookie).startsWith(SignedCartCookie.NAME + "=").contains("HttpOnly");
+        String value = setCookie.substring(SignedCartCookie.NAME.length() + 1, setCookie.indexOf(';'));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(SignedCartCookie.NAME, value));
+        assertThat(cookie.read(request)).contains(cart);
+    }
+
+    @Test
+    void emptyCartRoundTrips() {
+        assertThat(cookie.decode(cookie.encode(StoredCart.EMPTY))).contains(StoredCart.EMPTY);
+    }
+
+    @Test
+    void missingCookieIsNoCart() {
+        assertThat(cookie.read(new MockHttpServletRequest())).isEmpty();
+    }
+
+    @Test
+    void rejectsTamperedPayload() {
+        String value = cookie.encode(cart);
+        // Same signature, version bumped from 5 to 6
+        assertThat(cookie.decode("6" + value.substring(1))).isEmpty();
+
+        // Same signature, different lines
+        String forgedLines = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new StoredCart(CartLines.EMPTY.toBuilder().set(7L, 99).build(), 5).lines().toBytes());
+        String[] parts = value.split("\\.");
+        assertThat(cookie.decode(parts[0] + "." + parts[1] + "." + forgedLines + "." + parts[3])).isEmpty();
+    }
+
+    @Test
+    void rejectsTamperedSignature() {
+        String value = cookie.encode(cart);
+        char last = value.charAt(value.length() - 1);
+        String flipped = value.substring(0, value.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertThat(cookie.decode(flipped)).isEmpty();
+        assertThat(cookie.decode(value.substring(0, value.lastIndexOf('.') + 1))).isEmpty();
+    }
+
+    @Test
+    void rejectsCookieSignedWithAnotherKey() {
+        SignedCartCookie other = new SignedCartCookie("other-secret", TTL, false, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertThat(cookie.decode(other.encode(cart))).isEmpty();
+    }
+
+    @Test
+    void rejectsTruncatedAndGarbageValues() {
+        String value = cookie.encode(cart);
+        for (int length = 0; length < value.length(); length++) {
+            assertThat(cookie.decode(value.substring(0, length))).as("prefix of length %d", length).isEmpty();
+        }
+        assertThat(cookie.decode("garbage")).isEmpty();
+        assertThat(cookie.decode("....")).isEmpty();
+        assertThat(cookie.decode(".x")).isEmpty();
+        assertThat(cookie.decode("%%%.!!!.***.???")).isEmpty();
+    }
+
+    @Test
+    void rejectsSignedButMalformedPayload() {
+        // Correctly signed payloads that do not parse (e.g. an older format) are ignored, not thrown
+        assertThat(cookie.decode(signed("5.AgwCBwE"))).isEmpty();
+        assertThat(cookie.decode(signed("x." + NOW.plus(TTL).getEpochSecond() + ".AgwCBwE"))).isEmpty();
+        assertThat(cookie.decode(signed("5." + NOW.plus(TTL).getEpochSecond() + ".!!"))).isEmpty();
+        // Claims a thousand lines but holds none
+        assertThat(cookie.decode(signed("5." + NOW.plus(TTL).getEpochSecond() + ".6Ac"))).isEmpty();
+    }
+
+    @Test
+    void rejectsExpiredCookie() {
+        String value = cookie.encode(cart);
+
+        assertThat(at(NOW.plus(TTL).minusSeconds(1)).decode(value)).contains(cart);
+        assertThat(at(NOW.plus(TTL)).decode(value)).isEmpty();
+        assertThat(at(NOW.plus(TTL).plusSeconds(3600)).decode(value)).isEmpty();
+    }
+
+    @Test
+    void rewritingExtendsTheExpiry() {
+        String rewritten = at(NOW.plus(Duration.ofDays(20))).encode(cart);
+
+        assertThat(at(NOW.plus(Duration.ofDays(40))).decode(rewritten)).contains(cart);
+    }
+
+    @Test
+    void refusesCartsTooLargeForACookie() {
+        CartLines.Builder lines = CartLines.EMPTY.toBuilder();
+        for (long id = 0; id < 1000; id++) {
+            lines.set(Long.MAX_VALUE - id, 99);
+        }
+        StoredCart huge = new StoredCart(lines.build(), 1);
+
+        assertThatThrownBy(() -> cookie.write(new MockHttpServletResponse(), huge))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static SignedCartCookie at(Instant now) {
+        return new SignedCartCookie(SECRET, TTL, false, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    /** Signs an arbitrary payload the way the server would. */
+    private String signed(String payload) {
+        return payload + "." + cookie.sign(payload);
+    }
+}
@@ -0,0 +1,106 @@
+package com.healthyeats.server.catalog;
+
+import com.healthyeats.server.category.Category;
+import com.healthyeats.server.category.CategoryRepository;
+import com.healthyeats.server.product.Product;
+import com.healthyeats.server.product.ProductRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Catalog endpoints answer a matching {@code If-None-Match} with 304, hand out
+ * a new ETag once the catalog changes, and never go back to the bodies of an
+ * older snapshot.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:catalog-etag;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CatalogResponseCacheTests {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private CatalogService catalog;
+
+    @Autowired
+    private CatalogResponseCache responses;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Category category;
+
+    @BeforeAll
+    void seed() {
+        category = categoryRepository.save(new Category(null, "Greens"));
+        productRepository.save(new Product(null, "Kale", 250, "/images/kale.jpg", category, "per bunch"));
+        catalog.refresh();
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        for (String path : List.of("/api/products", "/api/categories")) {
+            String etag = etagOf(path);
+
+            mvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified());
+        }
+    }
+
+    @Test
+    void etagChangesAfterCatalogUpdate() throws Exception {
+        String before = etagOf("/api/products");
+
+        productRepository.save(new Product(null, "Spinach", 199, "/images/spinach.jpg", category, "per bag"));
+        catalog.refresh();
+
+        String after = etagOf("/api/products");
+        assertThat(after).isNotEqualTo(before);
+        mvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, before))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, after))
+                .andExpect(status().isNotModified());
+    }
+
+    /** Bodies built from an older snapshot, e.g. by a slow request, do not replace newer ones. */
+    @Test
+    void olderSnapshotDoesNotReplaceNewerEntry() {
+        CatalogSnapshot active = catalog.refresh();
+        String etag = responses.products().etag();
+
+        CatalogSnapshot older = CatalogSnapshot.of(active.version() - 1, Instant.now(), List.of(), List.of());
+        responses.onCatalogRefreshed(new CatalogRefreshedEvent(null, older));
+
+        assertThat(responses.products().etag()).isEqualTo(etag);
+    }
+
+    private String etagOf(String path) throws Exception {
+        String etag = mvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank();
+        return etag;
+    }
+}
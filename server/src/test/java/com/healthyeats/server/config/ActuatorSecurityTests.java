@@ -0,0 +1,70 @@
+package com.healthyeats.server.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Probes and scrapes stay public; the rest of the actuator (metrics, the
+ * catalog reload) is for the users listed in {@code management.admin-emails},
+ * not for any logged-in shopper.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:actuator-security;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "management.prometheus.metrics.export.enabled=true", // tests switch export off by default
+        "management.admin-emails=Ops@Example.com, other@example.com"
+})
+@AutoConfigureMockMvc
+class ActuatorSecurityTests {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void healthAndPrometheusArePublic() throws Exception {
+        mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        mvc.perform(get("/actuator/prometheus")).andExpect(status().isOk());
+    }
+
+    @Test
+    void anonymousCannotUseTheActuator() throws Exception {
+        mvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+        mvc.perform(post("/actuator/catalog")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void shopperCannotUseTheActuator() throws Exception {
+        MockHttpSession shopper = login("shopper-" + UUID.randomUUID() + "@example.com");
+
+        mvc.perform(get("/actuator/metrics").session(shopper)).andExpect(status().isForbidden());
+        mvc.perform(get("/actuator/catalog").session(shopper)).andExpect(status().isForbidden());
+        mvc.perform(post("/actuator/catalog").session(shopper)).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void adminCanReloadTheCatalog() throws Exception {
+        MockHttpSession admin = login("ops@example.com");
+
+        mvc.perform(get("/actuator/metrics").session(admin)).andExpect(status().isOk());
+        mvc.perform(post("/actuator/catalog").session(admin)).andExpect(status().isOk());
+    }
+
+    private MockHttpSession login(String email) throws Exception {
+        mvc.perform(post("/api/auth/register").param("email", email).param("password", "secret-password"));
+        return (MockHttpSession) mvc.perform(post("/api/auth/login").param("email", email).param("password", "secret-password"))
+                .andExpect(status().isOk())
+                .andReturn().getRequest().getSession();
+    }
+}
@@ -0,0 +1,211 @@
+package com.healthyeats.server.loadtest;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.healthyeats.server.ServerApplication;
+import com.healthyeats.server.order.Order;
+import com.healthyeats.server.order.OrderRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end checkout load test: browse → cart → checkout → webhook.
+ *
+ * Boots the application on a random port against an in-memory H2 database
+ * (schema from the entities, catalog from data.sql) with Stripe replaced by
+ * {@link FakeStripeServer}. Each simulated user has its own cookie jar and runs,
+ * per iteration:
+ * 1. GET /api/categories and GET /api/products
+ * 2. POST /api/cart/items for 1–4 random products, then GET /api/cart
+ * 3. POST /api/auth/login (first iteration only)
+ * 4. POST /api/checkout with the server-side cart, then DELETE /api/cart
+ * The fake then delivers a signed checkout.session.completed webhook per session.
+ *
+ * Prints throughput and p50/p95/p99 latency per endpoint, plus how many orders
+ * ended up paid. Not part of the unit-test run; start it with
+ *   ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.healthyeats.server.loadtest.CheckoutLoadTest -Dexec.args="200 5"
+ *
+ * Arguments: users (default 100), iterations per user (default 5).
+ * System properties for the fake: {@code fake.latency-ms=50-150},
+ * {@code fake.error-rate=0.0}, {@code fake.error-status=500}, {@code fake.webhook-delay-ms=200}.
+ * Any other application property can be overridden with -D as usual.
+ */
+public class CheckoutLoadTest {
+
+    private static final String WEBHOOK_SECRET = "whsec_loadtest";
+    private static final String PASSWORD = "load-test-password";
+    private static final String ADDRESS = """
+            {"address":{"fullName":"Load Test","street":"1 Bench St","city":"Berlin","zip":"10115","country":"DE"}}""";
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        LatencyStats stats = new LatencyStats();
+        String[] latency = System.getProperty("fake.latency-ms", "50-150").split("-");
+        try (FakeStripeServer stripe = new FakeStripeServer(WEBHOOK_SECRET, stats)
+                .latency(Duration.ofMillis(Long.parseLong(latency[0])),
+                        Duration.ofMillis(Long.parseLong(latency[latency.length - 1])))
+                .errors(Double.parseDouble(System.getProperty("fake.error-rate", "0")),
+                        Integer.getInteger("fake.error-status", 500))
+                .webhookDelay(Duration.ofMillis(Long.getLong("fake.webhook-delay-ms", 200)))
+                .start();
+             var context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(ServerApplication.class)
+                     .properties(
+                             "server.port=0",
+                             "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                             "spring.datasource.username=sa",
+                             "spring.datasource.password=",
+                             "spring.jpa.hibernate.ddl-auto=create-drop",
+                             "spring.jpa.defer-datasource-initialization=true",
+                             "spring.sql.init.mode=always",
+                             "stripe.secret-key=sk_test_loadtest",
+                             "stripe.api-base=" + stripe.baseUrl(),
+                             "stripe.webhook-secret=" + WEBHOOK_SECRET,
+                             "logging.level.root=WARN")
+                     .run(args)) {
+
+            String base = "http://127.0.0.1:" + context.getWebServer().getPort();
+            stripe.webhookUrl(URI.create(base + "/api/checkout/webhook"));
+
+            List<Long> productIds = productIds(base);
+            System.out.printf("Catalog: %d products; %d users × %d checkouts%n%n", productIds.size(), users, iterations);
+
+            List<User> population = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                User user = new User(base, "load" + i + "@example.com", stats);
+                user.register();
+                population.add(user);
+            }
+
+            AtomicInteger checkouts = new AtomicInteger();
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> runs = new ArrayList<>();
+                for (User user : population) {
+                    runs.add(executor.submit(() -> {
+                        for (int i = 0; i < iterations; i++) {
+                            if (user.shopAndCheckout(productIds, i == 0)) checkouts.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> run : runs) run.get();
+            }
+            boolean drained = stripe.awaitWebhooks(Duration.ofSeconds(30));
+            long wall = System.nanoTime() - start;
+
+            stats.print(wall);
+            long paid = context.getBean(OrderRepository.class).findAll().stream().filter(Order::isPaid).count();
+            System.out.printf("%nWall time %.1f s, %d checkouts (%.1f/s), %d orders paid via webhook%s%n",
+                    wall / 1e9, checkouts.get(), checkouts.get() / (wall / 1e9), paid,
+                    drained ? "" : " (webhooks still pending at timeout)");
+        }
+    }
+
+    private static List<Long> productIds(String base) throws IOException, InterruptedException {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(base + "/api/products")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        List<Long> ids = new ArrayList<>();
+        for (JsonElement product : JsonParser.parseString(response.body()).getAsJsonArray()) {
+            ids.add(product.getAsJsonObject().get("id").getAsLong());
+        }
+        if (ids.isEmpty()) throw new IllegalStateException("No products seeded");
+        return ids;
+    }
+
+    /** One simulated shopper with its own session and cart cookies. */
+    private static final class User {
+
+        private final String base;
+        private final String email;
+        private final LatencyStats stats;
+        private final HttpClient http = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        User(String base, String email, LatencyStats stats) {
+            this.base = base;
+            this.email = email;
+            this.stats = stats;
+        }
+
+        void register() throws IOException, InterruptedException {
+            HttpResponse<String> response = http.send(form("/api/auth/register", credentials()),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Registering " + email + " failed: " + response.statusCode());
+            }
+        }
+
+        /**
+         * @return whether checkout answered with a session URL
+         */
+        boolean shopAndCheckout(List<Long> productIds, boolean login) throws IOException, InterruptedException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            call("GET /api/categories", get("/api/categories"));
+            call("GET /api/products", get("/api/products"));
+
+            int lines = 1 + random.nextInt(4);
+            for (int i = 0; i < lines; i++) {
+                long productId = productIds.get(random.nextInt(productIds.size()));
+                call("POST /api/cart/items", form("/api/cart/items",
+                        "productId=" + productId + "&quantity=" + (1 + random.nextInt(3))));
+            }
+            call("GET /api/cart", get("/api/cart"));
+
+            if (login) call("POST /api/auth/login", form("/api/auth/login", credentials()));
+
+            boolean ok = call("POST /api/checkout", HttpRequest.newBuilder(URI.create(base + "/api/checkout"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(ADDRESS))
+                    .build());
+            call("DELETE /api/cart", HttpRequest.newBuilder(URI.create(base + "/api/cart")).DELETE().build());
+            return ok;
+        }
+
+        private boolean call(String endpoint, HttpRequest request) throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            stats.record(endpoint, System.nanoTime() - start, status >= 200 && status < 300);
+            return status >= 200 && status < 300;
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+        }
+
+        private HttpRequest form(String path, String body) {
+            return HttpRequest.newBuilder(URI.create(base + path))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private String credentials() {
+            return "email=" + URLEncoder.encode(email, StandardCharsets.UTF_8)
+                    + "&password=" + URLEncoder.encode(PASSWORD, StandardCharsets.UTF_8);
+        }
+    }
+}
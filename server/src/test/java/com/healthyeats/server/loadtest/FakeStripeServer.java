@@ -0,0 +1,282 @@
+package com.healthyeats.server.loadtest;
+
+import com.stripe.Stripe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the parts of the Stripe API that checkout uses.
+ *
+ * - {@code POST /v1/checkout/sessions}: answers like Stripe (session JSON with
+ *   {@code id} and {@code url}) after a random latency in [{@code minLatency},
+ *   {@code maxLatency}], or with an injected {@code errorStatus} error at
+ *   {@code errorRate}.
+ * - For every created session, {@code webhookDelay} later, POSTs a
+ *   {@code checkout.session.completed} event to the webhook URL, signed the
+ *   way Stripe signs it ({@code Stripe-Signature: t=..,v1=HMAC-SHA256(secret, "t.payload")}),
+ *   so the application verifies it with the real {@code Webhook.constructEvent}.
+ * - Like Stripe, a request repeating an earlier {@code Idempotency-Key} gets the
+ *   first response again: no second session, no second webhook.
+ *
+ * Point the application at it with {@code stripe.api-base=}{@link #baseUrl()}
+ * and use the same {@code stripe.webhook-secret} on both sides.
+ */
+public class FakeStripeServer implements AutoCloseable {
+
+    private final String webhookSecret;
+    private final LatencyStats stats;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient http = HttpClient.newBuilder().executor(executor).build();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger pendingWebhooks = new AtomicInteger();
+    private final AtomicInteger sessionsCreated = new AtomicInteger();
+    private final Map<String, String> responsesByIdempotencyKey = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private volatile URI webhookUrl;
+
+    private volatile Duration minLatency = Duration.ofMillis(50);
+    private volatile Duration maxLatency = Duration.ofMillis(150);
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile Duration webhookDelay = Duration.ofMillis(200);
+
+    /**
+     * @param webhookSecret secret used to sign webhook callbacks
+     * @param stats         receives the latency of each webhook delivery
+     */
+    public FakeStripeServer(String webhookSecret, LatencyStats stats) {
+        this.webhookSecret = webhookSecret;
+        this.stats = stats;
+    }
+
+    public FakeStripeServer latency(Duration min, Duration max) {
+        this.minLatency = min;
+        this.maxLatency = max;
+        return this;
+    }
+
+    /**
+     * @param rate   fraction of session calls answered with an error (0..1)
+     * @param status HTTP status of injected errors (e.g. 500, 429)
+     */
+    public FakeStripeServer errors(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    public FakeStripeServer webhookDelay(Duration delay) {
+        this.webhookDelay = delay;
+        return this;
+    }
+
+    /** Where completed-session events are delivered; set once the application is up. */
+    public FakeStripeServer webhookUrl(URI url) {
+        this.webhookUrl = url;
+        return this;
+    }
+
+    public FakeStripeServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/v1/checkout/sessions", this::createSession);
+        server.start();
+        return this;
+    }
+
+    /**
+     * @return base URL for {@code stripe.api-base}
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Waits until every scheduled webhook has been delivered.
+     *
+     * @return true if none is pending any more
+     */
+    public boolean awaitWebhooks(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pendingWebhooks.get() > 0) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of Checkout Sessions created so far (idempotent replays not counted)
+     */
+    public int sessionsCreated() {
+        return sessionsCreated.get();
+    }
+
+    /**
+     * @param idempotencyKey Idempotency-Key a session request was sent with
+     * @return whether a session was created under that key
+     */
+    public boolean sawIdempotencyKey(String idempotencyKey) {
+        return responsesByIdempotencyKey.containsKey(idempotencyKey);
+    }
+
+    @Override
+    public void close() {
+        if (server != null) server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void createSession(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("invalid_request_error", "Only POST is supported"));
+                return;
+            }
+            String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            sleep(randomLatency());
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, errorStatus, error(errorStatus == 429 ? "rate_limit_error" : "api_error",
+                        "Injected failure"));
+                return;
+            }
+
+            String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            String replay = idempotencyKey == null ? null : responsesByIdempotencyKey.get(idempotencyKey);
+            if (replay != null) {
+                respond(exchange, 200, replay);
+                return;
+            }
+
+            sessionsCreated.incrementAndGet();
+            String sessionId = "cs_test_" + sequence.incrementAndGet();
+            String reference = formParam(form, "client_reference_id");
+            String session = session(sessionId, reference, "open", "unpaid");
+            if (idempotencyKey != null) responsesByIdempotencyKey.put(idempotencyKey, session);
+            respond(exchange, 200, session);
+            scheduleWebhook(sessionId, reference);
+        }
+    }
+
+    private void scheduleWebhook(String sessionId, String reference) {
+        URI target = webhookUrl;
+        if (target == null) return;
+        pendingWebhooks.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                sleep(webhookDelay);
+                String payload = event(sessionId, reference);
+                HttpRequest request = HttpRequest.newBuilder(target)
+                        .header("Content-Type", "application/json")
+                        .header("Stripe-Signature", signature(payload, System.currentTimeMillis() / 1000))
+                        .POST(HttpRequest.BodyPublishers.ofString(payload))
+                        .build();
+                long start = System.nanoTime();
+                boolean ok;
+                try {
+                    HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                    // The controller answers 200 either way; the body tells whether the signature passed
+                    ok = response.statusCode() == 200 && "success".equals(response.body());
+                } catch (IOException e) {
+                    ok = false;
+                }
+                stats.record("POST /api/checkout/webhook", System.nanoTime() - start, ok);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pendingWebhooks.decrementAndGet();
+            }
+        });
+    }
+
+    /** Stripe's scheme: {@code t=<unix seconds>,v1=<hex HMAC-SHA256 of "t.payload">}. */
+    String signature(String payload, long timestamp) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] digest = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+            return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private String session(String id, String reference, String status, String paymentStatus) {
+        return """
+                {"id":"%s","object":"checkout.session","client_reference_id":%s,"mode":"payment",\
+                "status":"%s","payment_status":"%s","livemode":false,"url":"%s/pay/%s"}"""
+                .formatted(id, reference == null ? "null" : "\"" + reference + "\"",
+                        status, paymentStatus, baseUrl(), id);
+    }
+
+    private String event(String sessionId, String reference) {
+        return """
+                {"id":"evt_test_%d","object":"event","api_version":"%s","created":%d,\
+                "type":"checkout.session.completed","livemode":false,"pending_webhooks":1,\
+                "data":{"object":%s}}"""
+                .formatted(sequence.incrementAndGet(), Stripe.API_VERSION, System.currentTimeMillis() / 1000,
+                        session(sessionId, reference, "complete", "paid"));
+    }
+
+    private static String error(String type, String message) {
+        return """
+                {"error":{"type":"%s","message":"%s"}}""".formatted(type, message);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Request-Id", "req_fake_" + System.nanoTime());
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String formParam(String form, String name) {
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private Duration randomLatency() {
+        long min = minLatency.toMillis();
+        long max = Math.max(min, maxLatency.toMillis());
+        return Duration.ofMillis(min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.healthyeats.server.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe per-endpoint latency recorder for the load test.
+ *
+ * Samples are kept in full (a load-test run produces at most a few hundred
+ * thousand), so percentiles are exact rather than bucketed.
+ */
+public class LatencyStats {
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * @param endpoint label, e.g. "POST /api/checkout"
+     * @param nanos    elapsed time of the call
+     * @param ok       whether the call succeeded (2xx)
+     */
+    void record(String endpoint, long nanos, boolean ok) {
+        series.computeIfAbsent(endpoint, e -> new Series()).add(nanos, ok);
+    }
+
+    /**
+     * Prints count, errors, throughput and p50/p95/p99 per endpoint.
+     *
+     * @param wallNanos duration of the measured run
+     */
+    void print(long wallNanos) {
+        double seconds = wallNanos / 1e9;
+        System.out.printf("%-32s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "calls", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, Series> e : new TreeMap<>(series).entrySet()) {
+            long[] samples = e.getValue().sorted();
+            System.out.printf("%-32s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    e.getKey(), samples.length, e.getValue().errors(), samples.length / seconds,
+                    millis(percentile(samples, 50)), millis(percentile(samples, 95)),
+                    millis(percentile(samples, 99)), millis(samples.length == 0 ? 0 : samples[samples.length - 1]));
+        }
+    }
+
+    /** Nearest-rank percentile of sorted samples. */
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class Series {
+
+        private long[] samples = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long nanos, boolean ok) {
+            if (size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+            samples[size++] = nanos;
+            if (!ok) errors++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.healthyeats.server.observability;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.healthyeats.server.loadtest.FakeStripeServer;
+import com.healthyeats.server.loadtest.LatencyStats;
+import com.healthyeats.server.observability.LocalSpanExporter.SpanRecord;
+import com.healthyeats.server.order.Order;
+import com.healthyeats.server.order.OrderRepository;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A real checkout and its webhook (H2, {@link FakeStripeServer}) leave the span
+ * tree the README describes in {@link LocalSpanExporter}: one span per stage,
+ * all siblings under their HTTP request span (below Spring Security's
+ * "secured request"), with {@code order.id} on the request span and on the
+ * stages that know the order.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout-trace;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.defer-datasource-initialization=true",
+        "spring.sql.init.mode=always",
+        "stripe.secret-key=sk_test_trace",
+        "stripe.webhook-secret=whsec_trace",
+        "management.tracing.sampling.probability=1.0"
+})
+@AutoConfigureObservability(metrics = false)
+class CheckoutTraceTests {
+
+    private static final FakeStripeServer STRIPE = startStripe();
+
+    private static final List<String> CHECKOUT_STAGES = List.of(
+            "checkout cart", "checkout products", "checkout user",
+            "checkout find-existing", "checkout order-insert", "checkout session-wait");
+
+    private static final List<String> WEBHOOK_STAGES = List.of(
+            "webhook verify", "webhook parse", "webhook dedupe", "webhook enqueue");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private LocalSpanExporter exporter;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private final HttpClient http = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+
+    @DynamicPropertySource
+    static void stripeProperties(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api-base", STRIPE::baseUrl);
+    }
+
+    @AfterAll
+    static void stopStripe() {
+        STRIPE.close();
+    }
+
+    @Test
+    void checkoutAndWebhookAreTracedStageByStage() throws Exception {
+        String base = "http://127.0.0.1:" + port;
+        STRIPE.webhookUrl(URI.create(base + "/api/checkout/webhook"));
+        signIn(base, "traced@example.com");
+
+        HttpResponse<String> checkout = send(HttpRequest.newBuilder(URI.create(base + "/api/checkout"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("""
+                        {"items":[{"productId":1,"quantity":2}],\
+                        "address":{"fullName":"Test Shopper","street":"1 Test St","city":"Berlin","zip":"10115","country":"DE"}}""")));
+        assertThat(checkout.statusCode()).isEqualTo(200);
+        JsonObject body = JsonParser.parseString(checkout.body()).getAsJsonObject();
+        String orderId = body.get("orderId").getAsString();
+
+        assertThat(STRIPE.awaitWebhooks(Duration.ofSeconds(10))).isTrue();
+        awaitUntil(() -> orderRepository.findById(Long.valueOf(orderId)).map(Order::isPaid).orElse(false));
+        awaitUntil(() -> find(named("webhooks.mark-paid")).isPresent());
+
+        // Checkout: the stages are siblings in the request's trace
+        SpanRecord insert = find(named("checkout order-insert").and(hasOrderId(orderId))).orElseThrow();
+        SpanRecord request = rootOf(insert);
+        assertThat(request.name()).isEqualTo("http post /api/checkout");
+        assertThat(request.attributes()).containsEntry(Spans.ORDER_ID, orderId);
+        assertThat(childrenOf(parentOf(insert))).extracting(SpanRecord::name).containsAll(CHECKOUT_STAGES);
+        assertThat(find(named("checkout session-wait").and(hasOrderId(orderId))).orElseThrow().parentSpanId())
+                .isEqualTo(insert.parentSpanId());
+
+        // The outbox's Stripe call
+        SpanRecord stripeCall = find(named("payments.session.create").and(hasOrderId(orderId))).orElseThrow();
+        assertThat(stripeCall.status()).isNotEqualTo("ERROR");
+
+        // Webhook: same shape, and the order ID links it to the checkout
+        SpanRecord enqueue = find(named("webhook enqueue").and(hasOrderId(orderId))).orElseThrow();
+        SpanRecord webhook = rootOf(enqueue);
+        assertThat(webhook.name()).isEqualTo("http post /api/checkout/webhook");
+        assertThat(webhook.attributes()).containsEntry(Spans.ORDER_ID, orderId)
+                .containsEntry("stripe.event.type", "checkout.session.completed");
+        assertThat(childrenOf(parentOf(enqueue))).extracting(SpanRecord::name).containsAll(WEBHOOK_STAGES);
+
+        assertThat(find(named("webhooks.mark-paid")).orElseThrow().attributes().get("order.ids")).contains(orderId);
+    }
+
+    private void signIn(String base, String email) throws Exception {
+        String credentials = "email=" + URLEncoder.encode(email, StandardCharsets.UTF_8) + "&password=secret-password";
+        for (String path : List.of("/api/auth/register", "/api/auth/login")) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(base + path))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(credentials)));
+            assertThat(response.statusCode()).as(path).isEqualTo(200);
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Spans reach the exporter through a batch processor; flush it before every look. */
+    private List<SpanRecord> spans() {
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+        return exporter.spans();
+    }
+
+    private Optional<SpanRecord> find(Predicate<SpanRecord> predicate) {
+        return spans().stream().filter(predicate).findFirst();
+    }
+
+    private SpanRecord parentOf(SpanRecord span) {
+        assertThat(span.parentSpanId()).as("parent of %s", span.name()).isNotNull();
+        return spans().stream()
+                .filter(s -> s.spanId().equals(span.parentSpanId()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No parent span for " + span.name()));
+    }
+
+    private SpanRecord rootOf(SpanRecord span) {
+        while (span.parentSpanId() != null) {
+            span = parentOf(span);
+        }
+        return span;
+    }
+
+    private List<SpanRecord> childrenOf(SpanRecord parent) {
+        return spans().stream()
+                .filter(s -> parent.spanId().equals(s.parentSpanId()) && s.traceId().equals(parent.traceId()))
+                .toList();
+    }
+
+    private static Predicate<SpanRecord> named(String name) {
+        return s -> s.name().equals(name);
+    }
+
+    private static Predicate<SpanRecord> hasOrderId(String orderId) {
+        return s -> orderId.equals(s.attributes().get(Spans.ORDER_ID));
+    }
+
+    private static void awaitUntil(Condition condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (!condition.met()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Timed out");
+            Thread.sleep(100);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean met() throws Exception;
+    }
+
+    private static FakeStripeServer startStripe() {
+        try {
+            return new FakeStripeServer("whsec_trace", new LatencyStats())
+                    .latency(Duration.ofMillis(10), Duration.ofMillis(20))
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.healthyeats.server.observability;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Spans finished through the OpenTelemetry SDK end up in memory (grouped by
+ * trace, with parent links and attributes) and, if configured, in the JSON-lines file.
+ */
+class LocalSpanExporterTests {
+
+    @TempDir
+    Path dir;
+
+    /** A checkout-like trace is kept with its parent link and order.id attribute. */
+    @Test
+    void keepsTraceInMemoryAndFile() throws Exception {
+        Path file = dir.resolve("spans.jsonl");
+        LocalSpanExporter exporter = new LocalSpanExporter(100, file.toString());
+
+        String traceId;
+        try (SdkTracerProvider provider = tracerProvider(exporter)) {
+            Tracer tracer = provider.get("test");
+            Span request = tracer.spanBuilder("http post /api/checkout").startSpan();
+            traceId = request.getSpanContext().getTraceId();
+            try (Scope scope = request.makeCurrent()) {
+                tracer.spanBuilder("checkout order-insert").startSpan()
+                        .setAttribute(Spans.ORDER_ID, "1042")
+                        .end();
+            } finally {
+                request.end();
+            }
+        }
+
+        List<LocalSpanExporter.SpanRecord> trace = exporter.trace(traceId);
+        assertThat(trace).extracting(LocalSpanExporter.SpanRecord::name)
+                .containsExactly("checkout order-insert", "http post /api/checkout");
+        assertThat(trace.get(0).parentSpanId()).isEqualTo(trace.get(1).spanId());
+        assertThat(trace.get(1).parentSpanId()).isNull();
+        assertThat(trace.get(0).attributes()).containsEntry(Spans.ORDER_ID, "1042");
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains("\"order.id\":\"1042\"").contains(traceId);
+    }
+
+    /** Only the newest {@code max-spans} spans are kept in memory. */
+    @Test
+    void dropsOldestSpansBeyondLimit() {
+        LocalSpanExporter exporter = new LocalSpanExporter(3, "");
+
+        try (SdkTracerProvider provider = tracerProvider(exporter)) {
+            Tracer tracer = provider.get("test");
+            for (int i = 1; i <= 5; i++) {
+                tracer.spanBuilder("span " + i).startSpan().end();
+            }
+        }
+
+        assertThat(exporter.spans()).extracting(LocalSpanExporter.SpanRecord::name)
+                .containsExactly("span 3", "span 4", "span 5");
+        exporter.clear();
+        assertThat(exporter.spans()).isEmpty();
+    }
+
+    private static SdkTracerProvider tracerProvider(LocalSpanExporter exporter) {
+        return SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                .build();
+    }
+}
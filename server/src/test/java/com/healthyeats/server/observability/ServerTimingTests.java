@@ -0,0 +1,100 @@
+package com.healthyeats.server.observability;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Statements run through {@link ProfilingDataSource} are counted into the
+ * current {@link RequestProfile}, grouped by text, and show up in the
+ * Server-Timing value; outside a request nothing is recorded.
+ */
+class ServerTimingTests {
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:server-timing;DB_CLOSE_DELAY=-1");
+        dataSource = ProfilingDataSource.wrap(h2);
+        try (Connection c = dataSource.getConnection(); Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE IF NOT EXISTS item (id BIGINT PRIMARY KEY, name VARCHAR(50))");
+            s.execute("DELETE FROM item");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestProfile.unbind();
+    }
+
+    /** Prepared, plain and batched statements are all counted, per statement text. */
+    @Test
+    void countsStatementsOfCurrentRequest() throws Exception {
+        RequestProfile profile = new RequestProfile();
+        RequestProfile.bind(profile);
+
+        try (Connection c = dataSource.getConnection()) {
+            try (PreparedStatement insert = c.prepareStatement("INSERT INTO item (id, name) VALUES (?, ?)")) {
+                for (long id = 1; id <= 3; id++) {
+                    insert.setLong(1, id);
+                    insert.setString(2, "item " + id);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            for (long id = 1; id <= 3; id++) {
+                try (PreparedStatement select = c.prepareStatement("SELECT name FROM item WHERE id = ?")) {
+                    select.setLong(1, id);
+                    try (ResultSet rs = select.executeQuery()) {
+                        assertThat(rs.next()).isTrue();
+                    }
+                }
+            }
+            try (Statement s = c.createStatement()) {
+                s.executeQuery("SELECT COUNT(*) FROM item").close();
+            }
+        }
+
+        assertThat(profile.statementCount()).isEqualTo(5);
+        assertThat(profile.topStatements(10))
+                .extracting(RequestProfile.StatementStats::sql, RequestProfile.StatementStats::count)
+                .contains(
+                        tuple("INSERT INTO item (id, name) VALUES (?, ?)", 1),
+                        tuple("SELECT name FROM item WHERE id = ?", 3),
+                        tuple("SELECT COUNT(*) FROM item", 1));
+        assertThat(profile.topStatements(2)).hasSize(2);
+        assertThat(profile.repeatedStatements(3))
+                .extracting(RequestProfile.StatementStats::sql)
+                .containsExactly("SELECT name FROM item WHERE id = ?");
+        assertThat(profile.serverTiming())
+                .matches("db;dur=\\d+\\.\\d;desc=\"5 queries\", app;dur=\\d+\\.\\d");
+
+        profile.outbound(250_000_000L);
+        assertThat(profile.serverTiming()).contains("ext;dur=250.0;desc=\"1 calls\"");
+    }
+
+    /** Background work (no bound profile) runs unmeasured. */
+    @Test
+    void ignoresStatementsOutsideRequests() throws Exception {
+        RequestProfile profile = new RequestProfile();
+
+        try (Connection c = dataSource.getConnection(); Statement s = c.createStatement()) {
+            s.executeQuery("SELECT COUNT(*) FROM item").close();
+        }
+
+        assertThat(profile.statementCount()).isZero();
+        assertThat(RequestProfile.current()).isNull();
+    }
+}
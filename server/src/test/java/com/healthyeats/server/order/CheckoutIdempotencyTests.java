@@ -0,0 +1,251 @@
+package com.healthyeats.server.order;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.healthyeats.server.loadtest.FakeStripeServer;
+import com.healthyeats.server.loadtest.LatencyStats;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * POST /api/checkout end to end (H2, {@link FakeStripeServer}): a repeated or
+ * concurrent Idempotency-Key, or an unchanged cart without a key, yields the
+ * first order and its Stripe session instead of a second one.
+ *
+ * The idempotency cache holds one key, so the second key of a test evicts the
+ * first and its replay has to be answered from the order row.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout-idempotency;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.defer-datasource-initialization=true",
+        "spring.sql.init.mode=always",
+        "stripe.secret-key=sk_test_idempotency",
+        "stripe.webhook-secret=whsec_idempotency",
+        "checkout.idempotency.cache-size=1"
+})
+class CheckoutIdempotencyTests {
+
+    private static final FakeStripeServer STRIPE = startStripe();
+
+    private static final String ADDRESS = """
+            "address":{"fullName":"Test Shopper","street":"1 Test St","city":"Berlin","zip":"10115","country":"DE"}""";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Shopper shopper;
+
+    @DynamicPropertySource
+    static void stripeProperties(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api-base", STRIPE::baseUrl);
+    }
+
+    @AfterAll
+    static void stopStripe() {
+        STRIPE.close();
+    }
+
+    @BeforeEach
+    void signIn() throws Exception {
+        shopper = new Shopper("http://127.0.0.1:" + port, "shopper-" + UUID.randomUUID() + "@example.com");
+        shopper.registerAndLogin();
+    }
+
+    @Test
+    void sameKeyReplaysTheFirstCheckout() throws Exception {
+        int sessionsBefore = STRIPE.sessionsCreated();
+
+        Checkout first = shopper.checkout("key-1", items(1, 2));
+        Checkout replay = shopper.checkout("key-1", items(1, 2));
+
+        assertThat(first.status()).isEqualTo(200);
+        assertThat(replay.status()).isEqualTo(200);
+        assertThat(replay.orderId()).isEqualTo(first.orderId());
+        assertThat(replay.url()).isEqualTo(first.url());
+        assertThat(STRIPE.sessionsCreated() - sessionsBefore).isEqualTo(1);
+        assertThat(orders()).hasSize(1);
+    }
+
+    @Test
+    void sameKeyIsFoundOnTheOrderAfterLeavingTheCache() throws Exception {
+        Checkout first = shopper.checkout("key-1", items(1, 2));
+        shopper.checkout("key-2", items(2, 1)); // evicts key-1 from the cache
+        int sessionsBefore = STRIPE.sessionsCreated();
+
+        Checkout replay = shopper.checkout("key-1", items(1, 2));
+
+        assertThat(replay.orderId()).isEqualTo(first.orderId());
+        assertThat(replay.url()).isEqualTo(first.url());
+        assertThat(STRIPE.sessionsCreated()).isEqualTo(sessionsBefore);
+        assertThat(orders()).hasSize(2);
+    }
+
+    @Test
+    void concurrentSameKeyCreatesOneOrderAndOneSession() throws Exception {
+        int sessionsBefore = STRIPE.sessionsCreated();
+        int requests = 8;
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Checkout> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Checkout>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return shopper.checkout("double-click", items(3, 1));
+                }));
+            }
+            start.countDown();
+            for (Future<Checkout> f : futures) {
+                results.add(f.get());
+            }
+        }
+
+        assertThat(results).extracting(Checkout::status).containsOnly(200);
+        assertThat(results).extracting(Checkout::orderId).containsOnly(results.get(0).orderId());
+        assertThat(results).extracting(Checkout::url).containsOnly(results.get(0).url());
+        assertThat(STRIPE.sessionsCreated() - sessionsBefore).isEqualTo(1);
+        assertThat(orders()).hasSize(1);
+    }
+
+    @Test
+    void sameKeyForAnotherCartIsRejected() throws Exception {
+        shopper.checkout("key-1", items(1, 2));
+
+        Checkout other = shopper.checkout("key-1", items(1, 3));
+
+        assertThat(other.status()).isEqualTo(422);
+        assertThat(orders()).hasSize(1);
+    }
+
+    @Test
+    void unchangedCartWithoutKeyReusesTheOpenOrder() throws Exception {
+        int sessionsBefore = STRIPE.sessionsCreated();
+
+        Checkout first = shopper.checkout(null, items(4, 2));
+        Checkout again = shopper.checkout(null, items(4, 2));
+
+        assertThat(again.orderId()).isEqualTo(first.orderId());
+        assertThat(again.url()).isEqualTo(first.url());
+        assertThat(STRIPE.sessionsCreated() - sessionsBefore).isEqualTo(1);
+    }
+
+    @Test
+    void changedCartWithoutKeyCreatesANewOrder() throws Exception {
+        Checkout first = shopper.checkout(null, items(4, 2));
+        Checkout changed = shopper.checkout(null, items(4, 3));
+
+        assertThat(changed.orderId()).isNotEqualTo(first.orderId());
+        assertThat(changed.url()).isNotEqualTo(first.url());
+        assertThat(orders()).hasSize(2);
+    }
+
+    private List<Order> orders() {
+        return orderRepository.findByUserEmailOrderByCreatedAtDescIdDesc(shopper.email);
+    }
+
+    private static String items(long productId, int quantity) {
+        return """
+                {"items":[{"productId":%d,"quantity":%d}],%s}""".formatted(productId, quantity, ADDRESS);
+    }
+
+    private static FakeStripeServer startStripe() {
+        try {
+            return new FakeStripeServer("whsec_idempotency", new LatencyStats())
+                    .latency(Duration.ofMillis(20), Duration.ofMillis(40))
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Status, order and Checkout URL of one POST /api/checkout (after polling a 202). */
+    private record Checkout(int status, Long orderId, String url) {}
+
+    /** A signed-in browser: its own cookie jar (session and cart cookies). */
+    private static final class Shopper {
+
+        private final String base;
+        private final String email;
+        private final HttpClient http = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+
+        Shopper(String base, String email) {
+            this.base = base;
+            this.email = email;
+        }
+
+        void registerAndLogin() throws Exception {
+            String credentials = "email=" + URLEncoder.encode(email, StandardCharsets.UTF_8) + "&password=secret-password";
+            for (String path : List.of("/api/auth/register", "/api/auth/login")) {
+                HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(base + path))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                assertThat(response.statusCode()).as(path).isEqualTo(200);
+            }
+        }
+
+        Checkout checkout(String idempotencyKey, String body) throws Exception {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + "/api/checkout"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            if (idempotencyKey != null) request.header("Idempotency-Key", idempotencyKey);
+            HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200 && response.statusCode() != 202) {
+                return new Checkout(response.statusCode(), null, null);
+            }
+            JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
+            long orderId = json.get("orderId").getAsLong();
+            return response.statusCode() == 200
+                    ? new Checkout(200, orderId, json.get("url").getAsString())
+                    : poll(orderId);
+        }
+
+        /** The session was not ready within the wait timeout; poll like the client does. */
+        private Checkout poll(long orderId) throws Exception {
+            for (int attempt = 0; attempt < 100; attempt++) {
+                HttpResponse<String> response = http.send(
+                        HttpRequest.newBuilder(URI.create(base + "/api/checkout/" + orderId)).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    return new Checkout(200, orderId,
+                            JsonParser.parseString(response.body()).getAsJsonObject().get("url").getAsString());
+                }
+                Thread.sleep(100);
+            }
+            throw new AssertionError("No Checkout URL for order " + orderId);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.healthyeats.server.order;
+
+import com.healthyeats.server.user.User;
+import com.healthyeats.server.user.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Order history comes newest first by creation time, not by ID: with pooled
+ * sequences a node can hand out smaller IDs to newer orders. Pages follow
+ * {@code (createdAt, id)}, so orders created in the same instant are neither
+ * skipped nor repeated at a page boundary.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:order-history;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderControllerTests {
+
+    private static final String EMAIL = "history@example.com";
+    private static final String PASSWORD = "secret-password";
+    private static final LocalDateTime NOON = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private MockHttpSession session;
+
+    /** Seeded orders, newest first by (createdAt, id). */
+    private List<Long> expected;
+
+    @BeforeAll
+    void seed() throws Exception {
+        mvc.perform(post("/api/auth/register").param("email", EMAIL).param("password", PASSWORD))
+                .andExpect(status().isOk());
+        session = (MockHttpSession) mvc.perform(post("/api/auth/login").param("email", EMAIL).param("password", PASSWORD))
+                .andExpect(status().isOk())
+                .andReturn().getRequest().getSession();
+
+        User user = userRepository.findByEmail(EMAIL).orElseThrow();
+        // IDs ascend while creation times descend, and three orders share one instant
+        List<Order> orders = new ArrayList<>();
+        for (LocalDateTime createdAt : List.of(NOON.plusHours(3), NOON.plusHours(2), NOON, NOON, NOON, NOON.minusHours(1))) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setCreatedAt(createdAt);
+            order.setItems(List.of());
+            orders.add(orderRepository.save(order));
+        }
+        expected = orders.stream()
+                .sorted(Comparator.comparing(Order::getCreatedAt).thenComparing(Order::getId).reversed())
+                .map(Order::getId)
+                .toList();
+    }
+
+    @Test
+    void pagesFollowCreationTimeAcrossTies() throws Exception {
+        List<Long> seen = new ArrayList<>();
+        String before = null;
+        do {
+            var request = get("/api/orders").param("limit", "2").session(session);
+            if (before != null) request.param("before", before);
+            String body = mvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            List<Number> ids = JsonPath.read(body, "$.items[*].id");
+            ids.forEach(id -> seen.add(id.longValue()));
+            before = JsonPath.read(body, "$.nextBefore");
+        } while (before != null);
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void fullHistoryFollowsCreationTime() throws Exception {
+        String body = mvc.perform(get("/api/orders").session(session))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<Number> ids = JsonPath.read(body, "$[*].id");
+
+        assertThat(ids).extracting(Number::longValue).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() throws Exception {
+        mvc.perform(get("/api/orders").param("limit", "2").param("before", "not-a-cursor").session(session))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,155 @@
+package com.healthyeats.server.order;
+
+import com.healthyeats.server.ServerApplication;
+import com.healthyeats.server.product.Product;
+import com.healthyeats.server.product.ProductRepository;
+import com.healthyeats.server.user.User;
+import com.healthyeats.server.user.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for persisting a checkout order ({@code orderRepository.save}
+ * with cascaded items) with 1, 10 and 50 lines.
+ *
+ * {@code ids} compares the two mappings:
+ * - identity: the previous mapping (identity columns via
+ *   {@code benchmark/identity-ids.orm.xml}, no JDBC batching); one INSERT
+ *   round trip per order and per line.
+ * - sequence: the current mapping (pooled sequences, batch_size 50,
+ *   order_inserts); one batch for the order and one for its lines, plus a
+ *   sequence call every 50 IDs.
+ * Statements prepared per order are printed after each trial.
+ *
+ * The default database is in-memory H2, which has no network latency and so
+ * understates the gap. For realistic numbers, point it at an empty PostgreSQL
+ * schema (it is dropped afterwards):
+ *   -Dbenchmark.db.url=jdbc:postgresql://localhost:5432/bench?reWriteBatchedInserts=true
+ *   -Dbenchmark.db.username=... -Dbenchmark.db.password=...
+ *
+ * Run with:
+ *   ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.healthyeats.server.order.OrderPersistenceBenchmark
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderPersistenceBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    @Param({"identity", "sequence"})
+    public String ids;
+
+    private ConfigurableApplicationContext context;
+    private OrderRepository orderRepository;
+    private Statistics statistics;
+    private User user;
+    private List<Product> products;
+    private long orders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> properties = new ArrayList<>(List.of(
+                "spring.datasource.url=" + System.getProperty("benchmark.db.url",
+                        "jdbc:h2:mem:orders-" + ids + ";DB_CLOSE_DELAY=-1"),
+                "spring.datasource.username=" + System.getProperty("benchmark.db.username", "sa"),
+                "spring.datasource.password=" + System.getProperty("benchmark.db.password", ""),
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.jpa.properties.hibernate.generate_statistics=true",
+                "logging.level.root=WARN"));
+        if ("identity".equals(ids)) {
+            properties.add("spring.jpa.mapping-resources=benchmark/identity-ids.orm.xml");
+            properties.add("spring.jpa.properties.hibernate.jdbc.batch_size=0");
+        }
+        context = new SpringApplicationBuilder(ServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties.toArray(String[]::new))
+                .run();
+
+        orderRepository = context.getBean(OrderRepository.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        User u = new User();
+        u.setEmail("bench@example.com");
+        u.setPasswordHash("-");
+        user = context.getBean(UserRepository.class).save(u);
+
+        List<Product> seeded = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Product p = new Product();
+            p.setName("Product " + i);
+            p.setPriceCents(100 + i);
+            p.setUnit("per piece");
+            seeded.add(p);
+        }
+        products = context.getBean(ProductRepository.class).saveAll(seeded);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        orders = 0;
+    }
+
+    @Benchmark
+    public Long saveOrder() {
+        Order order = new Order();
+        order.setUser(user);
+        order.setFullName("Bench Mark");
+        order.setStreet("1 Bench St");
+        order.setCity("Berlin");
+        order.setZip("10115");
+        order.setCountry("DE");
+
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            Product product = products.get(i);
+            OrderItem oi = new OrderItem();
+            oi.setOrder(order);
+            oi.setProduct(product);
+            oi.setQuantity(1 + i % 3);
+            oi.setPriceCents(product.getPriceCents());
+            items.add(oi);
+        }
+        order.setItems(items);
+
+        orders++;
+        return orderRepository.save(order).getId();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportStatements() {
+        if (orders > 0) {
+            System.out.printf("%n[ids=%s, lines=%d] %.2f statements/order%n",
+                    ids, lines, (double) statistics.getPrepareStatementCount() / orders);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderPersistenceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
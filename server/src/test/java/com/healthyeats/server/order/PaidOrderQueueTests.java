@@ -0,0 +1,82 @@
+package com.healthyeats.server.order;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Events in the queue were already acknowledged to Stripe, so a batch whose
+ * UPDATE fails must be retried until it lands, never dropped, and its events
+ * are only recorded as handled after that.
+ */
+class PaidOrderQueueTests {
+
+    private final OrderRepository orders = mock(OrderRepository.class);
+    private final WebhookEventLog eventLog = mock(WebhookEventLog.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PaidOrderQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) queue.stop();
+    }
+
+    @Test
+    void failedBatchIsRetriedUntilItSucceeds() {
+        when(orders.markPaid(anyCollection()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(2);
+        queue = new PaidOrderQueue(orders, eventLog, 100, 500, Duration.ofMillis(5), Duration.ofMillis(20),
+                registry, ObservationRegistry.NOOP);
+
+        assertThat(queue.offer(1L, "evt_1")).isTrue();
+        assertThat(queue.offer(2L, "evt_2")).isTrue();
+        queue.start();
+
+        verify(eventLog, timeout(5_000)).record(anyList());
+        // Events count as handled only once their orders are paid
+        InOrder inOrder = inOrder(orders, eventLog);
+        inOrder.verify(orders, times(5)).markPaid(List.of(1L, 2L));
+        inOrder.verify(eventLog).record(List.of("evt_1", "evt_2"));
+        assertThat(registry.counter("webhooks.update.failed").count()).isEqualTo(4);
+        assertThat(registry.summary("webhooks.batch.size").count()).isEqualTo(1);
+    }
+
+    @Test
+    void duplicateIdsAreWrittenOnce() {
+        when(orders.markPaid(anyCollection())).thenReturn(1);
+        queue = new PaidOrderQueue(orders, eventLog, 100, 500, Duration.ofMillis(1), Duration.ofMillis(1),
+                registry, ObservationRegistry.NOOP);
+
+        // Queued before the worker starts, so they drain as one batch
+        queue.offer(7L, "evt_7");
+        queue.offer(7L, "evt_7");
+        queue.start();
+
+        verify(orders, timeout(5_000)).markPaid(List.of(7L));
+    }
+
+    @Test
+    void fullQueueRefusesEvents() {
+        queue = new PaidOrderQueue(orders, eventLog, 1, 500, Duration.ofMillis(1), Duration.ofMillis(1),
+                registry, ObservationRegistry.NOOP);
+
+        assertThat(queue.offer(1L, "evt_1")).isTrue();
+        assertThat(queue.offer(2L, "evt_2")).isFalse();
+        assertThat(registry.counter("webhooks.rejected").count()).isEqualTo(1);
+    }
+}
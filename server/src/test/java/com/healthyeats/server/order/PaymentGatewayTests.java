@@ -0,0 +1,114 @@
+package com.healthyeats.server.order;
+
+import com.healthyeats.server.loadtest.FakeStripeServer;
+import com.healthyeats.server.loadtest.LatencyStats;
+import com.stripe.param.checkout.SessionCreateParams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Each call reports one outcome to the breaker and {@code payments.failed},
+ * even when it outlives {@code call-timeout} and then ends on its own; and a
+ * call that gets no response counts as a provider failure.
+ */
+class PaymentGatewayTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private FakeStripeServer stripe;
+    private PaymentGateway gateway;
+
+    @AfterEach
+    void tearDown() {
+        if (gateway != null) gateway.shutdown();
+        if (stripe != null) stripe.close();
+    }
+
+    @Test
+    void timedOutCallIsCountedOnceWhenItFailsLater() throws Exception {
+        stripe = fakeStripe(Duration.ofMillis(600)).errors(1.0, 500);
+        // Two failures would open the circuit
+        gateway = gateway(Duration.ofSeconds(5), Duration.ofMillis(200), 2);
+
+        assertUnavailable("timed out");
+        awaitIdle();
+
+        assertThat(registry.counter("payments.failed").count()).isEqualTo(1);
+        assertThat(registry.get("payments.breaker.open").gauge().value()).isZero();
+    }
+
+    @Test
+    void timedOutCallDoesNotCloseTheCircuitWhenItSucceedsLater() throws Exception {
+        stripe = fakeStripe(Duration.ofMillis(600));
+        gateway = gateway(Duration.ofSeconds(5), Duration.ofMillis(200), 1);
+
+        assertUnavailable("timed out");
+        awaitIdle();
+
+        assertThat(registry.counter("payments.failed").count()).isEqualTo(1);
+        assertThat(registry.get("payments.breaker.open").gauge().value()).isEqualTo(1);
+        assertUnavailable("circuit open");
+    }
+
+    @Test
+    void readTimeoutIsAProviderFailure() throws Exception {
+        stripe = fakeStripe(Duration.ofMillis(600));
+        gateway = gateway(Duration.ofMillis(200), Duration.ofSeconds(5), 5);
+
+        assertUnavailable("provider error");
+
+        assertThat(registry.counter("payments.failed").count()).isEqualTo(1);
+    }
+
+    private void assertUnavailable(String message) {
+        assertThatThrownBy(() -> gateway.createCheckoutSession(params(), "order-1").get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOf(PaymentUnavailableException.class)
+                .hasMessageContaining(message);
+    }
+
+    /** Waits until the timed-out call has ended on its own and given its bulkhead slot back. */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("payments.inflight").gauge().value() > 0) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Call still in flight");
+            Thread.sleep(20);
+        }
+    }
+
+    private PaymentGateway gateway(Duration readTimeout, Duration callTimeout, int failureThreshold) {
+        return new PaymentGateway("sk_test_gateway", stripe.baseUrl(), 4, Duration.ofSeconds(2), readTimeout,
+                callTimeout, failureThreshold, Duration.ofMinutes(1), registry);
+    }
+
+    private static FakeStripeServer fakeStripe(Duration latency) throws Exception {
+        return new FakeStripeServer("whsec_gateway", new LatencyStats()).latency(latency, latency).start();
+    }
+
+    private static SessionCreateParams params() {
+        return SessionCreateParams.builder()
+                .setMode(SessionCreateParams.Mode.PAYMENT)
+                .setSuccessUrl("http://localhost/success")
+                .setCancelUrl("http://localhost/cancel")
+                .setClientReferenceId("1")
+                .addLineItem(SessionCreateParams.LineItem.builder()
+                        .setQuantity(1L)
+                        .setPriceData(SessionCreateParams.LineItem.PriceData.builder()
+                                .setCurrency("eur")
+                                .setUnitAmount(100L)
+                                .setProductData(SessionCreateParams.LineItem.PriceData.ProductData.builder()
+                                        .setName("Test")
+                                        .build())
+                                .build())
+                        .build())
+                .build();
+    }
+}
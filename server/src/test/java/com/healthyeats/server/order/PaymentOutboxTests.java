@@ -0,0 +1,180 @@
+package com.healthyeats.server.order;
+
+import com.healthyeats.server.loadtest.FakeStripeServer;
+import com.healthyeats.server.loadtest.LatencyStats;
+import com.healthyeats.server.product.Product;
+import com.healthyeats.server.product.ProductRepository;
+import com.healthyeats.server.user.User;
+import com.healthyeats.server.user.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The outbox against {@link FakeStripeServer}: a retried Stripe call reuses the
+ * session of the first attempt (same Idempotency-Key), and a request waiting
+ * for its URL is answered even when the dispatch finished before it started waiting.
+ *
+ * The scheduled dispatch is effectively off ({@code poll-interval=PT1H});
+ * tests call {@link PaymentOutbox#dispatch()} themselves.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:payment-outbox;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.defer-datasource-initialization=true",
+        "spring.sql.init.mode=always",
+        "stripe.secret-key=sk_test_outbox",
+        "stripe.webhook-secret=whsec_outbox",
+        "payments.read-timeout=PT5S",
+        "payments.call-timeout=PT1S",
+        "payments.outbox.poll-interval=PT1H",
+        "payments.outbox.retry-backoff=PT2S",
+        "payments.outbox.wait-timeout=PT30S"
+})
+class PaymentOutboxTests {
+
+    private static final FakeStripeServer STRIPE = startStripe();
+
+    @Autowired
+    private PaymentOutbox outbox;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void stripeProperties(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api-base", STRIPE::baseUrl);
+    }
+
+    @AfterEach
+    void fastStripe() {
+        STRIPE.latency(Duration.ofMillis(10), Duration.ofMillis(20));
+    }
+
+    @AfterAll
+    static void stopStripe() {
+        STRIPE.close();
+    }
+
+    /** The first call runs past call-timeout but Stripe still creates the session; the retry must get that one. */
+    @Test
+    void retryAfterTimeoutReusesTheFirstSession() throws Exception {
+        STRIPE.latency(Duration.ofMillis(1500), Duration.ofMillis(1500));
+        int sessionsBefore = STRIPE.sessionsCreated();
+        Order order = saveNewOrder();
+
+        outbox.dispatch();
+        awaitUntil(() -> STRIPE.sessionsCreated() > sessionsBefore);
+        assertThat(checkoutUrl(order)).isNull();
+
+        STRIPE.latency(Duration.ofMillis(10), Duration.ofMillis(20));
+        awaitUntil(() -> {
+            outbox.dispatch();
+            return checkoutUrl(order) != null;
+        });
+
+        assertThat(STRIPE.sessionsCreated() - sessionsBefore).isEqualTo(1);
+        assertThat(STRIPE.sawIdempotencyKey("order-" + order.getId())).isTrue();
+        assertThat(outbox.status(order.getId())).contains(PaymentOutbox.Status.DONE);
+    }
+
+    /** Dispatch completes between saving the order and waiting for it. */
+    @Test
+    void waiterSeesADispatchThatFinishedFirst() throws Exception {
+        Order order = saveNewOrder();
+
+        outbox.dispatch();
+        awaitUntil(() -> checkoutUrl(order) != null);
+
+        assertThat(outbox.awaitCheckoutUrl(order.getId()).get(2, TimeUnit.SECONDS)).isEqualTo(checkoutUrl(order));
+    }
+
+    /** Same for an existing order whose row is re-armed. */
+    @Test
+    void requeueOfAFinishedOrderReturnsItsUrl() throws Exception {
+        Order order = saveNewOrder();
+        outbox.awaitCheckoutUrl(order.getId()).get(5, TimeUnit.SECONDS);
+
+        assertThat(outbox.requeue(order.getId())).isEqualTo(checkoutUrl(order));
+    }
+
+    /** Like checkout: the order references managed products, so save it inside a session. */
+    private Order saveNewOrder() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Order order = newOrder();
+            outbox.saveWithOutbox(order);
+            return order;
+        });
+    }
+
+    private Order newOrder() {
+        User user = new User();
+        user.setEmail("outbox-" + UUID.randomUUID() + "@example.com");
+        user.setPasswordHash("x");
+        userRepository.save(user);
+
+        Product product = productRepository.findAll().get(0);
+        Order order = new Order();
+        order.setUser(user);
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(2);
+        item.setPriceCents(product.getPriceCents());
+        order.setItems(List.of(item));
+        return order;
+    }
+
+    private String checkoutUrl(Order order) {
+        return orderRepository.findById(order.getId()).map(Order::getCheckoutUrl).orElse(null);
+    }
+
+    private static void awaitUntil(Condition condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (!condition.met()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Timed out");
+            Thread.sleep(100);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean met() throws Exception;
+    }
+
+    private static FakeStripeServer startStripe() {
+        try {
+            return new FakeStripeServer("whsec_outbox", new LatencyStats())
+                    .latency(Duration.ofMillis(10), Duration.ofMillis(20))
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
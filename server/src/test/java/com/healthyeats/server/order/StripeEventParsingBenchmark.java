@@ -0,0 +1,81 @@
+package com.healthyeats.server.order;
+
+import com.stripe.model.Event;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for reading a checkout.session.completed webhook payload.
+ *
+ * - full: the previous path; bind the whole {@link Event}, then bind its raw
+ *   data object into a {@link Session} to read client_reference_id.
+ * - streaming: {@link StripeEventFields#parse}, which skips everything but
+ *   the four fields the webhook needs.
+ * Signature verification costs the same on both paths and is left out.
+ *
+ * Fixtures are real-sized events from {@code src/test/resources/stripe}
+ * (a card payment, ~3.5 KB, and a SEPA payment with shipping, tax and a
+ * discount, ~8 KB). The GC profiler reports bytes allocated per operation
+ * ({@code gc.alloc.rate.norm}).
+ *
+ * Run with:
+ *   ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.healthyeats.server.order.StripeEventParsingBenchmark
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StripeEventParsingBenchmark {
+
+    @Param({"checkout.session.completed", "checkout.session.completed.shipping"})
+    public String fixture;
+
+    private String payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = StripeEventParsingBenchmark.class.getResourceAsStream("/stripe/" + fixture + ".json")) {
+            payload = new String(Objects.requireNonNull(in, fixture).readAllBytes(), StandardCharsets.UTF_8);
+        }
+        // Both paths must read the same values
+        StripeEventFields fields = streaming();
+        String reference = full();
+        if (!reference.equals(fields.clientReferenceId()) || fields.id() == null || fields.paymentStatus() == null) {
+            throw new IllegalStateException("Parsers disagree on " + fixture + ": " + fields + " vs " + reference);
+        }
+    }
+
+    @Benchmark
+    public String full() {
+        Event event = ApiResource.GSON.fromJson(payload, Event.class);
+        String rawJson = event.getDataObjectDeserializer().getRawJson();
+        Session session = ApiResource.GSON.fromJson(rawJson, Session.class);
+        return session.getClientReferenceId();
+    }
+
+    @Benchmark
+    public StripeEventFields streaming() {
+        return StripeEventFields.parse(payload);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StripeEventParsingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,77 @@
+package com.healthyeats.server.order;
+
+import com.stripe.net.Webhook;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Which verified events mark an order paid: a completed session that is paid,
+ * or the async_payment_succeeded that follows a session completed unpaid.
+ */
+class StripeWebhookControllerTests {
+
+    private static final String SECRET = "whsec_test";
+
+    private final PaidOrderQueue paidOrders = mock(PaidOrderQueue.class);
+    private final WebhookEventLog eventLog = mock(WebhookEventLog.class);
+    private StripeWebhookController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new StripeWebhookController(paidOrders, eventLog, ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(controller, "webhookSecret", SECRET);
+        when(eventLog.firstDelivery(anyString())).thenReturn(true);
+        when(paidOrders.offer(anyLong(), anyString())).thenReturn(true);
+    }
+
+    @Test
+    void paidCompletedSessionIsQueued() throws Exception {
+        assertThat(deliver("evt_1", "checkout.session.completed", "42", "paid")).isEqualTo("success");
+
+        verify(paidOrders).offer(42L, "evt_1");
+    }
+
+    @Test
+    void unpaidCompletedSessionWaitsForAsyncPayment() throws Exception {
+        assertThat(deliver("evt_1", "checkout.session.completed", "42", "unpaid")).isEqualTo("success");
+        verify(paidOrders, never()).offer(anyLong(), anyString());
+
+        assertThat(deliver("evt_2", "checkout.session.async_payment_succeeded", "42", "paid")).isEqualTo("success");
+        verify(paidOrders).offer(42L, "evt_2");
+    }
+
+    @Test
+    void failedAsyncPaymentIsIgnored() throws Exception {
+        deliver("evt_1", "checkout.session.async_payment_failed", "42", "unpaid");
+
+        verify(paidOrders, never()).offer(anyLong(), anyString());
+        verify(eventLog, never()).firstDelivery(anyString());
+    }
+
+    @Test
+    void fullQueueReleasesTheEvent() throws Exception {
+        when(paidOrders.offer(anyLong(), anyString())).thenReturn(false);
+
+        assertThat(deliver("evt_1", "checkout.session.completed", "42", "paid")).isEqualTo("Busy");
+        verify(eventLog).forget("evt_1");
+    }
+
+    private String deliver(String eventId, String type, String orderId, String paymentStatus) throws Exception {
+        String payload = """
+                {"id":"%s","object":"event","type":"%s","data":{"object":{"id":"cs_test","object":"checkout.session",\
+                "client_reference_id":"%s","payment_status":"%s"}}}""".formatted(eventId, type, orderId, paymentStatus);
+        long timestamp = System.currentTimeMillis() / 1000;
+        String signature = Webhook.Util.computeHmacSha256(SECRET, timestamp + "." + payload);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Stripe-Signature", "t=" + timestamp + ",v1=" + signature);
+        return controller.handleWebhook(request, payload).getBody();
+    }
+}
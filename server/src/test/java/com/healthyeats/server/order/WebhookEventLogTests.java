@@ -0,0 +1,82 @@
+package com.healthyeats.server.order;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * An event is persisted as handled only once {@link WebhookEventLog#record}
+ * is called (after its order was marked paid); until then only this node's
+ * LRU knows it, so a resend after a restart is processed again.
+ */
+class WebhookEventLogTests {
+
+    private JdbcTemplate jdbc;
+    private SimpleMeterRegistry registry;
+    private WebhookEventLog eventLog;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:webhook-events;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(h2);
+        eventLog = newLog();
+        eventLog.createTable();
+        jdbc.update("DELETE FROM stripe_webhook_event");
+    }
+
+    @Test
+    void claimedEventIsADuplicateOnThisNode() {
+        assertThat(eventLog.firstDelivery("evt_1")).isTrue();
+        assertThat(eventLog.firstDelivery("evt_1")).isFalse();
+        assertThat(registry.counter("webhooks.duplicates").count()).isEqualTo(1);
+    }
+
+    @Test
+    void unrecordedEventIsProcessedAgainAfterRestart() {
+        assertThat(eventLog.firstDelivery("evt_1")).isTrue();
+
+        assertThat(count()).isZero();
+        assertThat(newLog().firstDelivery("evt_1")).isTrue();
+    }
+
+    @Test
+    void recordedEventIsADuplicateAfterRestart() {
+        assertThat(eventLog.firstDelivery("evt_1")).isTrue();
+        eventLog.record(List.of("evt_1"));
+
+        assertThat(newLog().firstDelivery("evt_1")).isFalse();
+    }
+
+    @Test
+    void recordingTwiceIsHarmless() {
+        eventLog.record(List.of("evt_1"));
+        newLog().record(List.of("evt_2", "evt_1", "evt_3"));
+
+        assertThat(count()).isEqualTo(3);
+    }
+
+    @Test
+    void forgottenEventIsAcceptedAgain() {
+        assertThat(eventLog.firstDelivery("evt_1")).isTrue();
+        eventLog.forget("evt_1");
+
+        assertThat(eventLog.firstDelivery("evt_1")).isTrue();
+    }
+
+    private WebhookEventLog newLog() {
+        registry = new SimpleMeterRegistry();
+        return new WebhookEventLog(jdbc, 100, Duration.ofDays(30), registry);
+    }
+
+    private int count() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM stripe_webhook_event", Integer.class);
+    }
+}
@@ -0,0 +1,129 @@
+package com.healthyeats.server.product;
+
+import com.healthyeats.server.category.Category;
+import com.healthyeats.server.category.CategoryRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/products/page: following {@code nextCursor} visits every product
+ * exactly once in the requested order, with or without a category, also when
+ * a page boundary falls between products of the same price.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product-page;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductControllerTests {
+
+    /** Small pages, so boundaries fall inside the runs of equal prices. */
+    private static final int PAGE = 2;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final List<Product> products = new ArrayList<>();
+    private long fruitId;
+
+    @BeforeAll
+    void seed() {
+        Category fruit = categoryRepository.save(new Category(null, "Fruit"));
+        Category nuts = categoryRepository.save(new Category(null, "Nuts"));
+        fruitId = fruit.getId();
+        // Five products at 300 and three at 150, spread over both categories
+        int[] prices = { 300, 150, 300, 500, 300, 150, 300, 150, 300, 200 };
+        for (int i = 0; i < prices.length; i++) {
+            products.add(productRepository.save(new Product(null, "Product " + i, prices[i], "/images/" + i + ".jpg",
+                    i % 2 == 0 ? fruit : nuts, "per piece")));
+        }
+    }
+
+    @Test
+    void idPagesVisitEveryProductOnce() throws Exception {
+        assertThat(walk("id", null)).containsExactlyElementsOf(expected(null, Comparator.comparing(Product::getId)));
+        assertThat(walk("id", fruitId)).containsExactlyElementsOf(expected(fruitId, Comparator.comparing(Product::getId)));
+    }
+
+    @Test
+    void priceAscendingPagesBreakTiesById() throws Exception {
+        Comparator<Product> order = Comparator.comparing(Product::getPriceCents).thenComparing(Product::getId);
+
+        assertThat(walk("price_asc", null)).containsExactlyElementsOf(expected(null, order));
+        assertThat(walk("price_asc", fruitId)).containsExactlyElementsOf(expected(fruitId, order));
+    }
+
+    @Test
+    void priceDescendingPagesBreakTiesById() throws Exception {
+        Comparator<Product> order = Comparator.comparing(Product::getPriceCents).thenComparing(Product::getId).reversed();
+
+        assertThat(walk("PRICE_DESC", null)).containsExactlyElementsOf(expected(null, order));
+        assertThat(walk("Price_Desc", fruitId)).containsExactlyElementsOf(expected(fruitId, order));
+    }
+
+    @Test
+    void invalidCursorsAndSortsAreBadRequests() throws Exception {
+        String priceCursor = JsonPath.read(mvc.perform(page("price_asc"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), "$.nextCursor");
+
+        mvc.perform(page("price_asc").param("cursor", "not-a-cursor")).andExpect(status().isBadRequest());
+        mvc.perform(page("price_desc").param("cursor", priceCursor)).andExpect(status().isBadRequest());
+        mvc.perform(page("cheapest")).andExpect(status().isBadRequest());
+    }
+
+    /** Follows {@code nextCursor} to the last page and returns the product IDs in order. */
+    private List<Long> walk(String sort, Long categoryId) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = page(sort);
+            if (categoryId != null) request.param("categoryId", categoryId.toString());
+            if (cursor != null) request.param("cursor", cursor);
+            String body = mvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            List<Number> page = JsonPath.read(body, "$.items[*].id");
+            assertThat(page).hasSizeLessThanOrEqualTo(PAGE);
+            page.forEach(id -> ids.add(id.longValue()));
+            cursor = JsonPath.read(body, "$.nextCursor");
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static MockHttpServletRequestBuilder page(String sort) {
+        return get("/api/products/page").param("sort", sort).param("limit", String.valueOf(PAGE));
+    }
+
+    private List<Long> expected(Long categoryId, Comparator<Product> order) {
+        return products.stream()
+                .filter(p -> categoryId == null || p.getCategory().getId().equals(categoryId))
+                .sorted(order)
+                .map(Product::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,91 @@
+package com.healthyeats.server.product;
+
+import com.healthyeats.server.catalog.CatalogProduct;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for {@link ProductSearchIndex} at 10k products.
+ *
+ * Uses sample-time mode so the report includes p50/p99/p99.9 per query shape
+ * (target: p99 below 2 ms).
+ *
+ * Run with:
+ *   ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.healthyeats.server.product.ProductSearchIndexBenchmark
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSearchIndexBenchmark {
+
+    private static final String[] ADJECTIVES = {
+            "organic", "fresh", "green", "red", "wild", "smoked", "roasted", "raw",
+            "sweet", "spicy", "whole", "sliced", "frozen", "dried", "golden", "baby"
+    };
+    private static final String[] NOUNS = {
+            "apple", "banana", "broccoli", "carrot", "cashews", "cheese", "chicken", "blueberries",
+            "salmon", "spinach", "strawberries", "tomato", "walnuts", "yogurt", "quinoa", "oats",
+            "almonds", "avocado", "cucumber", "mango", "pepper", "zucchini", "lentils", "hazelnuts"
+    };
+    private static final String[] CATEGORIES = {
+            "Fruits", "Vegetables", "Grains & Bakery", "Dairy & Eggs", "Meat & Fish", "Nuts & Seeds", "Beverages", "Other"
+    };
+
+    @Param({"10000"})
+    public int products;
+
+    private ProductSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new ProductSearchIndex();
+        Random random = new Random(42);
+        for (long id = 1; id <= products; id++) {
+            int c = random.nextInt(CATEGORIES.length);
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + NOUNS[random.nextInt(NOUNS.length)] + " " + (char) ('a' + random.nextInt(26)) + id;
+            index.upsert(new CatalogProduct(id, name, 100 + random.nextInt(900), null, (long) c, CATEGORIES[c], "per piece"));
+        }
+    }
+
+    @Benchmark
+    public List<CatalogProduct> exactWord() {
+        return index.search("salmon", 10);
+    }
+
+    @Benchmark
+    public List<CatalogProduct> prefixAutocomplete() {
+        return index.search("straw", 10);
+    }
+
+    @Benchmark
+    public List<CatalogProduct> multiTermPrefix() {
+        return index.search("fresh blue", 10);
+    }
+
+    @Benchmark
+    public List<CatalogProduct> fuzzyTypo() {
+        return index.search("brocolli", 10);
+    }
+
+    @Benchmark
+    public void incrementalUpdate() {
+        index.upsert(new CatalogProduct(1L, "organic kale chips", 349, null, 2L, "Vegetables", "per bag"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductSearchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
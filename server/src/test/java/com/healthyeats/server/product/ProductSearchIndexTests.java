@@ -0,0 +1,110 @@
+package com.healthyeats.server.product;
+
+import com.healthyeats.server.catalog.CatalogProduct;
+import com.healthyeats.server.catalog.CatalogRefreshedEvent;
+import com.healthyeats.server.catalog.CatalogSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link ProductSearchIndex}: prefix matching, the fuzzy edit-distance
+ * threshold, ranking, and following the catalog across refreshes.
+ */
+class ProductSearchIndexTests {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    @Test
+    void prefixesMatchEveryQueryTerm() {
+        index(product(1, "Strawberries", "Fruits"),
+                product(2, "Greek Yogurt", "Dairy & Eggs"),
+                product(3, "Green Tea", "Beverages"));
+
+        assertThat(names("straw")).containsExactly("Strawberries");
+        assertThat(names("gre yog")).containsExactly("Greek Yogurt");
+        assertThat(names("GRÉ")).containsExactlyInAnyOrder("Greek Yogurt", "Green Tea");
+        assertThat(names("straw tea")).isEmpty();
+    }
+
+    @Test
+    void fuzzyMatchesStayWithinEditDistance() {
+        index(product(1, "Apple", "Fruits"),
+                product(2, "Broccoli", "Vegetables"));
+
+        // Up to five letters: one edit
+        assertThat(names("aple")).containsExactly("Apple");
+        assertThat(names("axxle")).isEmpty();
+        // Longer terms: two edits
+        assertThat(names("brocoli")).containsExactly("Broccoli");
+        assertThat(names("brxcxoli")).containsExactly("Broccoli");
+        assertThat(names("bxxcxoli")).isEmpty();
+        // Too short for fuzzy matching
+        assertThat(names("xp")).isEmpty();
+    }
+
+    @Test
+    void prefixDistanceIsBoundedByMax() {
+        assertThat(ProductSearchIndex.prefixDistance("straw", "strawberries", 1)).isZero();
+        assertThat(ProductSearchIndex.prefixDistance("brocoli", "broccoli", 2)).isEqualTo(1);
+        assertThat(ProductSearchIndex.prefixDistance("bxxcxoli", "broccoli", 2)).isEqualTo(3);
+    }
+
+    @Test
+    void exactBeatsPrefixBeatsCategory() {
+        index(product(1, "Kale", "Greens"),
+                product(2, "Greengage Plums", "Fruits"),
+                product(3, "Green Tea", "Beverages"),
+                product(4, "Green Apple", "Fruits"));
+
+        // Exact name hits (ties by name), then name prefix, then category prefix
+        assertThat(names("green")).containsExactly("Green Apple", "Green Tea", "Greengage Plums", "Kale");
+        assertThat(index.search("green", 2)).extracting(CatalogProduct::name).containsExactly("Green Apple", "Green Tea");
+    }
+
+    @Test
+    void refreshReindexesChangedProducts() {
+        refresh(null, snapshot(1, product(1, "Oat Milk", "Beverages"), product(2, "Walnuts", "Nuts & Seeds")));
+        assertThat(names("oat")).containsExactly("Oat Milk");
+        assertThat(names("walnut")).containsExactly("Walnuts");
+
+        refresh(snapshot(1), snapshot(2, product(1, "Almond Milk", "Beverages"), product(3, "Cashews", "Nuts & Seeds")));
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(names("oat")).isEmpty();
+        assertThat(names("walnut")).isEmpty();
+        assertThat(names("milk")).containsExactly("Almond Milk");
+        assertThat(names("cash")).containsExactly("Cashews");
+    }
+
+    private void index(CatalogProduct... products) {
+        for (CatalogProduct p : products) index.upsert(p);
+    }
+
+    private void refresh(CatalogSnapshot previous, CatalogSnapshot current) {
+        index.onCatalogRefreshed(new CatalogRefreshedEvent(previous, current));
+    }
+
+    private List<String> names(String query) {
+        return index.search(query, 10).stream().map(CatalogProduct::name).toList();
+    }
+
+    private static CatalogProduct product(long id, String name, String category) {
+        return new CatalogProduct(id, name, 100, null, (long) category.length(), category, "per piece");
+    }
+
+    private static CatalogSnapshot snapshot(long version, CatalogProduct... products) {
+        Map<Long, CatalogProduct> byId = new HashMap<>();
+        Map<String, CatalogProduct> byName = new HashMap<>();
+        for (CatalogProduct p : products) {
+            byId.put(p.id(), p);
+            byName.putIfAbsent(p.name(), p);
+        }
+        return new CatalogSnapshot(version, Instant.now(), List.of(), List.of(products), byId, byName);
+    }
+}
@@ -0,0 +1,109 @@
+package com.healthyeats.server.support;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * SQL statement budget for the data path behind one endpoint.
+ *
+ * Usage (the test context needs {@link QueryRecorder}):
+ * <pre>
+ * {@literal @}SpringBootTest
+ * {@literal @}AutoConfigureMockMvc
+ * {@literal @}Import(QueryRecorder.class)
+ * ...
+ * ResultActions orders = QueryBudget.of("GET /api/orders", 1)
+ *         .call(() -&gt; perform(get("/api/orders").session(session))); // MockMvc#perform, unchecked
+ * </pre>
+ * Drive the endpoint itself rather than a copy of its repository calls, so the
+ * budget also covers the controller and JSON serialization.
+ *
+ * Statements are counted as the calling thread executes them, Hibernate and
+ * {@code JdbcTemplate} alike (a JDBC batch is one statement). If the work
+ * executes more than the budget allows, the test fails with every statement
+ * listed and identical ones grouped, so a lazy load in a loop (N+1) shows up
+ * as one statement repeated N times.
+ */
+public final class QueryBudget {
+
+    private final String endpoint;
+    private final int maxStatements;
+
+    private QueryBudget(String endpoint, int maxStatements) {
+        this.endpoint = endpoint;
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * @param endpoint      endpoint the work stands for (used in the failure message)
+     * @param maxStatements most statements the work may execute
+     * @return budget
+     */
+    public static QueryBudget of(String endpoint, int maxStatements) {
+        return new QueryBudget(endpoint, maxStatements);
+    }
+
+    /**
+     * Runs the work and checks the budget.
+     *
+     * @param work request to the endpoint (or the service call behind it)
+     * @return the work's result
+     * @throws AssertionError if the budget is exceeded
+     */
+    public <T> T call(Supplier<T> work) {
+        List<String> statements;
+        T result;
+        QueryRecorder.start();
+        try {
+            result = work.get();
+        } finally {
+            statements = QueryRecorder.stop();
+        }
+        check(statements);
+        return result;
+    }
+
+    /**
+     * Runs the work and checks the budget.
+     *
+     * @param work request to the endpoint (or the service call behind it)
+     * @throws AssertionError if the budget is exceeded
+     */
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private void check(List<String> statements) {
+        if (statements.size() <= maxStatements) return;
+        throw new AssertionError(describe(statements));
+    }
+
+    private String describe(List<String> statements) {
+        StringBuilder sb = new StringBuilder()
+                .append(endpoint).append(": ").append(statements.size())
+                .append(" SQL statements, budget ").append(maxStatements).append('\n');
+        for (int i = 0; i < statements.size(); i++) {
+            sb.append(String.format("%4d. %s%n", i + 1, statements.get(i)));
+        }
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String sql : statements) {
+            counts.merge(sql, 1, Integer::sum);
+        }
+        boolean header = false;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (e.getValue() < 2) continue;
+            if (!header) {
+                sb.append("Repeated statements (suspected N+1):\n");
+                header = true;
+            }
+            sb.append(String.format("%4dx %s%n", e.getValue(), e.getKey()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package com.healthyeats.server.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the SQL statements executed by the current thread while a
+ * {@link QueryBudget} (or {@link #record}) is running.
+ *
+ * Registered with {@code @Import(QueryRecorder.class)}, it wraps the
+ * application {@link DataSource} the way
+ * {@link com.healthyeats.server.observability.ProfilingDataSource} does, so
+ * Hibernate and {@code JdbcTemplate} statements are both counted, each when it
+ * is executed (a JDBC batch is one statement).
+ *
+ * The recording is bound to the thread that started it. MockMvc serves the
+ * request on the calling thread, so a request is counted in full, while
+ * schedulers and background workers (catalog reloads, the outbox, the
+ * paid-order writer) running at the same time are not.
+ */
+public class QueryRecorder implements BeanPostProcessor {
+
+    private static final ThreadLocal<List<String>> RECORDING = new ThreadLocal<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource ? wrap(dataSource) : bean;
+    }
+
+    /**
+     * Runs the work and returns the statements it executed on this thread.
+     *
+     * @param work work to record
+     * @return statement texts (as prepared; parameters are not included), in order
+     */
+    public static List<String> record(Runnable work) {
+        List<String> statements;
+        start();
+        try {
+            work.run();
+        } finally {
+            statements = stop();
+        }
+        return statements;
+    }
+
+    /**
+     * Starts recording on this thread.
+     *
+     * @throws IllegalStateException if this thread is already recording
+     */
+    static void start() {
+        if (RECORDING.get() != null) {
+            throw new IllegalStateException("A query budget is already running on this thread");
+        }
+        RECORDING.set(new ArrayList<>());
+    }
+
+    /**
+     * Stops recording on this thread.
+     *
+     * @return statements executed since {@link #start()}, in order
+     */
+    static List<String> stop() {
+        List<String> statements = RECORDING.get();
+        RECORDING.remove();
+        return statements == null ? List.of() : List.copyOf(statements);
+    }
+
+    /**
+     * @param dataSource data source to record
+     * @return a data source whose statements are recorded for the executing thread
+     */
+    public static DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection connection ? wrapConnection(connection) : result;
+        });
+    }
+
+    private static Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            return switch (result) {
+                case CallableStatement call -> wrapStatement(CallableStatement.class, call, sql);
+                case PreparedStatement prepared -> wrapStatement(PreparedStatement.class, prepared, sql);
+                case Statement statement -> wrapStatement(Statement.class, statement, null);
+                case null, default -> result;
+            };
+        });
+    }
+
+    private static <S extends Statement> S wrapStatement(Class<S> type, S statement, String preparedSql) {
+        return proxy(type, statement, (target, method, args) -> {
+            List<String> statements = method.getName().startsWith("execute") ? RECORDING.get() : null;
+            if (statements != null) {
+                statements.add(args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql);
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler<T> {
+        Object handle(T target, Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler<T> handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> invoke(target, method, args);
+                };
+            }
+            return handler.handle(target, method, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, invocationHandler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}